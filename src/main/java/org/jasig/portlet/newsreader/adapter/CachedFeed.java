@@ -0,0 +1,196 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import org.jasig.portlet.newsreader.processor.ParsedFeed;
+
+/**
+ * A feed as stored in the news cache, together with the HTTP validators the
+ * origin sent with it.  The feed is kept as parsed, before any AntiSamy policy
+ * has been applied, so that one fetch serves every policy;  the sanitized
+ * copies are cached separately as {@link FeedVariant}s.  The adapter decides
+ * freshness from <code>expirationTime</code>;  an expired entry stays in the
+ * cache so that it can be revalidated with a conditional GET instead of being
+ * fetched again.
+ *
+ * @since 6.0.0
+ */
+public class CachedFeed {
+
+    private final String url;
+    private final ParsedFeed feed;
+    private final String etag;
+    private final String lastModified;
+    private final long version;
+    private final long fetchedTime;
+    private final long expirationTime;
+    private final String contentDigest;
+
+    /**
+     * <p>Constructor for CachedFeed.</p>
+     *
+     * @param url the URL the feed was fetched from
+     * @param feed the parsed feed, or <code>null</code> if the origin returned no content
+     * @param etag value of the <code>ETag</code> response header, if any
+     * @param lastModified value of the <code>Last-Modified</code> response header, if any
+     * @param fetchedTime time the feed was fetched or last revalidated, in milliseconds
+     * @param expirationTime time after which the feed must be revalidated, in milliseconds
+     */
+    public CachedFeed(String url, ParsedFeed feed, String etag, String lastModified,
+            long fetchedTime, long expirationTime) {
+        this(url, feed, etag, lastModified, fetchedTime, expirationTime, null);
+    }
+
+    /**
+     * <p>Constructor for CachedFeed.</p>
+     *
+     * @param url the URL the feed was fetched from
+     * @param feed the parsed feed, or <code>null</code> if the origin returned no content
+     * @param etag value of the <code>ETag</code> response header, if any
+     * @param lastModified value of the <code>Last-Modified</code> response header, if any
+     * @param fetchedTime time the feed was fetched or last revalidated, in milliseconds
+     * @param expirationTime time after which the feed must be revalidated, in milliseconds
+     * @param contentDigest digest of the response body the feed was parsed from, if known
+     */
+    public CachedFeed(String url, ParsedFeed feed, String etag, String lastModified,
+            long fetchedTime, long expirationTime, String contentDigest) {
+        this(url, feed, etag, lastModified, fetchedTime, fetchedTime, expirationTime, contentDigest);
+    }
+
+    private CachedFeed(String url, ParsedFeed feed, String etag, String lastModified,
+            long version, long fetchedTime, long expirationTime, String contentDigest) {
+        this.url = url;
+        this.feed = feed;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.version = version;
+        this.fetchedTime = fetchedTime;
+        this.expirationTime = expirationTime;
+        this.contentDigest = contentDigest;
+    }
+
+    /**
+     * Create a copy of this entry for a feed the origin reported as not modified,
+     * or sent again unchanged.  Validators sent with the response replace the
+     * stored ones.
+     *
+     * @param etag new <code>ETag</code>, or <code>null</code> to keep the current one
+     * @param lastModified new <code>Last-Modified</code>, or <code>null</code> to keep the current one
+     * @param fetchedTime time of the revalidation, in milliseconds
+     * @param expirationTime new expiration time, in milliseconds
+     * @return a new entry sharing this entry's feed
+     */
+    public CachedFeed revalidated(String etag, String lastModified, long fetchedTime, long expirationTime) {
+        return new CachedFeed(url, feed,
+                etag != null ? etag : this.etag,
+                lastModified != null ? lastModified : this.lastModified,
+                version, fetchedTime, expirationTime, contentDigest);
+    }
+
+    /**
+     * @param now current time in milliseconds
+     * @return <code>true</code> if the feed must be revalidated before use
+     */
+    public boolean isExpired(long now) {
+        return now >= expirationTime;
+    }
+
+    /**
+     * @return <code>true</code> if the origin sent a validator usable for a conditional GET
+     */
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * <p>Getter for the field <code>url</code>.</p>
+     *
+     * @return a {@link java.lang.String} object
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * <p>Getter for the field <code>feed</code>.</p>
+     *
+     * @return a {@link org.jasig.portlet.newsreader.processor.ParsedFeed} object
+     */
+    public ParsedFeed getFeed() {
+        return feed;
+    }
+
+    /**
+     * <p>Getter for the field <code>etag</code>.</p>
+     *
+     * @return a {@link java.lang.String} object
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * <p>Getter for the field <code>lastModified</code>.</p>
+     *
+     * @return a {@link java.lang.String} object
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Identifies the content of this entry.  It is the time the feed was parsed
+     * and is carried over unchanged when the entry is revalidated, so a
+     * sanitized variant built from the same content remains valid.
+     *
+     * @return a long
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Digest of the response body the feed was parsed from, used to recognize
+     * an identical body without parsing it.
+     *
+     * @return a {@link java.lang.String} object, or <code>null</code> if not known
+     */
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
+    /**
+     * <p>Getter for the field <code>fetchedTime</code>.</p>
+     *
+     * @return a long
+     */
+    public long getFetchedTime() {
+        return fetchedTime;
+    }
+
+    /**
+     * <p>Getter for the field <code>expirationTime</code>.</p>
+     *
+     * @return a long
+     */
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
+}
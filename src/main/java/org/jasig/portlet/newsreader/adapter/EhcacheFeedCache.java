@@ -0,0 +1,93 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+
+/**
+ * The news cache as an Ehcache cache, configured in <code>ehcache.xml</code>.
+ * Ehcache bounds it by element count and time to live;  an optional
+ * {@link FeedCacheCapacity} bounds it by the estimated size of its entries as
+ * well.
+ *
+ * @since 6.0.0
+ */
+public class EhcacheFeedCache implements FeedCache {
+
+    private Cache cache;
+    private FeedCacheCapacity capacity;
+
+    /**
+     * <p>Setter for the field <code>cache</code>.</p>
+     *
+     * @param cache a {@link net.sf.ehcache.Cache} object
+     */
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Optional bound on the estimated size of the entries.  It must follow
+     * the same Ehcache cache.
+     *
+     * @param capacity a {@link org.jasig.portlet.newsreader.adapter.FeedCacheCapacity} object
+     */
+    public void setCapacity(FeedCacheCapacity capacity) {
+        this.capacity = capacity;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object get(String key) {
+        final Element element = cache.get(key);
+        return element != null ? element.getObjectValue() : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object peek(String key) {
+        final Element element = cache.getQuiet(key);
+        return element != null ? element.getObjectValue() : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void put(String key, Object value, long bytes) {
+        final Element element = new Element(key, value);
+        if (capacity != null) {
+            capacity.put(element, bytes);
+        } else {
+            cache.put(element);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void remove(String key) {
+        cache.remove(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clear() {
+        cache.removeAll();
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hard limits on the work a single feed fetch may cause:  the bytes read from
+ * the response, the entries kept from the feed and the wall-clock time spent
+ * reading and parsing it.  Feeds can be added by any user, so without these a
+ * single very large or very slow document could tie up a request thread and a
+ * large part of the heap.
+ * <p>
+ * A fetch that exceeds the byte or time budget is cut off and fails with a
+ * {@link FeedBudgetExceededException};  a feed with more entries than the
+ * entry budget is kept with only the first entries.  Either way the feed and
+ * the budget are counted for administrators, for at most
+ * <code>maxExceededFeeds</code> feeds and budgets;  beyond that the count of
+ * the feed that exceeded its budget longest ago is dropped.
+ *
+ * @since 6.0.0
+ */
+public class FeedBudget {
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * The limits a fetch can exceed.
+     */
+    public enum Limit {
+        /** Bytes of the (decompressed) response body. */
+        BYTES,
+        /** Entries in the feed. */
+        ENTRIES,
+        /** Milliseconds spent reading and parsing the response. */
+        TIME
+    }
+
+    private long maxResponseBytes = 5L * 1024 * 1024;
+    private int maxEntries = 500;
+    private long maxParseMillis = 15000;
+    private int maxExceededFeeds = 500;
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * <p>Getter for the field <code>maxResponseBytes</code>.</p>
+     *
+     * @return a long
+     */
+    public long getMaxResponseBytes() {
+        return maxResponseBytes;
+    }
+
+    /**
+     * Most bytes read from any response, or zero or less for no limit.
+     *
+     * @param maxResponseBytes a long
+     */
+    public void setMaxResponseBytes(long maxResponseBytes) {
+        this.maxResponseBytes = maxResponseBytes;
+    }
+
+    /**
+     * <p>Getter for the field <code>maxEntries</code>.</p>
+     *
+     * @return a int
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Most entries kept from any feed, or zero or less for no limit.
+     *
+     * @param maxEntries a int
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * <p>Getter for the field <code>maxParseMillis</code>.</p>
+     *
+     * @return a long
+     */
+    public long getMaxParseMillis() {
+        return maxParseMillis;
+    }
+
+    /**
+     * Longest time spent reading and parsing any response, or zero or less
+     * for no limit.
+     *
+     * @param maxParseMillis a long
+     */
+    public void setMaxParseMillis(long maxParseMillis) {
+        this.maxParseMillis = maxParseMillis;
+    }
+
+    /**
+     * Most feeds and budgets counted at any time.  Feeds are added by users,
+     * so this keeps the counts from growing without bound.
+     *
+     * @param maxExceededFeeds a int
+     */
+    public void setMaxExceededFeeds(int maxExceededFeeds) {
+        this.maxExceededFeeds = maxExceededFeeds;
+    }
+
+    /**
+     * Wrap a response body so that reading past the byte budget, or after the
+     * time budget has run out, fails.  The time budget starts now.
+     *
+     * @param in the response body
+     * @return the wrapped stream
+     */
+    FeedBudgetInputStream open(InputStream in) {
+        final long deadline = maxParseMillis > 0 ? System.currentTimeMillis() + maxParseMillis : 0;
+        return new FeedBudgetInputStream(in, maxResponseBytes, deadline);
+    }
+
+    /**
+     * Record that a fetch of the specified URL exceeded a budget.
+     *
+     * @param url URL of the feed
+     * @param limit the budget exceeded
+     */
+    public void recordExceeded(String url, Limit limit) {
+        final String key = limit + " " + url;
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            if (counters.size() >= maxExceededFeeds) {
+                removeOldestCounter();
+            }
+            final Counter created = new Counter(url, limit);
+            counter = counters.putIfAbsent(key, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.increment(System.currentTimeMillis());
+        log.warn("Feed {} exceeded its {} budget", url, limit);
+    }
+
+    private void removeOldestCounter() {
+        Map.Entry<String, Counter> oldest = null;
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            if (oldest == null || entry.getValue().lastTime < oldest.getValue().lastTime) {
+                oldest = entry;
+            }
+        }
+        if (oldest != null) {
+            counters.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    /**
+     * Create the exception for a fetch that exceeded a budget, and record it.
+     *
+     * @param url URL of the feed
+     * @param limit the budget exceeded
+     * @return the exception to throw
+     */
+    FeedBudgetExceededException exceeded(String url, Limit limit) {
+        recordExceeded(url, limit);
+        return new FeedBudgetExceededException(url, limit, getValue(limit));
+    }
+
+    private long getValue(Limit limit) {
+        switch (limit) {
+            case BYTES:
+                return maxResponseBytes;
+            case ENTRIES:
+                return maxEntries;
+            default:
+                return maxParseMillis;
+        }
+    }
+
+    /**
+     * @return how often each feed has exceeded each budget, by URL
+     */
+    public List<ExceededStatus> getExceeded() {
+        final List<ExceededStatus> result = new ArrayList<>();
+        for (Counter counter : counters.values()) {
+            result.add(counter.getStatus());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static final class Counter {
+
+        private final String url;
+        private final Limit limit;
+        private final AtomicLong count = new AtomicLong();
+        private volatile long lastTime;
+
+        private Counter(String url, Limit limit) {
+            this.url = url;
+            this.limit = limit;
+        }
+
+        private void increment(long now) {
+            count.incrementAndGet();
+            lastTime = now;
+        }
+
+        private ExceededStatus getStatus() {
+            return new ExceededStatus(url, limit, count.get(), new Date(lastTime));
+        }
+    }
+
+    /**
+     * How often one feed has exceeded one budget, for display to administrators.
+     */
+    public static final class ExceededStatus implements Comparable<ExceededStatus> {
+
+        private final String url;
+        private final Limit limit;
+        private final long count;
+        private final Date lastTime;
+
+        private ExceededStatus(String url, Limit limit, long count, Date lastTime) {
+            this.url = url;
+            this.limit = limit;
+            this.count = count;
+            this.lastTime = lastTime;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public Limit getLimit() {
+            return limit;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public Date getLastTime() {
+            return lastTime;
+        }
+
+        @Override
+        public int compareTo(ExceededStatus that) {
+            final int result = this.url.compareTo(that.url);
+            return result != 0 ? result : this.limit.compareTo(that.limit);
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+/**
+ * Thrown when a feed fetch is cut off because it exceeded one of its
+ * {@link FeedBudget budgets}.
+ *
+ * @since 6.0.0
+ */
+public class FeedBudgetExceededException extends NewsException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String url;
+    private final FeedBudget.Limit limit;
+    private final long budget;
+
+    /**
+     * <p>Constructor for FeedBudgetExceededException.</p>
+     *
+     * @param url URL of the feed
+     * @param limit the budget exceeded
+     * @param budget the value of that budget
+     */
+    public FeedBudgetExceededException(String url, FeedBudget.Limit limit, long budget) {
+        super("Feed " + url + " exceeded its " + limit + " budget of " + budget);
+        this.url = url;
+        this.limit = limit;
+        this.budget = budget;
+    }
+
+    /**
+     * <p>Getter for the field <code>url</code>.</p>
+     *
+     * @return a {@link java.lang.String} object
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * <p>Getter for the field <code>limit</code>.</p>
+     *
+     * @return a {@link org.jasig.portlet.newsreader.adapter.FeedBudget.Limit} object
+     */
+    public FeedBudget.Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * <p>Getter for the field <code>budget</code>.</p>
+     *
+     * @return a long
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails reads past a byte limit or after a deadline, and remembers which one
+ * it hit.  Parsers wrap the resulting <code>IOException</code> in their own
+ * exceptions, so callers should ask {@link #getExceeded()} rather than
+ * inspect what they catch.
+ *
+ * @since 6.0.0
+ */
+final class FeedBudgetInputStream extends FilterInputStream {
+
+    private final long maxBytes;
+    private final long deadline;
+    private long count;
+    private volatile FeedBudget.Limit exceeded;
+
+    /**
+     * @param in the stream to read
+     * @param maxBytes most bytes to read, or zero or less for no limit
+     * @param deadline time after which reads fail, or zero for none
+     */
+    FeedBudgetInputStream(InputStream in, long maxBytes, long deadline) {
+        super(in);
+        this.maxBytes = maxBytes;
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return the budget exceeded, or <code>null</code>
+     */
+    FeedBudget.Limit getExceeded() {
+        return exceeded;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkDeadline();
+        final int b = super.read();
+        if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkDeadline();
+        if (maxBytes > 0) {
+            // read at most one byte past the limit, to detect it
+            len = (int) Math.min(len, maxBytes - count + 1);
+        }
+        final int n = super.read(b, off, len);
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkDeadline();
+        final long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        // a reset would make the count meaningless
+        return false;
+    }
+
+    private void count(long n) throws IOException {
+        count += n;
+        if (maxBytes > 0 && count > maxBytes) {
+            fail(FeedBudget.Limit.BYTES);
+        }
+    }
+
+    private void checkDeadline() throws IOException {
+        if (exceeded != null) {
+            throw new IOException("Feed exceeded its " + exceeded + " budget");
+        }
+        if (deadline > 0 && System.currentTimeMillis() > deadline) {
+            fail(FeedBudget.Limit.TIME);
+        }
+    }
+
+    private void fail(FeedBudget.Limit limit) throws IOException {
+        exceeded = limit;
+        throw new IOException("Feed exceeded its " + limit + " budget");
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+/**
+ * The news cache as adapters see it:  parsed feeds, their sanitized variants
+ * and copies shared by other nodes or read back from disk, by cache key.  Implementations decide
+ * which entries to keep within their capacity, weighing each by the
+ * estimated size it is put with, and how long to keep them;  adapters apply
+ * their own expiry to the values and rely on entries outliving it by the
+ * stale-serving windows.
+ * <p>
+ * Implementations must be safe for concurrent use.
+ *
+ * @since 6.0.0
+ */
+public interface FeedCache {
+
+    /**
+     * Look up an entry, counting this as a read of it.
+     *
+     * @param key cache key
+     * @return the cached value or <code>null</code>
+     */
+    Object get(String key);
+
+    /**
+     * Look up an entry without counting a read of it, so that background
+     * work does not keep entries alive.
+     *
+     * @param key cache key
+     * @return the cached value or <code>null</code>
+     */
+    Object peek(String key);
+
+    /**
+     * Add or replace an entry.  The cache may decline to keep it.
+     *
+     * @param key cache key
+     * @param value the value to cache
+     * @param bytes the estimated size of the value
+     */
+    void put(String key, Object value, long bytes);
+
+    /**
+     * <p>remove.</p>
+     *
+     * @param key cache key
+     */
+    void remove(String key);
+
+    /**
+     * Remove every entry.
+     */
+    void clear();
+
+}
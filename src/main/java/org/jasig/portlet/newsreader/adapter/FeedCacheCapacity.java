@@ -0,0 +1,334 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListener;
+import org.jasig.portlet.newsreader.model.FeedSnapshot;
+import org.jasig.portlet.newsreader.model.NewsFeedItem;
+import org.jasig.portlet.newsreader.processor.ParsedEntry;
+import org.jasig.portlet.newsreader.processor.ParsedFeed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounds the news cache by the estimated heap its feeds retain rather than by
+ * their number, since a five-item headline feed and a five-hundred-item
+ * archive differ in size a hundredfold.
+ * <p>
+ * Adapters put feeds through {@link #put(Element, long)} with an estimate of
+ * their size from {@link #estimateSize(ParsedFeed)}.  A sanitized copy of a
+ * feed is given the size of the feed it was made from, plus the size of its
+ * entries' JSON if that is kept once written:  its entries are sanitized
+ * (and written) as they are read, so that is the size it grows to, not the
+ * size it has when it is put.  Whenever the total exceeds <code>maxBytes</code>,
+ * the least recently used feeds are removed until it no longer does.
+ *
+ * @since 6.0.0
+ */
+public class FeedCacheCapacity implements CacheEventListener {
+
+    // rough sizes on a 64-bit JVM with compressed references
+    private static final int STRING_OVERHEAD = 40;
+    private static final int FEED_OVERHEAD = 600;
+    private static final int ENTRY_OVERHEAD = 500;
+    // field names, dates, punctuation and the array holding an entry's JSON
+    private static final int JSON_OVERHEAD = 250;
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    private Cache cache;
+    private long maxBytes = 64L * 1024 * 1024;
+
+    private final ConcurrentMap<Object, Long> weights = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * <p>Setter for the field <code>cache</code>.</p>
+     *
+     * @param cache a {@link net.sf.ehcache.Cache} object
+     */
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Largest total estimated size of the cached feeds, or -1 for no limit.
+     *
+     * @param maxBytes a long
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Follow the removal of feeds from the cache, whether by expiry, eviction
+     * or explicitly.
+     */
+    public void init() {
+        cache.getCacheEventNotificationService().registerListener(this);
+    }
+
+    /**
+     * <p>destroy.</p>
+     */
+    public void destroy() {
+        cache.getCacheEventNotificationService().unregisterListener(this);
+    }
+
+    /**
+     * Estimate the heap retained by a parsed feed.
+     *
+     * @param feed a {@link org.jasig.portlet.newsreader.processor.ParsedFeed} object
+     * @return the estimated size in bytes
+     */
+    public static long estimateSize(ParsedFeed feed) {
+        long size = FEED_OVERHEAD + size(feed.getTitle()) + size(feed.getLink())
+                + size(feed.getAuthor()) + size(feed.getCopyright());
+        for (ParsedEntry entry : feed.getEntries()) {
+            size += ENTRY_OVERHEAD + size(entry.getTitle()) + size(entry.getLink()) + size(entry.getUri())
+                    + size(entry.getDescription()) + size(entry.getContent())
+                    + size(entry.getImageUrl()) + size(entry.getVideoUrl());
+            // author and category names are interned and shared between feeds
+            size += 8L * (count(entry.getAuthors()) + count(entry.getCategories()));
+        }
+        return size;
+    }
+
+    /**
+     * Estimate the heap retained by the UTF-8 JSON of a feed's entries, kept
+     * once they are written.  Text is counted at a byte a character.
+     *
+     * @param feed a {@link org.jasig.portlet.newsreader.processor.ParsedFeed} object
+     * @return the estimated size in bytes
+     */
+    public static long estimateJsonSize(ParsedFeed feed) {
+        long size = 0;
+        for (ParsedEntry entry : feed.getEntries()) {
+            size += JSON_OVERHEAD + length(entry.getTitle()) + length(entry.getLink()) + length(entry.getUri())
+                    + length(entry.getDescription()) + length(entry.getContent())
+                    + length(entry.getImageUrl()) + length(entry.getVideoUrl());
+            size += 20L * (count(entry.getAuthors()) + count(entry.getCategories()));
+        }
+        return size;
+    }
+
+    /**
+     * Estimate the heap retained by a sanitized feed with all its entries read.
+     *
+     * @param snapshot a {@link org.jasig.portlet.newsreader.model.FeedSnapshot} object
+     * @return the estimated size in bytes
+     */
+    public static long estimateSize(FeedSnapshot snapshot) {
+        long size = FEED_OVERHEAD + size(snapshot.getTitle()) + size(snapshot.getLink())
+                + size(snapshot.getAuthor()) + size(snapshot.getCopyright());
+        for (NewsFeedItem item : snapshot.getEntries()) {
+            size += ENTRY_OVERHEAD + size(item.getTitle()) + size(item.getLink()) + size(item.getUri())
+                    + size(item.getDescription()) + size(item.getContent())
+                    + size(item.getImageUrl()) + size(item.getVideoUrl());
+            // author and category names are interned and shared between feeds
+            size += 8L * (count(item.getAuthors()) + count(item.getCategories()));
+        }
+        return size;
+    }
+
+    private static int count(List<String> names) {
+        return names != null ? names.size() : 0;
+    }
+
+    private static long length(String s) {
+        return s != null ? s.length() : 0;
+    }
+
+    private static long size(String s) {
+        return s != null ? STRING_OVERHEAD + 2L * s.length() : 0;
+    }
+
+    /**
+     * Put an element in the cache, then remove the least recently used
+     * elements other than this one until the cache is within its capacity.
+     *
+     * @param element a {@link net.sf.ehcache.Element} object
+     * @param bytes the estimated size of the element's value
+     */
+    public void put(Element element, long bytes) {
+        cache.put(element);
+        final Long previous = weights.put(element.getObjectKey(), bytes);
+        totalBytes.addAndGet(bytes - (previous != null ? previous : 0));
+        if (maxBytes >= 0 && totalBytes.get() > maxBytes) {
+            evict(element.getObjectKey());
+        }
+    }
+
+    private synchronized void evict(Object keep) {
+        while (totalBytes.get() > maxBytes) {
+            Object oldestKey = null;
+            long oldestTime = Long.MAX_VALUE;
+            for (Object key : weights.keySet()) {
+                if (key.equals(keep)) {
+                    continue;
+                }
+                final Element element = cache.getQuiet(key);
+                if (element == null) {
+                    forget(key);
+                    continue;
+                }
+                final long time = Math.max(element.getLastAccessTime(), element.getLatestOfCreationAndUpdateTime());
+                if (time < oldestTime) {
+                    oldestTime = time;
+                    oldestKey = key;
+                }
+            }
+            if (oldestKey == null) {
+                // only the new element is left;  keep it even if it alone is too large
+                return;
+            }
+            log.debug("Removing {} from the news cache to stay within {} bytes", oldestKey, maxBytes);
+            cache.remove(oldestKey);
+            forget(oldestKey);
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private void forget(Object key) {
+        final Long bytes = weights.remove(key);
+        if (bytes != null) {
+            totalBytes.addAndGet(-bytes);
+        }
+    }
+
+    /**
+     * <p>Getter for the field <code>maxBytes</code>.</p>
+     *
+     * @return a long
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the total estimated size of the cached feeds
+     */
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    /**
+     * @return number of feeds removed to stay within capacity
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Get the estimated size of every cached feed, largest first.
+     *
+     * @return a {@link java.util.List} object
+     */
+    public List<Weight> getWeights() {
+        final List<Weight> result = new ArrayList<>();
+        for (Map.Entry<Object, Long> entry : weights.entrySet()) {
+            result.add(new Weight(String.valueOf(entry.getKey()), entry.getValue()));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    @Override
+    public void notifyElementRemoved(Ehcache cache, Element element) throws CacheException {
+        forget(element.getObjectKey());
+    }
+
+    @Override
+    public void notifyElementPut(Ehcache cache, Element element) throws CacheException {
+        // weighed by put(Element, long)
+    }
+
+    @Override
+    public void notifyElementUpdated(Ehcache cache, Element element) throws CacheException {
+        // weighed by put(Element, long)
+    }
+
+    @Override
+    public void notifyElementExpired(Ehcache cache, Element element) {
+        forget(element.getObjectKey());
+    }
+
+    @Override
+    public void notifyElementEvicted(Ehcache cache, Element element) {
+        forget(element.getObjectKey());
+    }
+
+    @Override
+    public void notifyRemoveAll(Ehcache cache) {
+        for (Object key : weights.keySet()) {
+            forget(key);
+        }
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        throw new CloneNotSupportedException();
+    }
+
+    /**
+     * The estimated size of one cached feed, for display to administrators.
+     */
+    public static final class Weight implements Comparable<Weight> {
+
+        private final String key;
+        private final long bytes;
+
+        private Weight(String key, long bytes) {
+            this.key = key;
+            this.bytes = bytes;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public int compareTo(Weight that) {
+            final int result = Long.compare(that.bytes, this.bytes);
+            return result != 0 ? result : this.key.compareTo(that.key);
+        }
+    }
+
+}
@@ -0,0 +1,405 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps request threads away from feed origins that are failing.  After
+ * <code>failureThreshold</code> consecutive failed fetches of a URL its
+ * circuit opens:  fetches of that URL then fail immediately, without any
+ * network traffic, until a backoff period has passed.  The backoff starts at
+ * <code>initialBackoffSeconds</code> and doubles, up to
+ * <code>maxBackoffSeconds</code>, every time the origin is tried and fails
+ * again.
+ * <p>
+ * When the backoff expires the origin is probed in the background with the
+ * loader of the failed fetch, which repopulates the cache if it succeeds.
+ * Feeds nobody requested while their circuit was open are not probed;  the
+ * next request for one makes the attempt itself.  A request arriving before
+ * the probe may also make the attempt;  either way only one attempt is let
+ * through at a time.  Any successful fetch closes the circuit.
+ * <p>
+ * Circuits are kept for at most <code>maxCircuits</code> URLs.  Once there
+ * are that many, circuits neither failed nor requested within
+ * <code>maxBackoffSeconds</code> are forgotten to make room;  if none is,
+ * further failing URLs are not tracked until some circuit closes.
+ *
+ * @since 6.0.0
+ */
+public class FeedCircuitBreaker {
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * State of the circuit for one URL.
+     */
+    public enum State {
+        /** Fetches go to the origin;  the URL has failed fewer times than the threshold. */
+        CLOSED,
+        /** Fetches fail immediately until the backoff expires. */
+        OPEN,
+        /** The backoff has expired and one attempt is being made. */
+        HALF_OPEN
+    }
+
+    private int failureThreshold = 3;
+    private int initialBackoffSeconds = 30;
+    private int maxBackoffSeconds = 1800;
+    private int maxCircuits = 500;
+
+    private ScheduledExecutorService executor;
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong probeCount = new AtomicLong();
+    private final AtomicLong skippedProbeCount = new AtomicLong();
+
+    /**
+     * Number of consecutive failures that opens the circuit for a URL.
+     *
+     * @param failureThreshold a int
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * <p>Setter for the field <code>initialBackoffSeconds</code>.</p>
+     *
+     * @param initialBackoffSeconds a int
+     */
+    public void setInitialBackoffSeconds(int initialBackoffSeconds) {
+        this.initialBackoffSeconds = initialBackoffSeconds;
+    }
+
+    /**
+     * <p>Setter for the field <code>maxBackoffSeconds</code>.</p>
+     *
+     * @param maxBackoffSeconds a int
+     */
+    public void setMaxBackoffSeconds(int maxBackoffSeconds) {
+        this.maxBackoffSeconds = maxBackoffSeconds;
+    }
+
+    /**
+     * Most URLs with a circuit at any time.  Feeds are added by users, so
+     * this keeps failing URLs from growing the breaker without bound.
+     *
+     * @param maxCircuits a int
+     */
+    public void setMaxCircuits(int maxCircuits) {
+        this.maxCircuits = maxCircuits;
+    }
+
+    /**
+     * <p>init.</p>
+     */
+    public void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new FeedRefreshScheduler.DaemonThreadFactory("feed-circuit-probe-"));
+    }
+
+    /**
+     * <p>destroy.</p>
+     */
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Check that a fetch of the specified URL may go to the origin.
+     *
+     * @param url URL of the feed
+     * @throws org.jasig.portlet.newsreader.adapter.NewsException if the circuit for the URL is open
+     */
+    public void checkAvailable(String url) throws NewsException {
+        final Circuit circuit = circuits.get(url);
+        if (circuit != null && !circuit.allowAttempt(System.currentTimeMillis())) {
+            rejectedCount.incrementAndGet();
+            circuit.recordRejection();
+            throw new NewsException("Feed " + url + " is unavailable after " + circuit.getFailures()
+                    + " failures;  it will be tried again after " + new Date(circuit.getRetryTime()));
+        }
+    }
+
+    /**
+     * Record a successful fetch of the specified URL, closing its circuit.
+     *
+     * @param url URL of the feed
+     */
+    public void recordSuccess(String url) {
+        if (circuits.remove(url) != null) {
+            log.info("Feed {} is available again", url);
+        }
+    }
+
+    /**
+     * Record a failed fetch of the specified URL.  If this opens the circuit,
+     * the loader is scheduled to probe the origin once the backoff expires.
+     *
+     * @param url URL of the feed
+     * @param cause why the fetch failed
+     * @param probe repeats the failed fetch
+     */
+    public void recordFailure(String url, Exception cause, Callable<?> probe) {
+        final long now = System.currentTimeMillis();
+        Circuit circuit = circuits.get(url);
+        if (circuit == null) {
+            if (circuits.size() >= maxCircuits && !removeIdleCircuits(now)) {
+                log.debug("{} feeds are failing already;  not tracking feed {}", circuits.size(), url);
+                return;
+            }
+            final Circuit created = new Circuit(url);
+            circuit = circuits.putIfAbsent(url, created);
+            if (circuit == null) {
+                circuit = created;
+            }
+        }
+        final long backoff = circuit.recordFailure(now, cause);
+        if (backoff > 0) {
+            log.warn("Opened the circuit for feed " + url + ";  it will not be fetched for " + backoff / 1000 + " seconds");
+            scheduleProbe(url, circuit, probe, backoff);
+        }
+    }
+
+    /**
+     * Forget the circuits neither failed nor requested lately.
+     *
+     * @return <code>true</code> if there is now room for another circuit
+     */
+    private boolean removeIdleCircuits(long now) {
+        for (Map.Entry<String, Circuit> entry : circuits.entrySet()) {
+            if (entry.getValue().isIdle(now)) {
+                circuits.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        return circuits.size() < maxCircuits;
+    }
+
+    private void scheduleProbe(final String url, final Circuit circuit, final Callable<?> probe, long delay) {
+        if (executor == null) {
+            return;
+        }
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!circuit.takeRejections()) {
+                    log.debug("Feed {} was not requested while its circuit was open;  not probing it", url);
+                    skippedProbeCount.incrementAndGet();
+                    return;
+                }
+                probeCount.incrementAndGet();
+                try {
+                    probe.call();
+                } catch (Exception e) {
+                    // recorded by the loader
+                    log.debug("Probe of feed {} failed: {}", url, e.getMessage());
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the circuits of every URL that has failed since it last succeeded, by URL
+     */
+    public List<CircuitStatus> getCircuits() {
+        final long now = System.currentTimeMillis();
+        final List<CircuitStatus> result = new ArrayList<>();
+        for (Map.Entry<String, Circuit> entry : circuits.entrySet()) {
+            result.add(entry.getValue().getStatus(now));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * @return number of fetches refused because their circuit was open
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return number of background probes run
+     */
+    public long getProbeCount() {
+        return probeCount.get();
+    }
+
+    /**
+     * @return number of probes skipped because nobody requested the feed during its backoff
+     */
+    public long getSkippedProbeCount() {
+        return skippedProbeCount.get();
+    }
+
+    private final class Circuit {
+
+        private final String url;
+        private int failures;
+        private long backoff;
+        private long retryTime;
+        private boolean attempting;
+        private long lastFailureTime;
+        private long lastRejectionTime;
+        private String lastError;
+        private int rejections;
+
+        private Circuit(String url) {
+            this.url = url;
+        }
+
+        private synchronized boolean allowAttempt(long now) {
+            if (failures < failureThreshold) {
+                return true;
+            }
+            if (now < retryTime || attempting) {
+                return false;
+            }
+            attempting = true;
+            return true;
+        }
+
+        private synchronized void recordRejection() {
+            rejections++;
+            lastRejectionTime = System.currentTimeMillis();
+        }
+
+        /**
+         * @return <code>true</code> if the URL has neither failed nor been requested within the longest backoff
+         */
+        private synchronized boolean isIdle(long now) {
+            return !attempting && now - Math.max(lastFailureTime, lastRejectionTime) > maxBackoffSeconds * 1000L;
+        }
+
+        /**
+         * @return <code>true</code> if any request was refused since the last call
+         */
+        private synchronized boolean takeRejections() {
+            final boolean requested = rejections > 0;
+            rejections = 0;
+            return requested;
+        }
+
+        /**
+         * @return the new backoff in milliseconds if the circuit is now open, otherwise zero
+         */
+        private synchronized long recordFailure(long now, Exception cause) {
+            final boolean wasAttempting = attempting;
+            failures++;
+            lastFailureTime = now;
+            lastError = cause.getMessage();
+            attempting = false;
+            if (failures < failureThreshold || (failures > failureThreshold && !wasAttempting)) {
+                // still closed, or a fetch started before the circuit opened
+                return 0;
+            }
+            backoff = backoff == 0 ? initialBackoffSeconds * 1000L : Math.min(backoff * 2, maxBackoffSeconds * 1000L);
+            retryTime = now + backoff;
+            return backoff;
+        }
+
+        private synchronized int getFailures() {
+            return failures;
+        }
+
+        private synchronized long getRetryTime() {
+            return retryTime;
+        }
+
+        private synchronized CircuitStatus getStatus(long now) {
+            final State state = failures < failureThreshold ? State.CLOSED
+                    : attempting || now >= retryTime ? State.HALF_OPEN : State.OPEN;
+            return new CircuitStatus(url, state, failures,
+                    new Date(lastFailureTime), lastError, state == State.CLOSED ? null : new Date(retryTime));
+        }
+    }
+
+    /**
+     * Point-in-time view of one circuit, for display to administrators.
+     */
+    public static final class CircuitStatus implements Comparable<CircuitStatus> {
+
+        private final String url;
+        private final State state;
+        private final int failures;
+        private final Date lastFailure;
+        private final String lastError;
+        private final Date retryTime;
+
+        private CircuitStatus(String url, State state, int failures, Date lastFailure, String lastError, Date retryTime) {
+            this.url = url;
+            this.state = state;
+            this.failures = failures;
+            this.lastFailure = lastFailure;
+            this.lastError = lastError;
+            this.retryTime = retryTime;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        public Date getLastFailure() {
+            return lastFailure;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+
+        /**
+         * @return when the origin will next be tried, or <code>null</code> if the circuit is closed
+         */
+        public Date getRetryTime() {
+            return retryTime;
+        }
+
+        @Override
+        public int compareTo(CircuitStatus that) {
+            return this.url.compareTo(that.url);
+        }
+    }
+
+}
@@ -0,0 +1,474 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jasig.portlet.newsreader.dao.SharedFeed;
+import org.jasig.portlet.newsreader.dao.SharedFeedStore;
+import org.jasig.portlet.newsreader.model.FeedSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * Coordinates the fetching of feeds between the nodes of a cluster, each with
+ * its own news cache, through the portlet database.
+ * <p>
+ * A node that builds a sanitized feed publishes it in the background.  A node
+ * missing a current copy of a feed reads the published copy instead of
+ * fetching the feed;  once that copy has expired, the first node to take the
+ * feed's lease fetches it again for all of them, while the others keep
+ * serving the expired copy.  There is one lease per feed, whatever the
+ * policies its copies are sanitized with, so the node holding it publishes
+ * each of them.  A lease is released when the fetched feed has
+ * been published, and otherwise expires after <code>leaseSeconds</code>, so
+ * a node that stops while holding one delays the feed by that long at most.
+ * Lease expiry is judged by each node's own clock.  A node with no copy of a
+ * feed at all also takes the lease before fetching it;  if another node
+ * holds it, the node waits up to <code>waitSeconds</code> for that node's
+ * copy.
+ * <p>
+ * A node whose fetch failed keeps the lease until it expires, so that no
+ * node fetches the feed again sooner, and does not read the shared copy or
+ * try the lease again until then.  A node refused the lease waits
+ * <code>recheckSeconds</code> before trying again.
+ * <p>
+ * A failure to reach the database is logged and treated as if there were no
+ * published copy and no other node holding the lease, so the node fetches
+ * the feed itself.
+ *
+ * @since 6.0.0
+ */
+public class FeedCoordinator {
+
+    private static final long WAIT_INTERVAL_MILLIS = 250;
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    private boolean enabled = false;
+    private SharedFeedStore store;
+    private String nodeId;
+    private int leaseSeconds = 120;
+    private int waitSeconds = 10;
+    private int recheckSeconds = 15;
+
+    private ExecutorService publisher;
+    private final ConcurrentMap<String, Publication> pending = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> published = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> backoffs = new ConcurrentHashMap<>();
+
+    private final AtomicLong readCount = new AtomicLong();
+    private final AtomicLong leaseCount = new AtomicLong();
+    private final AtomicLong leaseRefusedCount = new AtomicLong();
+    private final AtomicLong publishCount = new AtomicLong();
+    private final AtomicLong failedFetchCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * <p>Setter for the field <code>store</code>.</p>
+     *
+     * @param store a {@link org.jasig.portlet.newsreader.dao.SharedFeedStore} object
+     */
+    public void setStore(SharedFeedStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Whether feeds are shared at all.  Single-node installations leave this
+     * off to spare the database.
+     *
+     * @param enabled a boolean
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * <p>isEnabled.</p>
+     *
+     * @return a boolean
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Identifier of this node, unique within the cluster.  Defaults to the
+     * host name followed by a random suffix.
+     *
+     * @param nodeId a {@link java.lang.String} object
+     */
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * Longest time a node may hold the lease on a feed without publishing it.
+     *
+     * @param leaseSeconds a int
+     */
+    public void setLeaseSeconds(int leaseSeconds) {
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    /**
+     * Longest time a node with no copy of a feed waits for the node holding
+     * its lease to publish it, before fetching the feed itself.
+     *
+     * @param waitSeconds a int
+     */
+    public void setWaitSeconds(int waitSeconds) {
+        this.waitSeconds = waitSeconds;
+    }
+
+    /**
+     * How long a node refused the lease on a feed serves its copy before
+     * reading the shared copy and trying the lease again.
+     *
+     * @param recheckSeconds a int
+     */
+    public void setRecheckSeconds(int recheckSeconds) {
+        this.recheckSeconds = recheckSeconds;
+    }
+
+    /**
+     * <p>init.</p>
+     */
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        if (nodeId == null || nodeId.trim().isEmpty()) {
+            String host;
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                host = "localhost";
+            }
+            nodeId = host + "-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        publisher = Executors.newSingleThreadExecutor(new FeedRefreshScheduler.DaemonThreadFactory("feed-publish-"));
+        log.info("Coordinating feed fetches with other nodes as {}", nodeId);
+    }
+
+    /**
+     * Publish the feeds still pending, waiting a few seconds at most.
+     */
+    public void destroy() {
+        if (publisher != null) {
+            publisher.shutdown();
+            try {
+                if (!publisher.awaitTermination(5, TimeUnit.SECONDS)) {
+                    log.warn("{} feeds were not published before shutdown", pending.size());
+                    publisher.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                publisher.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Read the copy of a feed published by any node.
+     *
+     * @param feedKey cache key of the feed
+     * @param key cache key of the sanitized feed
+     * @return the published feed, or <code>null</code> if there is none
+     */
+    public StoredFeed getSharedFeed(String feedKey, String key) {
+        final SharedFeed shared;
+        try {
+            shared = store.getSharedFeed(FeedSnapshotCodec.digest(key));
+        } catch (DataAccessException e) {
+            log.warn("Failed to read the shared copy of feed " + key, e);
+            failureCount.incrementAndGet();
+            return null;
+        }
+        if (shared == null) {
+            return null;
+        }
+        try {
+            final StoredFeed feed = FeedSnapshotCodec.decode(ByteBuffer.wrap(shared.getData()));
+            if (!key.equals(feed.getKey())) {
+                return null;
+            }
+            readCount.incrementAndGet();
+            if (!feed.isExpired(System.currentTimeMillis())) {
+                // some node has fetched the feed since
+                backoffs.remove(feedKey);
+            }
+            return feed;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable shared copy of feed " + key, e);
+            failureCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Read the copy of a feed published by any node, waiting for one up to
+     * <code>waitSeconds</code> if there is none yet.
+     *
+     * @param feedKey cache key of the feed
+     * @param key cache key of the sanitized feed
+     * @return the published feed, or <code>null</code> if none was published in time
+     */
+    public StoredFeed awaitSharedFeed(String feedKey, String key) {
+        final long deadline = System.currentTimeMillis() + waitSeconds * 1000L;
+        StoredFeed feed = getSharedFeed(feedKey, key);
+        while (feed == null && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(WAIT_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            feed = getSharedFeed(feedKey, key);
+        }
+        return feed;
+    }
+
+    /**
+     * Whether this node should leave a feed alone for now, because its last
+     * fetch of the feed failed or another node held the lease.
+     *
+     * @param key cache key of the feed
+     * @param now the current time
+     * @return <code>true</code> if the lease should not be tried yet
+     */
+    public boolean isBackingOff(String key, long now) {
+        final Long until = backoffs.get(key);
+        if (until == null) {
+            return false;
+        }
+        if (now >= until) {
+            backoffs.remove(key, until);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Record that this node failed to fetch a feed while holding its lease.
+     * The lease is kept until it expires, so that no node tries the feed
+     * again before then.
+     *
+     * @param key cache key of the feed
+     */
+    public void recordFailedFetch(String key) {
+        failedFetchCount.incrementAndGet();
+        backoffs.put(key, System.currentTimeMillis() + leaseSeconds * 1000L);
+        log.debug("Keeping the lease on feed {} for {} seconds after a failed fetch", key, leaseSeconds);
+    }
+
+    /**
+     * Take the lease on a feed, to fetch it on behalf of the other nodes.
+     * Refused without reading the database while this node is backing off.
+     *
+     * @param key cache key of the feed
+     * @return <code>true</code> if this node now holds the lease
+     */
+    public boolean acquireLease(String key) {
+        final long now = System.currentTimeMillis();
+        if (isBackingOff(key, now)) {
+            return false;
+        }
+        try {
+            if (store.storeLease(FeedSnapshotCodec.digest(key), nodeId, now, now + leaseSeconds * 1000L)) {
+                leaseCount.incrementAndGet();
+                log.debug("Took the lease on feed {}", key);
+                return true;
+            }
+        } catch (DataIntegrityViolationException e) {
+            // another node created the lease first
+        } catch (DataAccessException e) {
+            log.warn("Failed to take the lease on feed " + key, e);
+            failureCount.incrementAndGet();
+            return true;
+        }
+        leaseRefusedCount.incrementAndGet();
+        backoffs.put(key, now + recheckSeconds * 1000L);
+        return false;
+    }
+
+    /**
+     * Release the lease on a feed, if this node holds it.
+     *
+     * @param key cache key of the feed
+     */
+    public void releaseLease(String key) {
+        try {
+            store.removeLease(FeedSnapshotCodec.digest(key), nodeId);
+        } catch (DataAccessException e) {
+            log.warn("Failed to release the lease on feed " + key, e);
+            failureCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Publish a sanitized feed in the background, then release the lease on
+     * the feed once none of its copies is waiting to be published.
+     * Nothing is published if this node has published the feed as fetched at
+     * that time already.  Reading the snapshot's entries to publish them
+     * sanitizes any not yet sanitized.
+     *
+     * @param feedKey cache key of the feed
+     * @param key cache key of the sanitized feed
+     * @param fetchedTime when the feed was fetched
+     * @param expirationTime when the feed expires
+     * @param snapshot the sanitized feed
+     */
+    public void publish(String feedKey, final String key, long fetchedTime, long expirationTime, FeedSnapshot snapshot) {
+        final Long last = published.get(key);
+        if (last != null && last >= fetchedTime) {
+            return;
+        }
+        published.put(key, fetchedTime);
+        if (pending.put(key, new Publication(feedKey, new StoredFeed(key, fetchedTime, expirationTime, snapshot))) != null) {
+            // the publication already queued for this feed will pick up this copy
+            return;
+        }
+        publisher.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(key);
+            }
+        });
+    }
+
+    private void write(String key) {
+        final Publication publication = pending.remove(key);
+        if (publication == null) {
+            return;
+        }
+        final StoredFeed feed = publication.feed;
+        try {
+            final SharedFeed shared = new SharedFeed();
+            shared.setId(FeedSnapshotCodec.digest(key));
+            shared.setFetchedTime(feed.getFetchedTime());
+            shared.setExpirationTime(feed.getExpirationTime());
+            shared.setData(FeedSnapshotCodec.encode(feed));
+            store.storeSharedFeed(shared);
+            publishCount.incrementAndGet();
+            log.debug("Published {} bytes for feed {}", shared.getData().length, key);
+        } catch (DataAccessException | IllegalStateException e) {
+            log.warn("Failed to publish feed " + key, e);
+            failureCount.incrementAndGet();
+        }
+        for (Publication other : pending.values()) {
+            if (other.feedKey.equals(publication.feedKey)) {
+                // released once the last copy of the feed is written
+                return;
+            }
+        }
+        releaseLease(publication.feedKey);
+    }
+
+    /**
+     * <p>Getter for the field <code>nodeId</code>.</p>
+     *
+     * @return a {@link java.lang.String} object
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Get the number of feeds read from the copies published by any node.
+     *
+     * @return a long
+     */
+    public long getReadCount() {
+        return readCount.get();
+    }
+
+    /**
+     * Get the number of leases this node has taken.
+     *
+     * @return a long
+     */
+    public long getLeaseCount() {
+        return leaseCount.get();
+    }
+
+    /**
+     * Get the number of times this node found a feed's lease held by another.
+     *
+     * @return a long
+     */
+    public long getLeaseRefusedCount() {
+        return leaseRefusedCount.get();
+    }
+
+    /**
+     * <p>Getter for the field <code>publishCount</code>.</p>
+     *
+     * @return a long
+     */
+    public long getPublishCount() {
+        return publishCount.get();
+    }
+
+    /**
+     * Get the number of fetches that failed while this node held the lease.
+     *
+     * @return a long
+     */
+    public long getFailedFetchCount() {
+        return failedFetchCount.get();
+    }
+
+    /**
+     * Get the number of failed reads and writes of the database.
+     *
+     * @return a long
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * A sanitized feed waiting to be published, with the key of the feed
+     * whose lease is released once it is.
+     */
+    private static final class Publication {
+
+        private final String feedKey;
+        private final StoredFeed feed;
+
+        private Publication(String feedKey, StoredFeed feed) {
+            this.feedKey = feedKey;
+            this.feed = feed;
+        }
+    }
+
+}
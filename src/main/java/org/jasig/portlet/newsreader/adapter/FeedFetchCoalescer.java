@@ -0,0 +1,126 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collapses concurrent fetches of the same cache key into a single fetch.  The
+ * first caller for a key runs the loader on its own thread;  callers arriving
+ * while that fetch is in flight wait for it and receive the same feed, or the
+ * same exception if the fetch fails.
+ * <p>
+ * Loaders should store their result in the cache before returning, so that
+ * requests arriving after the fetch completes find the cached feed rather
+ * than starting another fetch.  Besides fetches, the adapter coalesces the
+ * building of sanitized variants the same way;  a key must always be used
+ * with loaders of the same result type.
+ *
+ * @since 6.0.0
+ */
+public class FeedFetchCoalescer {
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ConcurrentMap<String, FutureTask<?>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong fetchCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Run the loader for the specified key, or wait for a fetch of the same key
+     * that is already in flight.
+     *
+     * @param key cache key of the feed
+     * @param loader fetches the feed and stores it in the cache
+     * @param <T> type of cache entry produced by the loader
+     * @return the cache entry produced by the loader
+     * @throws org.jasig.portlet.newsreader.adapter.NewsException if the fetch failed
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T fetch(String key, Callable<T> loader) throws NewsException {
+        FutureTask<T> task = new FutureTask<>(loader);
+        FutureTask<T> existing = (FutureTask<T>) inFlight.putIfAbsent(key, task);
+
+        if (existing == null) {
+            fetchCount.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+            return getResult(key, task);
+        }
+
+        coalescedCount.incrementAndGet();
+        log.debug("Waiting for in-flight fetch of {}", key);
+        return getResult(key, existing);
+    }
+
+    private <T> T getResult(String key, FutureTask<T> task) throws NewsException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NewsException("Interrupted while waiting for feed " + key, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof NewsException) {
+                throw (NewsException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new NewsException("Error fetching feed " + key, cause);
+        }
+    }
+
+    /**
+     * @return number of fetches actually started
+     */
+    public long getFetchCount() {
+        return fetchCount.get();
+    }
+
+    /**
+     * @return number of requests that waited on a fetch already in flight instead of starting their own
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return number of fetches currently in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+}
@@ -0,0 +1,346 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Refreshes hot entries of the news cache shortly before they expire, so that
+ * request threads almost never have to fetch a feed synchronously.
+ * <p>
+ * A feed becomes hot when an adapter reports a read of its cache key through
+ * {@link #recordAccess(String, Callable)}.  Feeds that have not been read within
+ * <code>hotWindowSeconds</code> are forgotten instead of being refreshed.  A
+ * refreshed feed replaces the previous cache element in a single <code>put</code>,
+ * so readers see either the old or the new feed, never a missing one.  A
+ * loader that is also a {@link Prewarmer} then rebuilds, still in the
+ * background, the copies of the feed read lately, so that the first request
+ * after the refresh does not have to.
+ * <p>
+ * Only feeds still in the cache are refreshed.  A feed removed to keep the
+ * cache within its capacity is fetched again by the next request for it, not
+ * on every scan.
+ *
+ * @since 6.0.0
+ */
+public class FeedRefreshScheduler {
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    private FeedCache cache;
+    private FeedFetchCoalescer coalescer = new FeedFetchCoalescer();
+    private int refreshAheadSeconds = 60;   // Refresh entries expiring within this many seconds
+    private int hotWindowSeconds = 900;     // Feeds not read for this long are no longer refreshed
+    private int checkIntervalSeconds = 15;  // How often to look for entries due for refresh
+    private int poolSize = 2;
+
+    private ScheduledExecutorService executor;
+    private final ConcurrentMap<String, HotFeed> hotFeeds = new ConcurrentHashMap<>();
+
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong skipCount = new AtomicLong();
+    private final AtomicLong coldCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * <p>Setter for the field <code>cache</code>.</p>
+     *
+     * @param cache a {@link org.jasig.portlet.newsreader.adapter.FeedCache} object
+     */
+    public void setCache(FeedCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * <p>Setter for the field <code>coalescer</code>.</p>
+     *
+     * @param coalescer a {@link org.jasig.portlet.newsreader.adapter.FeedFetchCoalescer} object
+     */
+    public void setCoalescer(FeedFetchCoalescer coalescer) {
+        this.coalescer = coalescer;
+    }
+
+    /**
+     * <p>Setter for the field <code>refreshAheadSeconds</code>.</p>
+     *
+     * @param refreshAheadSeconds a int
+     */
+    public void setRefreshAheadSeconds(int refreshAheadSeconds) {
+        this.refreshAheadSeconds = refreshAheadSeconds;
+    }
+
+    /**
+     * <p>Setter for the field <code>hotWindowSeconds</code>.</p>
+     *
+     * @param hotWindowSeconds a int
+     */
+    public void setHotWindowSeconds(int hotWindowSeconds) {
+        this.hotWindowSeconds = hotWindowSeconds;
+    }
+
+    /**
+     * <p>Setter for the field <code>checkIntervalSeconds</code>.</p>
+     *
+     * @param checkIntervalSeconds a int
+     */
+    public void setCheckIntervalSeconds(int checkIntervalSeconds) {
+        this.checkIntervalSeconds = checkIntervalSeconds;
+    }
+
+    /**
+     * <p>Setter for the field <code>poolSize</code>.</p>
+     *
+     * @param poolSize a int
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * <p>init.</p>
+     */
+    public void init() {
+        executor = Executors.newScheduledThreadPool(poolSize, new DaemonThreadFactory("feed-refresh-"));
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refreshDueFeeds();
+            }
+        }, checkIntervalSeconds, checkIntervalSeconds, TimeUnit.SECONDS);
+        log.debug("Feed refresh-ahead scheduler started; refreshAheadSeconds={}, hotWindowSeconds={}",
+                refreshAheadSeconds, hotWindowSeconds);
+    }
+
+    /**
+     * <p>destroy.</p>
+     */
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Record a read of the specified cache key.  The loader is kept so the entry
+     * can be re-fetched in the background;  the loader of the first read since
+     * the feed became hot is used until it goes cold.
+     *
+     * @param key cache key of the feed
+     * @param loader fetches a fresh copy of the feed and stores it in the cache
+     */
+    public void recordAccess(String key, Callable<CachedFeed> loader) {
+        HotFeed hot = hotFeeds.get(key);
+        if (hot == null) {
+            HotFeed created = new HotFeed(loader);
+            hot = hotFeeds.putIfAbsent(key, created);
+            if (hot == null) {
+                hot = created;
+            }
+        }
+        hot.lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Refresh the specified feed in the background as soon as possible, unless
+     * a refresh of it is already running.  Also records a read of the feed.
+     *
+     * @param key cache key of the feed
+     * @param loader fetches a fresh copy of the feed and stores it in the cache
+     */
+    public void refreshNow(final String key, Callable<CachedFeed> loader) {
+        recordAccess(key, loader);
+        final HotFeed hot = hotFeeds.get(key);
+        if (hot != null) {
+            scheduleRefresh(key, hot);
+        }
+    }
+
+    /**
+     * Scan the hot feeds and schedule a refresh for every cached entry that is
+     * about to expire.
+     */
+    protected void refreshDueFeeds() {
+        final long now = System.currentTimeMillis();
+        for (Map.Entry<String, HotFeed> entry : hotFeeds.entrySet()) {
+            final String key = entry.getKey();
+            final HotFeed hot = entry.getValue();
+
+            if (now - hot.lastAccess > TimeUnit.SECONDS.toMillis(hotWindowSeconds)) {
+                // Nobody has read this feed lately;  let it expire normally
+                hotFeeds.remove(key, hot);
+                coldCount.incrementAndGet();
+                log.debug("Feed {} is no longer hot; skipping refresh", key);
+                continue;
+            }
+
+            Object value = cache.peek(key);
+            if (!(value instanceof CachedFeed)) {
+                // removed from the cache;  the next read fetches it
+                continue;
+            }
+            if (((CachedFeed) value).getExpirationTime() - now > TimeUnit.SECONDS.toMillis(refreshAheadSeconds)) {
+                continue;
+            }
+
+            scheduleRefresh(key, hot);
+        }
+    }
+
+    private void scheduleRefresh(final String key, final HotFeed hot) {
+        if (hot.refreshing.compareAndSet(false, true)) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    refresh(key, hot);
+                }
+            });
+        } else {
+            skipCount.incrementAndGet();
+            log.debug("Refresh of feed {} is still in progress; skipping", key);
+        }
+    }
+
+    private void refresh(String key, HotFeed hot) {
+        try {
+            log.debug("Refreshing feed {} ahead of expiration", key);
+            // The loader replaces the cache element itself;  going through the
+            // coalescer lets request threads that miss meanwhile share this fetch
+            CachedFeed feed = coalescer.fetch(key, hot.loader);
+            if (feed.getFeed() != null) {
+                refreshCount.incrementAndGet();
+                if (hot.loader instanceof Prewarmer) {
+                    prewarm(key, (Prewarmer) hot.loader, feed);
+                }
+            } else {
+                failureCount.incrementAndGet();
+            }
+        } catch (NewsException e) {
+            // the origin failing, or its circuit open;  recorded by the adapter
+            failureCount.incrementAndGet();
+            log.debug("Background refresh of feed {} failed: {}", key, e.getMessage());
+        } catch (Exception e) {
+            failureCount.incrementAndGet();
+            log.warn("Background refresh of feed " + key + " failed", e);
+        } finally {
+            hot.refreshing.set(false);
+        }
+    }
+
+    private void prewarm(String key, Prewarmer prewarmer, CachedFeed feed) {
+        try {
+            prewarmer.prewarm(feed);
+        } catch (NewsException e) {
+            // the feed itself was refreshed;  the copy is built by its next read instead
+            log.warn("Failed to rebuild the copies of feed " + key + " after refreshing it", e);
+        }
+    }
+
+    /**
+     * @return number of feeds refreshed in the background
+     */
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * @return number of refreshes skipped because a refresh of the feed was already running
+     */
+    public long getSkipCount() {
+        return skipCount.get();
+    }
+
+    /**
+     * @return number of feeds forgotten because they were not read within the hot window
+     */
+    public long getColdCount() {
+        return coldCount.get();
+    }
+
+    /**
+     * @return number of background refreshes that failed
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * @return number of feeds currently considered hot
+     */
+    public int getHotFeedCount() {
+        return hotFeeds.size();
+    }
+
+    /**
+     * Rebuilds the copies derived from a feed that have been read lately,
+     * such as the variants sanitized with each portlet's policies, once the
+     * feed has been refreshed.
+     */
+    public interface Prewarmer {
+
+        /**
+         * @param feed the feed just refreshed
+         * @throws NewsException if a copy could not be rebuilt
+         */
+        void prewarm(CachedFeed feed) throws NewsException;
+    }
+
+    private static final class HotFeed {
+        private final Callable<CachedFeed> loader;
+        private volatile long lastAccess;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+        private HotFeed(Callable<CachedFeed> loader) {
+            this.loader = loader;
+        }
+    }
+
+    /**
+     * Names the background threads and keeps them from holding up shutdown.
+     */
+    public static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        public DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
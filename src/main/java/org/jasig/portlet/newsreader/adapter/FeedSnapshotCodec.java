@@ -0,0 +1,322 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.jasig.portlet.newsreader.model.FeedSnapshot;
+import org.jasig.portlet.newsreader.model.LazyEntryList;
+import org.jasig.portlet.newsreader.model.NewsFeedItem;
+import org.jasig.portlet.newsreader.model.RemoteHttpFullStory;
+
+/**
+ * Binary form of a {@link StoredFeed}.  Strings are written as their length
+ * in UTF-8 bytes followed by the bytes, or a length of -1 for
+ * <code>null</code>;  dates as milliseconds, or {@link Long#MIN_VALUE} for
+ * <code>null</code>.  Decoding works on any {@link ByteBuffer}, so a stored
+ * feed can be read straight from a mapped file or from off-heap memory, and
+ * can leave the entries there to be decoded one at a time as they are read.
+ *
+ * @since 6.0.0
+ */
+final class FeedSnapshotCodec {
+
+    private static final int MAGIC = 0x4E524653;  // "NRFS"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private FeedSnapshotCodec() {
+    }
+
+    /**
+     * Encode a stored feed.  Every entry of its snapshot is read, so entries
+     * not yet sanitized are sanitized now.
+     *
+     * @param feed a {@link StoredFeed} object
+     * @return the encoded feed
+     */
+    static byte[] encode(StoredFeed feed) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, feed.getKey());
+            out.writeLong(feed.getFetchedTime());
+            out.writeLong(feed.getExpirationTime());
+
+            final FeedSnapshot snapshot = feed.getSnapshot();
+            writeString(out, snapshot.getTitle());
+            writeString(out, snapshot.getLink());
+            writeString(out, snapshot.getAuthor());
+            writeString(out, snapshot.getCopyright());
+            out.writeInt(snapshot.getMaxStories());
+            out.writeInt(snapshot.getEntriesPerPage());
+
+            final List<NewsFeedItem> entries = snapshot.getEntries();
+            out.writeInt(entries.size());
+            for (NewsFeedItem item : entries) {
+                writeString(out, item.getTitle());
+                writeString(out, item.getLink());
+                writeString(out, item.getUri());
+                writeString(out, item.getDescription());
+                writeString(out, item.getContent());
+                writeString(out, item.getImageUrl());
+                writeString(out, item.getVideoUrl());
+                out.writeLong(item.getPubDate() != null ? item.getPubDate().getTime() : NO_DATE);
+                writeStrings(out, item.getAuthors());
+                writeStrings(out, item.getCategories());
+                writeString(out, item.getFullStory() instanceof RemoteHttpFullStory
+                        ? ((RemoteHttpFullStory) item.getFullStory()).getRemoteHttpUrl() : null);
+            }
+        } catch (IOException e) {
+            // not thrown by a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encode a stored feed into a direct buffer, outside the heap.
+     *
+     * @param feed a {@link StoredFeed} object
+     * @return a read-only buffer holding the encoded feed
+     */
+    static ByteBuffer encodeDirect(StoredFeed feed) {
+        final byte[] bytes = encode(feed);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Decode a stored feed from the buffer's position onwards.
+     *
+     * @param in a {@link java.nio.ByteBuffer} object
+     * @return the stored feed
+     * @throws IOException if the buffer does not hold a stored feed of this format
+     */
+    static StoredFeed decode(ByteBuffer in) throws IOException {
+        return decode(in, false);
+    }
+
+    /**
+     * Decode a stored feed from the buffer's position onwards, leaving its
+     * entries in the buffer.  Each entry is decoded from the buffer whenever
+     * it is read, so reading it twice yields two equal entries;  the buffer
+     * must not be modified.
+     *
+     * @param in a {@link java.nio.ByteBuffer} object
+     * @return the stored feed
+     * @throws IOException if the buffer does not hold a stored feed of this format
+     */
+    static StoredFeed decodeLazily(ByteBuffer in) throws IOException {
+        return decode(in, true);
+    }
+
+    private static StoredFeed decode(ByteBuffer in, boolean lazy) throws IOException {
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a stored feed of format version " + FORMAT_VERSION);
+            }
+            final String key = readString(in);
+            final long fetchedTime = in.getLong();
+            final long expirationTime = in.getLong();
+
+            final String title = readString(in);
+            final String link = readString(in);
+            final String author = readString(in);
+            final String copyright = readString(in);
+            final int maxStories = in.getInt();
+            final int entriesPerPage = in.getInt();
+
+            final int count = in.getInt();
+            final List<NewsFeedItem> entries;
+            if (lazy) {
+                final ByteBuffer shared = in.asReadOnlyBuffer();
+                final List<EncodedEntry> encoded = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    encoded.add(new EncodedEntry(shared, in.position()));
+                    skipEntry(in);
+                }
+                entries = new LazyEntryList(encoded);
+            } else {
+                entries = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    entries.add(decodeEntry(in));
+                }
+            }
+            final FeedSnapshot snapshot = new FeedSnapshot(title, link, author, copyright, entries, maxStories, entriesPerPage);
+            return new StoredFeed(key, fetchedTime, expirationTime, snapshot);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated or corrupt stored feed", e);
+        }
+    }
+
+    /**
+     * Digest a cache key into a short name of fixed length, for use where the
+     * key itself may be too long, such as a file name or a primary key.
+     *
+     * @param key cache key of the feed
+     * @return the hex-encoded SHA-256 digest of the key
+     */
+    static String digest(String key) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static NewsFeedItem decodeEntry(ByteBuffer in) {
+        final NewsFeedItem item = new NewsFeedItem();
+        item.setTitle(readString(in));
+        item.setLink(readString(in));
+        item.setUri(readString(in));
+        item.setDescription(readString(in));
+        item.setContent(readString(in));
+        item.setImageUrl(readString(in));
+        item.setVideoUrl(readString(in));
+        final long pubDate = in.getLong();
+        item.setPubDate(pubDate != NO_DATE ? new Date(pubDate) : null);
+        item.setAuthors(readStrings(in));
+        item.setCategories(readStrings(in));
+        final String fullStoryUrl = readString(in);
+        if (fullStoryUrl != null) {
+            item.setFullStory(new RemoteHttpFullStory(fullStoryUrl));
+        }
+        return item;
+    }
+
+    private static void skipEntry(ByteBuffer in) {
+        for (int i = 0; i < 7; i++) {
+            skipString(in);
+        }
+        in.getLong();
+        for (int i = 0; i < 2; i++) {
+            final int count = in.getInt();
+            for (int j = 0; j < count; j++) {
+                skipString(in);
+            }
+        }
+        skipString(in);
+    }
+
+    private static void skipString(ByteBuffer in) {
+        final int length = in.getInt();
+        if (length > 0) {
+            // throws IllegalArgumentException beyond the limit
+            in.position(in.position() + length);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        if (strings == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            writeString(out, s);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        final int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readStrings(ByteBuffer in) {
+        final int count = in.getInt();
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        if (count < 0 || count > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final String s = readString(in);
+            // names repeat across feeds, as when they were first read
+            strings.add(s != null ? s.intern() : null);
+        }
+        return Collections.unmodifiableList(strings);
+    }
+
+    /**
+     * An entry left encoded in a buffer shared with the rest of its feed.
+     */
+    private static final class EncodedEntry implements Supplier<NewsFeedItem> {
+
+        private final ByteBuffer buffer;
+        private final int offset;
+
+        private EncodedEntry(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        @Override
+        public NewsFeedItem get() {
+            // each reader needs a position of its own
+            final ByteBuffer in = buffer.duplicate();
+            in.position(offset);
+            return decodeEntry(in);
+        }
+    }
+
+}
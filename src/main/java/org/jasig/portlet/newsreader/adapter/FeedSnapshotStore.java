@@ -0,0 +1,295 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jasig.portlet.newsreader.model.FeedSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the sanitized feeds of the news cache on local disk, so that after a
+ * restart the portlet can serve the last copy of each feed at once and fetch
+ * the feed again in the background, rather than make its first readers wait
+ * for every origin.
+ * <p>
+ * Each feed is a file in <code>directory</code> named after a digest of its
+ * cache key, in the format of {@link FeedSnapshotCodec}.  Feeds are written
+ * on a single background thread;  a feed saved again before it was written
+ * is written once, in its latest form.  Files are replaced atomically and
+ * read through a memory mapping.  A file that cannot be read is deleted, and
+ * one older than <code>maxAgeSeconds</code> is ignored.
+ * <p>
+ * Storing a feed has a cost:  writing it reads every entry, and so
+ * sanitizes entries that would otherwise be sanitized only once shown.  The
+ * store is therefore off unless <code>enabled</code> is set, for portlets
+ * whose restarts are slow enough to be worth that work.
+ *
+ * @since 6.0.0
+ */
+public class FeedSnapshotStore {
+
+    private static final String SUFFIX = ".feed";
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    private boolean enabled = false;
+    private File directory;
+    private int maxAgeSeconds = 86400;
+    private int warmUpSeconds = 600;
+    private long startTime;
+
+    private ExecutorService writer;
+    private final ConcurrentMap<String, StoredFeed> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong saveCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * Whether feeds are stored at all.
+     *
+     * @param enabled a boolean
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * <p>isEnabled.</p>
+     *
+     * @return a boolean
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * <p>Setter for the field <code>directory</code>.</p>
+     *
+     * @param directory a {@link java.io.File} object
+     */
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Oldest feed, by the time it was fetched, served after a restart.
+     *
+     * @param maxAgeSeconds a int
+     */
+    public void setMaxAgeSeconds(int maxAgeSeconds) {
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    /**
+     * How long after startup a stored feed is served however long ago it
+     * expired, within <code>maxAgeSeconds</code>.  Later, a stored feed is
+     * served only as an expired cached feed would be.
+     *
+     * @param warmUpSeconds a int
+     */
+    public void setWarmUpSeconds(int warmUpSeconds) {
+        this.warmUpSeconds = warmUpSeconds;
+    }
+
+    /**
+     * Whether the portlet started less than <code>warmUpSeconds</code> ago.
+     *
+     * @param now the current time
+     * @return a boolean
+     */
+    public boolean isWarmingUp(long now) {
+        return now - startTime < warmUpSeconds * 1000L;
+    }
+
+    /**
+     * <p>init.</p>
+     *
+     * @throws java.io.IOException if the directory cannot be created
+     */
+    public void init() throws IOException {
+        startTime = System.currentTimeMillis();
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory.toPath());
+        writer = Executors.newSingleThreadExecutor(new FeedRefreshScheduler.DaemonThreadFactory("feed-store-"));
+        log.info("Storing sanitized feeds in {}", directory);
+    }
+
+    /**
+     * Write the feeds still pending, waiting a few seconds at most.
+     */
+    public void destroy() {
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                    log.warn("{} feeds were not stored before shutdown", pending.size());
+                    writer.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                writer.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Read the stored copy of a feed.
+     *
+     * @param key cache key of the sanitized feed
+     * @return the stored feed, or <code>null</code> if there is none recent enough
+     */
+    public StoredFeed load(String key) {
+        final Path path = getPath(key);
+        final StoredFeed feed;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            feed = FeedSnapshotCodec.decode(buffer);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Discarding unreadable stored feed " + path, e);
+            failureCount.incrementAndGet();
+            delete(path);
+            return null;
+        }
+        if (!key.equals(feed.getKey())) {
+            return null;
+        }
+        if (System.currentTimeMillis() - feed.getFetchedTime() > maxAgeSeconds * 1000L) {
+            log.debug("Stored feed {} is too old to serve", key);
+            return null;
+        }
+        loadCount.incrementAndGet();
+        return feed;
+    }
+
+    /**
+     * Store a sanitized feed in the background.  Reading the snapshot's
+     * entries to write them sanitizes any not yet sanitized, on the writer
+     * thread.
+     *
+     * @param key cache key of the sanitized feed
+     * @param fetchedTime when the feed was fetched
+     * @param expirationTime when the feed expires
+     * @param snapshot the sanitized feed
+     */
+    public void save(final String key, long fetchedTime, long expirationTime, FeedSnapshot snapshot) {
+        if (pending.put(key, new StoredFeed(key, fetchedTime, expirationTime, snapshot)) != null) {
+            // the write already queued for this feed will pick up this copy
+            return;
+        }
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(key);
+            }
+        });
+    }
+
+    private void write(String key) {
+        final StoredFeed feed = pending.remove(key);
+        if (feed == null) {
+            return;
+        }
+        final Path path = getPath(key);
+        Path temp = null;
+        try {
+            final byte[] bytes = FeedSnapshotCodec.encode(feed);
+            temp = Files.createTempFile(directory.toPath(), "feed-", ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            saveCount.incrementAndGet();
+            log.debug("Stored {} bytes for feed {}", bytes.length, key);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to store feed " + key, e);
+            failureCount.incrementAndGet();
+            if (temp != null) {
+                delete(temp);
+            }
+        }
+    }
+
+    private void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Failed to delete " + path, e);
+        }
+    }
+
+    private Path getPath(String key) {
+        return directory.toPath().resolve(FeedSnapshotCodec.digest(key) + SUFFIX);
+    }
+
+    /**
+     * <p>Getter for the field <code>directory</code>.</p>
+     *
+     * @return a {@link java.io.File} object
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get the number of stored feeds read back, typically after a restart.
+     *
+     * @return a long
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * <p>Getter for the field <code>saveCount</code>.</p>
+     *
+     * @return a long
+     */
+    public long getSaveCount() {
+        return saveCount.get();
+    }
+
+    /**
+     * Get the number of feeds that could not be stored or read back.
+     *
+     * @return a long
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+}
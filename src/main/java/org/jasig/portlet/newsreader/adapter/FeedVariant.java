@@ -0,0 +1,114 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import org.jasig.portlet.newsreader.model.FeedSnapshot;
+import org.jasig.portlet.newsreader.processor.SanitizedEntries;
+
+/**
+ * A copy of a cached feed sanitized with one pair of AntiSamy policies.
+ * Variants are cached alongside the parsed feed they were built from and
+ * record its {@link CachedFeed#getVersion() version}, so a variant is rebuilt
+ * only once the feed's content has actually changed.
+ * <p>
+ * When the feed does change, the new variant reuses the sanitized items of
+ * the entries that did not.
+ * <p>
+ * A variant holds every entry of the feed.  Portlets limited to fewer stories
+ * are served a truncated snapshot sharing the same entries, so no limit ever
+ * requires the feed to be fetched or sanitized again.
+ *
+ * @since 6.0.0
+ */
+public class FeedVariant {
+
+    private final long version;
+    private final FeedSnapshot snapshot;
+    private final SanitizedEntries entries;
+
+    /**
+     * <p>Constructor for FeedVariant.</p>
+     *
+     * @param version version of the cached feed this variant was built from
+     * @param snapshot the sanitized feed, with all its entries
+     */
+    public FeedVariant(long version, FeedSnapshot snapshot) {
+        this(version, snapshot, new SanitizedEntries());
+    }
+
+    /**
+     * <p>Constructor for FeedVariant.</p>
+     *
+     * @param version version of the cached feed this variant was built from
+     * @param snapshot the sanitized feed, with all its entries
+     * @param entries the snapshot's entries by key, for reuse when the feed changes
+     */
+    public FeedVariant(long version, FeedSnapshot snapshot, SanitizedEntries entries) {
+        this.version = version;
+        this.snapshot = snapshot;
+        this.entries = entries;
+    }
+
+    /**
+     * @param source the cached feed currently backing this variant
+     * @return <code>true</code> if this variant was built from the content of the specified feed
+     */
+    public boolean isCurrent(CachedFeed source) {
+        return version == source.getVersion();
+    }
+
+    /**
+     * Get this feed limited to the specified number of stories.
+     *
+     * @param maxStories a int;  zero or less for all stories
+     * @return a {@link org.jasig.portlet.newsreader.model.FeedSnapshot} object
+     */
+    public FeedSnapshot getSnapshot(int maxStories) {
+        return maxStories > 0 ? snapshot.truncate(maxStories) : snapshot;
+    }
+
+    /**
+     * <p>Getter for the field <code>version</code>.</p>
+     *
+     * @return a long
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the sanitized entries of this variant, from which the next variant
+     * for the same policies reuses those that have not changed.
+     *
+     * @return a {@link org.jasig.portlet.newsreader.processor.SanitizedEntries} object
+     */
+    public SanitizedEntries getEntries() {
+        return entries;
+    }
+
+    /**
+     * Get the feed with all its stories.
+     *
+     * @return a {@link org.jasig.portlet.newsreader.model.FeedSnapshot} object
+     */
+    public FeedSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+}
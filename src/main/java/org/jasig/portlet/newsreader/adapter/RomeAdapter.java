@@ -20,17 +20,25 @@ package org.jasig.portlet.newsreader.adapter;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.portlet.PortletPreferences;
 import javax.portlet.PortletRequest;
-import net.sf.ehcache.Cache;
-import net.sf.ehcache.Element;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
@@ -40,13 +48,17 @@ import org.apache.http.conn.params.ConnRoutePNames;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.DecompressingHttpClient;
 import org.jasig.portlet.newsreader.NewsConfiguration;
+import org.jasig.portlet.newsreader.model.FeedSnapshot;
 import org.jasig.portlet.newsreader.model.PaginatingNewsFeed;
+import org.jasig.portlet.newsreader.processor.ParsedFeed;
 import org.jasig.portlet.newsreader.processor.RomeNewsProcessorImpl;
+import org.jasig.portlet.newsreader.processor.SanitizedEntries;
 import org.owasp.validator.html.PolicyException;
 import org.owasp.validator.html.ScanException;
 import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.portlet.context.PortletRequestAttributes;
+import com.rometools.rome.feed.synd.SyndFeed;
 import com.rometools.rome.io.FeedException;;
 
 /**
@@ -80,6 +92,12 @@ public class RomeAdapter extends AbstractNewsAdapter {
     private long connectionManagerTimeout = 5000;  // Default timeout of getting connection from connection manager
     private int timesToRetry = 2;
     private String cacheKeyPrefix = "";  // default is no prefix
+    private int timeToLiveSeconds = 900;  // Feeds older than this are revalidated with the origin
+    private int staleWhileRevalidateSeconds = 0;  // Serve expired feeds this long while refreshing in the background
+    private int staleIfErrorSeconds = 0;  // Serve expired feeds this long when the origin cannot be reached
+
+    private final long createdTime = System.currentTimeMillis();
+    private final AtomicBoolean firstFeedServed = new AtomicBoolean();
 
     /**
      * <p>Getter for the field <code>httpClient</code>.</p>
@@ -198,6 +216,67 @@ public class RomeAdapter extends AbstractNewsAdapter {
         this.processor = processor;
     }
 
+    /**
+     * <p>Getter for the field <code>timeToLiveSeconds</code>.</p>
+     *
+     * @return a int
+     */
+    public int getTimeToLiveSeconds() {
+        return timeToLiveSeconds;
+    }
+
+    /**
+     * Number of seconds a fetched feed is served from the cache before it is
+     * revalidated with the origin.  The cache itself should keep entries longer
+     * than this so their validators remain available for the conditional GET.
+     *
+     * @param timeToLiveSeconds a int
+     */
+    public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+        this.timeToLiveSeconds = timeToLiveSeconds;
+    }
+
+    /**
+     * <p>Getter for the field <code>staleWhileRevalidateSeconds</code>.</p>
+     *
+     * @return a int
+     */
+    public int getStaleWhileRevalidateSeconds() {
+        return staleWhileRevalidateSeconds;
+    }
+
+    /**
+     * Number of seconds past expiration during which a cached feed is returned
+     * immediately while the refresh scheduler revalidates it in the background.
+     * Has no effect unless a refresh scheduler is configured.  Zero, the default,
+     * makes requests for expired feeds wait for the revalidation.
+     *
+     * @param staleWhileRevalidateSeconds a int
+     */
+    public void setStaleWhileRevalidateSeconds(int staleWhileRevalidateSeconds) {
+        this.staleWhileRevalidateSeconds = staleWhileRevalidateSeconds;
+    }
+
+    /**
+     * <p>Getter for the field <code>staleIfErrorSeconds</code>.</p>
+     *
+     * @return a int
+     */
+    public int getStaleIfErrorSeconds() {
+        return staleIfErrorSeconds;
+    }
+
+    /**
+     * Maximum number of seconds past expiration for which the last good copy of
+     * a feed is returned when revalidating it fails.  Zero, the default, reports
+     * the failure instead.
+     *
+     * @param staleIfErrorSeconds a int
+     */
+    public void setStaleIfErrorSeconds(int staleIfErrorSeconds) {
+        this.staleIfErrorSeconds = staleIfErrorSeconds;
+    }
+
     /**
      * Cache prefix to support multiple instances of this class using the same cache.
      *
@@ -281,14 +360,39 @@ public class RomeAdapter extends AbstractNewsAdapter {
     /** {@inheritDoc} */
     @Override
     public PaginatingNewsFeed getSyndFeed(NewsConfiguration config, int page, int maxStories) throws NewsException {
+        String policy[] = getPolicies();
+        return getSyndFeed(config, page, maxStories, policy[0], policy[1]);
+    }
 
-        PaginatingNewsFeed feed = null;
-
+    /**
+     * Look up the AntiSamy policies for the titles and descriptions of the
+     * feeds read in the current request.
+     *
+     * @return the title policy and the description policy
+     */
+    public String[] getPolicies() {
         // Look for an alternative AntiSamy policy file in the portlet preferences. If found, use it
         // otherwise use the default policyFile being injected into this class via Spring.
-        String policy[] = getPolicyPref(PREFERENCE_TITLE_POLICY, PREFERENCE_DESCRIPTION_POLICY);
-        String titlePolicy = policy[0];
-        String descriptionPolicy = policy[1];
+        return getPolicyPref(PREFERENCE_TITLE_POLICY, PREFERENCE_DESCRIPTION_POLICY);
+    }
+
+    /**
+     * Get a feed sanitized with the specified policies.  Unlike
+     * {@link #getSyndFeed(NewsConfiguration, int, int)} this does not read the
+     * current request, so it may be called from any thread.
+     *
+     * @param config a {@link org.jasig.portlet.newsreader.NewsConfiguration} object
+     * @param page a int
+     * @param maxStories a int
+     * @param titlePolicy AntiSamy policy for the titles
+     * @param descriptionPolicy AntiSamy policy for the descriptions
+     * @return a {@link org.jasig.portlet.newsreader.model.PaginatingNewsFeed} object
+     * @throws org.jasig.portlet.newsreader.adapter.NewsException if any.
+     */
+    public PaginatingNewsFeed getSyndFeed(NewsConfiguration config, int page, int maxStories,
+            String titlePolicy, String descriptionPolicy) throws NewsException {
+
+        PaginatingNewsFeed feed = null;
 
         // Get the URL for this feed
         // If there is a 2nd URL, it is a fall-back in case the first does not work.
@@ -306,71 +410,299 @@ public class RomeAdapter extends AbstractNewsAdapter {
 
         // try to get the feed news
         String key = getCacheKey(url);
-        Element cachedElement = cache.get(key);
-
-        if (cachedElement == null) {
-            log.debug("Cache miss");
+        String variantKey = getVariantKey(key, titlePolicy, descriptionPolicy);
+        FeedLoader loader = new FeedLoader(key, url, url2);
+        CachedFeed cached = getCachedFeed(key);
+        final long now = System.currentTimeMillis();
 
-            // Do we have one URL for the feed, or two?
-            if ( url2 == null )
-            {
-                // One URL; a normal setup. Process the URL...
-                feed = getSyndFeed(url, titlePolicy, descriptionPolicy, maxStories);
-            }
-            else
-            {
-                // Two URLs, so if the first fails, try the backup...
-                try
-                {
-                    feed = getSyndFeed(url, titlePolicy, descriptionPolicy, maxStories);
+        final boolean coordinated = coordinator != null && coordinator.isEnabled();
+        NewsException failure = null;
+        boolean fetched = false;
+        if (coordinated && (cached == null || cached.isExpired(now))) {
+            // another node may have fetched this feed already, or be fetching it now
+            StoredFeed shared = getSharedFeed(key, variantKey, now);
+            if ((shared == null || shared.isExpired(now)) && coordinator.acquireLease(key)) {
+                try {
+                    cached = fetchForCluster(key, loader, titlePolicy, descriptionPolicy);
+                    fetched = true;
+                    shared = null;
+                } catch (NewsException ex) {
+                    failure = ex;
                 }
-                catch ( NewsException ex )
-                {
-                    log.warn( "Failed to load feed at the primary URL so trying URL2", ex );
+            } else if (shared == null && cached == null) {
+                // another node is fetching the feed;  wait for its copy
+                shared = awaitSharedFeed(key, variantKey);
+            }
+            if (shared != null && now - shared.getExpirationTime() < staleIfErrorSeconds * 1000L) {
+                if (failure != null) {
+                    log.warn("Failed to refresh feed " + url + "; serving the copy fetched at "
+                            + new Date(shared.getFetchedTime()), failure);
+                } else {
+                    log.debug("Serving the copy of {} fetched by the cluster at {}", variantKey, new Date(shared.getFetchedTime()));
                 }
+                return getCopy(shared, page, maxStories, shared.isExpired(now), "the cluster");
+            }
+        }
 
-                if ( feed == null )
-                {
-                    // there must not be a local file cache, or it failed, so try the real url...
-                    feed = getSyndFeed(url2, titlePolicy, descriptionPolicy, maxStories);
-                }
+        if (cached == null && refreshScheduler != null) {
+            feed = getStoredCopy(key, variantKey, loader, page, maxStories, now);
+            if (feed != null) {
+                return feed;
             }
+        }
 
-            // save the feed to the cache
-            cachedElement = new Element(key, feed);
-            cache.put(cachedElement);
+        boolean stale = false;
+        if (cached == null) {
+            log.debug("Cache miss");
+            // fetch the feed and save it to the cache, sharing the work with
+            // any concurrent requests for the same feed
+            try {
+                if (failure != null) {
+                    throw failure;
+                }
+                cached = coalescer.fetch(key, loader);
+            } catch (NewsException ex) {
+                StoredFeed stored = snapshotStore != null && snapshotStore.isEnabled() ? getStoredFeed(variantKey) : null;
+                if (stored == null || now - stored.getExpirationTime() >= staleIfErrorSeconds * 1000L) {
+                    throw ex;
+                }
+                log.warn("Failed to fetch feed " + url + "; serving the copy stored at "
+                        + new Date(stored.getFetchedTime()), ex);
+                return getCopy(stored, page, maxStories, true, "a stored copy");
+            }
+        } else if (fetched) {
+            log.debug("Fetched for the cluster");
+        } else if (cached.isExpired(now)) {
+            final CachedFeed refreshed = refreshExpiredFeed(url, key, loader, cached, failure, now);
+            // the expired copy is returned when it is served as it is
+            stale = refreshed == cached;
+            cached = refreshed;
         } else {
             log.debug("Cache hit");
-            feed = (PaginatingNewsFeed) cachedElement.getObjectValue();
-            if (maxStories != feed.getMaxStories()) {
-                // Clear cache and recreate by recursive call
-                cache.remove(key);
-                return getSyndFeed(config, page, maxStories);
-            }
         }
 
-        if (feed != null) feed.setPage(page);
+        if (refreshScheduler != null) {
+            refreshScheduler.recordAccess(key, loader);
+        }
+
+        if (cached.getFeed() != null) {
+            // sanitize the shared copy with this portlet's policies and give
+            // this request its own view of the result
+            FeedVariant variant = getVariant(key, cached, titlePolicy, descriptionPolicy);
+            policies.putIfAbsent(titlePolicy + " " + descriptionPolicy, new String[] { titlePolicy, descriptionPolicy });
+            if (coordinated) {
+                // share each copy this node fetches with the rest of the cluster
+                coordinator.publish(key, variantKey, cached.getFetchedTime(), cached.getExpirationTime(), variant.getSnapshot());
+            }
+            FeedSnapshot snapshot = variant.getSnapshot(maxStories);
+            feed = new PaginatingNewsFeed(snapshot, page);
+            feed.setStale(stale);
+            logFirstFeed("the cache");
+        }
 
         // return the event list or null if the feed was not available.
         return feed;
     }
 
     /**
-     * Retrieve the entire feed using HTTPClient and clean using AntiSamy,
-     * build an SyndFeed object using ROME.
+     * Log how long after startup the first feed was served, and from where.
+     */
+    private void logFirstFeed(String source) {
+        if (firstFeedServed.compareAndSet(false, true)) {
+            log.info("First feed served from {} {} ms after startup", source, System.currentTimeMillis() - createdTime);
+        }
+    }
+
+    /**
+     * Give this request its own view of a copy of the feed kept outside the
+     * cache.
+     */
+    private PaginatingNewsFeed getCopy(StoredFeed copy, int page, int maxStories, boolean stale, String source) {
+        PaginatingNewsFeed feed = new PaginatingNewsFeed(copy.getSnapshot(maxStories), page);
+        feed.setStale(stale);
+        logFirstFeed(source);
+        return feed;
+    }
+
+    /**
+     * Fetch a feed on behalf of the cluster, holding its lease, and publish
+     * every copy of it sanitized on this node lately, so that the nodes
+     * reading it with other policies find their copy as well.
+     */
+    private CachedFeed fetchForCluster(String key, FeedLoader loader, String titlePolicy, String descriptionPolicy) throws NewsException {
+        final CachedFeed fetched;
+        try {
+            fetched = coalescer.fetch(key, loader);
+        } catch (NewsException ex) {
+            // the lease is kept until it expires, so that no node tries again sooner
+            coordinator.recordFailedFetch(key);
+            throw ex;
+        }
+        if (fetched.getFeed() == null) {
+            coordinator.releaseLease(key);
+            return fetched;
+        }
+        publishVariant(key, fetched, titlePolicy, descriptionPolicy);
+        for (String[] pair : policies.values()) {
+            if (pair[0].equals(titlePolicy) && pair[1].equals(descriptionPolicy)) {
+                continue;
+            }
+            if (cache.peek(getVariantKey(key, pair[0], pair[1])) instanceof FeedVariant) {
+                publishVariant(key, fetched, pair[0], pair[1]);
+            }
+        }
+        return fetched;
+    }
+
+    private void publishVariant(String key, CachedFeed source, String titlePolicy, String descriptionPolicy) throws NewsException {
+        FeedVariant variant = getVariant(key, source, titlePolicy, descriptionPolicy);
+        coordinator.publish(key, getVariantKey(key, titlePolicy, descriptionPolicy),
+                source.getFetchedTime(), source.getExpirationTime(), variant.getSnapshot());
+    }
+
+    /**
+     * Serve the stored copy of a feed missing from the cache while the store
+     * is warming up, or within the stale-while-revalidate window, and fetch
+     * the feed in the background.
+     *
+     * @return the stored copy, or <code>null</code> if the feed should be fetched now
+     */
+    private PaginatingNewsFeed getStoredCopy(String key, String variantKey, FeedLoader loader,
+            int page, int maxStories, long now) {
+        if (snapshotStore == null || !snapshotStore.isEnabled()) {
+            return null;
+        }
+        StoredFeed stored = getStoredFeed(variantKey);
+        if (stored == null || !(snapshotStore.isWarmingUp(now)
+                || now - stored.getExpirationTime() < staleWhileRevalidateSeconds * 1000L)) {
+            return null;
+        }
+        // typically just after a restart:  serve the stored copy and
+        // let the fetch happen off the request thread
+        log.debug("Cache miss; serving the copy stored at {}", new Date(stored.getFetchedTime()));
+        refreshScheduler.refreshNow(key, loader);
+        return getCopy(stored, page, maxStories, stored.isExpired(now), "a stored copy");
+    }
+
+    /**
+     * Refresh an expired feed, or serve it as it is while it is refreshed in
+     * the background or, after a failed fetch, within the stale-if-error
+     * window.
+     *
+     * @param failure the failure of the fetch on behalf of the cluster just now, if any
+     * @return the refreshed feed, or the expired one if it is served as it is
+     */
+    private CachedFeed refreshExpiredFeed(String url, String key, FeedLoader loader, CachedFeed expired,
+            NewsException failure, long now) throws NewsException {
+        final long staleness = now - expired.getExpirationTime();
+        if (failure != null) {
+            if (staleness >= staleIfErrorSeconds * 1000L) {
+                throw failure;
+            }
+            return expired;
+        }
+        if (refreshScheduler != null && staleness < staleWhileRevalidateSeconds * 1000L) {
+            // serve what we have and let the revalidation happen off the request thread
+            log.debug("Cached feed expired; serving it while it is refreshed in the background");
+            refreshScheduler.refreshNow(key, loader);
+            return expired;
+        }
+        log.debug("Cached feed expired");
+        try {
+            return coalescer.fetch(key, loader);
+        } catch (NewsException ex) {
+            if (staleness >= staleIfErrorSeconds * 1000L) {
+                throw ex;
+            }
+            log.warn("Failed to refresh feed " + url + "; serving the copy fetched at "
+                    + new Date(expired.getFetchedTime()), ex);
+            return expired;
+        }
+    }
+
+    /**
+     * Look up the copy of the cached feed sanitized with the specified policies,
+     * building it if it is missing or was built from different content.
+     */
+    private FeedVariant getVariant(String key, CachedFeed source, String titlePolicy, String descriptionPolicy) throws NewsException {
+        String variantKey = getVariantKey(key, titlePolicy, descriptionPolicy);
+        FeedVariant variant = getCachedVariant(variantKey);
+        if (variant != null && variant.isCurrent(source)) {
+            log.debug("Sanitized variant hit");
+            return variant;
+        }
+        log.debug("Sanitized variant miss");
+        return coalescer.fetch(variantKey, new VariantBuilder(variantKey, source, titlePolicy, descriptionPolicy));
+    }
+
+    /**
+     * Fetch the feed from its primary URL and, if that fails and a second URL is
+     * configured, from the fall-back URL.  The previous cache entry, if any,
+     * supplies the validators for a conditional GET.
+     */
+    private CachedFeed loadFeed(String url, String url2, CachedFeed previous) throws NewsException {
+
+        CachedFeed feed = null;
+
+        // Do we have one URL for the feed, or two?
+        if ( url2 == null )
+        {
+            // One URL; a normal setup. Process the URL...
+            feed = getSyndFeed(url, previous);
+        }
+        else
+        {
+            // Two URLs, so if the first fails, try the backup...
+            try
+            {
+                feed = getSyndFeed(url, previous);
+            }
+            catch ( NewsException ex )
+            {
+                log.warn( "Failed to load feed at the primary URL so trying URL2", ex );
+            }
+
+            if ( feed == null || feed.getFeed() == null )
+            {
+                // there must not be a local file cache, or it failed, so try the real url...
+                feed = getSyndFeed(url2, previous);
+            }
+        }
+
+        return feed;
+    }
+
+    /**
+     * Retrieve the entire feed using HTTPClient, parse it using ROME and keep
+     * what is needed from it as a {@link ParsedFeed}.  The feed is not
+     * sanitized here;  that happens per policy pair when a variant is built
+     * from it.
+     * <p>
+     * If a previous copy fetched from the same URL is supplied, its
+     * <code>ETag</code> and <code>Last-Modified</code> validators are sent with
+     * the request;  when the origin answers <code>304 Not Modified</code> the
+     * previous feed is kept without reading a body, and when it sends a body
+     * identical to the one the previous feed was parsed from the previous
+     * feed is kept in place of the one just parsed.
      *
      * @param url        String of the feed to be retrieved
-     * @param titlePolicy String the cleaning policy for the title
-     * @param descriptionPolicy String the cleaning policy for the description
-     * @param maxStories        limit number of news items
-     * @return SyndFeed Feed object
+     * @param previous   the expired cache entry for this feed, or <code>null</code>
+     * @return CachedFeed the feed together with its validators
      * @throws org.jasig.portlet.newsreader.adapter.NewsException if any.
      */
-    protected PaginatingNewsFeed getSyndFeed(String url, String titlePolicy, String descriptionPolicy, int maxStories) throws NewsException {
+    protected CachedFeed getSyndFeed(String url, CachedFeed previous) throws NewsException {
 
         HttpGet get = null;
-        PaginatingNewsFeed feed = null;
+        SyndFeed feed = null;
+        ParsedFeed parsed = null;
         InputStream in = null;
+        FeedBudgetInputStream bounded = null;
+
+        // validators and digests only apply to the URL they were received from
+        if (previous != null && !url.equals(previous.getUrl())) {
+            previous = null;
+        }
+        final boolean conditional = previous != null && previous.hasValidators();
 
         try {
 
@@ -378,39 +710,89 @@ public class RomeAdapter extends AbstractNewsAdapter {
 
             get = new HttpGet(url);
             get.addHeader("User-Agent", "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_10_3) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/44.0.2403.155 Safari/537.36");
-            HttpResponse httpResponse = compressingClient.execute(get);
-            if (httpResponse.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+            if (conditional) {
+                if (previous.getEtag() != null) {
+                    get.addHeader("If-None-Match", previous.getEtag());
+                }
+                if (previous.getLastModified() != null) {
+                    get.addHeader("If-Modified-Since", previous.getLastModified());
+                }
+            }
+            HttpResponse httpResponse = executeGet(get);
+            final long now = System.currentTimeMillis();
+            final int status = httpResponse.getStatusLine().getStatusCode();
+
+            if (status == HttpStatus.SC_NOT_MODIFIED && conditional) {
+                log.debug("Feed " + url + " not modified; extending the cached copy");
+                return previous.revalidated(getHeader(httpResponse, "ETag"), getHeader(httpResponse, "Last-Modified"),
+                        now, now + timeToLiveSeconds * 1000L);
+            }
+            if (status != HttpStatus.SC_OK) {
                 log.warn("HttpStatus for " + url + ":" + httpResponse);
             }
 
+            // don't start reading a response that announces it is over budget
+            final HttpEntity entity = httpResponse.getEntity();
+            if (entity != null && budget.getMaxResponseBytes() > 0 && entity.getContentLength() > budget.getMaxResponseBytes()) {
+                get.abort();
+                throw budget.exceeded(url, FeedBudget.Limit.BYTES);
+            }
+
             // retrieve
-            in = httpResponse.getEntity().getContent();
+            in = entity != null ? entity.getContent() : null;
 
             // See if we got back any results. If so, then we can work on the results.
             // Otherwise we'd eat a parse error for trying to parse a null stream.
+            String digest = null;
             if ( in != null )
             {
-                feed = processor.getFeed(in, titlePolicy, descriptionPolicy, maxStories);
+                // digest the body, within budget, as the parser reads it
+                bounded = budget.open(in);
+                final MessageDigest md = unchangedFeedDetector.newDigest();
+                final DigestInputStream digesting = new DigestInputStream(bounded, md);
+                // variants hold every entry within the budget, so that is as
+                // far as the feed is read;  one entry more tells a feed with
+                // exactly maxEntries entries from a longer one
+                final int maxEntries = budget.getMaxEntries();
+                feed = processor.parseFeed(digesting, maxEntries > 0 ? maxEntries + 1 : maxEntries);
+                if (maxEntries > 0 && feed.getEntries().size() > maxEntries) {
+                    // keep the entries within the budget, and leave the rest of
+                    // the response unread;  closing it would read it to the end
+                    feed.setEntries(new ArrayList<>(feed.getEntries().subList(0, maxEntries)));
+                    budget.recordExceeded(url, FeedBudget.Limit.ENTRIES);
+                    get.abort();
+                } else {
+                    // the parser may stop before the end of the document
+                    drain(digesting);
+                    digest = unchangedFeedDetector.digest(md);
+                    if (unchangedFeedDetector.isUnchanged(url, previous, digest)) {
+                        log.debug("Feed " + url + " is unchanged; extending the cached copy");
+                        return previous.revalidated(getHeader(httpResponse, "ETag"), getHeader(httpResponse, "Last-Modified"),
+                                now, now + timeToLiveSeconds * 1000L);
+                    }
+                }
+                // keep what the variants are built from, without the ROME object model
+                parsed = processor.getParsedFeed(feed);
             }
             else
             {
                 log.warn( "Feed response not available or cannot be read. URL=" + url );
             }
 
-            return feed;
+            return new CachedFeed(url, parsed, getHeader(httpResponse, "ETag"), getHeader(httpResponse, "Last-Modified"),
+                    now, now + timeToLiveSeconds * 1000L, digest);
 
-        } catch (PolicyException e) {
-            log.warn("Error fetching feed", e);
-            throw new NewsException("Error fetching feed", e);
-        } catch (ScanException e) {
-            log.warn("Error fetching feed", e);
-            throw new NewsException("Error fetching feed", e);
         } catch (IOException e) {
+            checkBudget(url, get, bounded);
             log.warn("Error fetching feed", e);
             throw new NewsException("Error fetching feed", e);
         } catch (FeedException e) {
+            checkBudget(url, get, bounded);
             log.warn("Error parsing feed: ", e);
             throw new NewsException("Error parsing feed", e);
+        } catch (RuntimeException e) {
+            checkBudget(url, get, bounded);
+            throw e;
         } finally {
             if (in != null) {
                 IOUtils.closeQuietly(in);
@@ -423,6 +805,115 @@ public class RomeAdapter extends AbstractNewsAdapter {
 
     }
 
+    /**
+     * Read the rest of a stream, discarding it.
+     */
+    private void drain(InputStream in) throws IOException {
+        final byte[] buffer = new byte[8192];
+        while (in.read(buffer) >= 0) {
+            // discard
+        }
+    }
+
+    /**
+     * If the fetch failed because the response exceeded a budget, abandon the
+     * rest of the response and fail with the typed exception instead.
+     */
+    private void checkBudget(String url, HttpGet get, FeedBudgetInputStream bounded) throws FeedBudgetExceededException {
+        if (bounded != null && bounded.getExceeded() != null) {
+            // closing the response would otherwise read it to the end
+            get.abort();
+            throw budget.exceeded(url, bounded.getExceeded());
+        }
+    }
+
+    /**
+     * Send the request for a feed to its origin.
+     *
+     * @param get the request
+     * @return the origin's response
+     * @throws java.io.IOException if any.
+     */
+    protected HttpResponse executeGet(HttpGet get) throws IOException {
+        return compressingClient.execute(get);
+    }
+
+    private String getHeader(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    /**
+     * Look up the cache entry for this key, whether or not it has expired.
+     *
+     * @param key cache key of the feed
+     * @return the cached feed or <code>null</code>
+     */
+    protected CachedFeed getCachedFeed(String key) {
+        Object value = cache.get(key);
+        return value instanceof CachedFeed ? (CachedFeed) value : null;
+    }
+
+    private FeedVariant getCachedVariant(String variantKey) {
+        Object value = cache.get(variantKey);
+        return value instanceof FeedVariant ? (FeedVariant) value : null;
+    }
+
+    /**
+     * Look up the copy of a sanitized feed published by the cluster, keeping it
+     * in the cache until it expires and reading it again from the database
+     * only then.
+     */
+    private StoredFeed getSharedFeed(String key, String variantKey, long now) {
+        String sharedKey = variantKey + " shared";
+        Object value = cache.get(sharedKey);
+        StoredFeed local = value instanceof StoredFeed ? (StoredFeed) value : null;
+        if (local != null && (!local.isExpired(now) || coordinator.isBackingOff(key, now))) {
+            return local;
+        }
+        StoredFeed shared = coordinator.getSharedFeed(key, variantKey);
+        if (shared == null || (local != null && shared.getFetchedTime() <= local.getFetchedTime())) {
+            return local;
+        }
+        cache.put(sharedKey, shared, FeedCacheCapacity.estimateSize(shared.getSnapshot()));
+        return shared;
+    }
+
+    /**
+     * Look up the stored copy of a sanitized feed, keeping it in the cache so
+     * that the store is read once per feed rather than on every request
+     * until the feed has been fetched.
+     */
+    private StoredFeed getStoredFeed(String variantKey) {
+        String storedKey = variantKey + " stored";
+        Object value = cache.get(storedKey);
+        if (value instanceof StoredFeed) {
+            return (StoredFeed) value;
+        }
+        StoredFeed stored = snapshotStore.load(variantKey);
+        if (stored != null) {
+            cache.put(storedKey, stored, FeedCacheCapacity.estimateSize(stored.getSnapshot()));
+        }
+        return stored;
+    }
+
+    /**
+     * Wait for the node holding the lease on a feed to publish it, with one
+     * thread of this node reading the database on behalf of the others.
+     */
+    private StoredFeed awaitSharedFeed(final String key, final String variantKey) throws NewsException {
+        return coalescer.fetch(variantKey + " shared", new Callable<StoredFeed>() {
+            @Override
+            public StoredFeed call() {
+                StoredFeed shared = coordinator.awaitSharedFeed(key, variantKey);
+                if (shared != null) {
+                    cache.put(variantKey + " shared", shared, FeedCacheCapacity.estimateSize(shared.getSnapshot()));
+                }
+                return shared;
+            }
+        });
+    }
+
     /**
      * Get a cache key for this feed.
      *
@@ -436,15 +927,281 @@ public class RomeAdapter extends AbstractNewsAdapter {
         return key.toString();
     }
 
-    private Cache cache;
+    /**
+     * Get a cache key for the copy of a feed sanitized with the specified
+     * policies.  Variants are cached and evicted independently of the parsed
+     * feed.
+     */
+    private String getVariantKey(String key, String titlePolicy, String descriptionPolicy) {
+        return key + " " + titlePolicy + " " + descriptionPolicy;
+    }
+
+    private FeedCache cache;
 
     /**
      * <p>Setter for the field <code>cache</code>.</p>
      *
-     * @param cache a {@link net.sf.ehcache.Cache} object
+     * @param cache a {@link org.jasig.portlet.newsreader.adapter.FeedCache} object
      */
-    public void setCache(Cache cache) {
+    public void setCache(FeedCache cache) {
         this.cache = cache;
     }
 
+    // every pair of policies feeds have been sanitized with;  there are as many as portlets configured differently
+    private final ConcurrentMap<String, String[]> policies = new ConcurrentHashMap<>();
+
+    private FeedRefreshScheduler refreshScheduler;
+
+    /**
+     * Optional scheduler that refreshes feeds read through this adapter before
+     * they expire from the cache.
+     *
+     * @param refreshScheduler a {@link org.jasig.portlet.newsreader.adapter.FeedRefreshScheduler} object
+     */
+    public void setRefreshScheduler(FeedRefreshScheduler refreshScheduler) {
+        this.refreshScheduler = refreshScheduler;
+    }
+
+    private boolean offHeap = false;
+
+    /**
+     * Keep sanitized feeds in the cache outside the heap, decoding each entry
+     * whenever it is read, to shorten garbage collection pauses with many
+     * large feeds.  Each feed is then sanitized in full when it is cached,
+     * and the cache capacity counts its encoded size.
+     *
+     * @param offHeap a boolean
+     */
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    private boolean entryJsonKept = false;
+
+    /**
+     * Whether the JSON of cached entries is kept once written, so that the
+     * cache capacity counts it in the size of each sanitized feed.  Set this
+     * with the JSON view's {@link org.jasig.portlet.newsreader.mvc.NewsJsonModule}.
+     *
+     * @param entryJsonKept a boolean
+     */
+    public void setEntryJsonKept(boolean entryJsonKept) {
+        this.entryJsonKept = entryJsonKept;
+    }
+
+    private FeedSnapshotStore snapshotStore;
+
+    /**
+     * Optional store that keeps sanitized feeds across restarts.  A feed
+     * missing from the cache while the store is warming up, or whose stored
+     * copy is within the stale-while-revalidate window, is then served from
+     * the store and fetched again in the background;  this requires a
+     * {@link #setRefreshScheduler(FeedRefreshScheduler) refresh scheduler}.
+     * Otherwise the stored copy is served only if the fetch fails, within
+     * the stale-if-error window.
+     *
+     * @param snapshotStore a {@link org.jasig.portlet.newsreader.adapter.FeedSnapshotStore} object
+     */
+    public void setSnapshotStore(FeedSnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
+    }
+
+    private FeedCoordinator coordinator;
+
+    /**
+     * Optional coordinator that shares fetched feeds with the other nodes of a
+     * cluster, so that each feed is fetched by one node at a time rather than
+     * by every node.
+     *
+     * @param coordinator a {@link org.jasig.portlet.newsreader.adapter.FeedCoordinator} object
+     */
+    public void setCoordinator(FeedCoordinator coordinator) {
+        this.coordinator = coordinator;
+    }
+
+    private FeedBudget budget = new FeedBudget();
+
+    /**
+     * Limits on the bytes, entries and time of each fetch.  Each adapter has
+     * its own default budget;  share one to see every adapter's feeds that
+     * exceeded it in one place.
+     *
+     * @param budget a {@link org.jasig.portlet.newsreader.adapter.FeedBudget} object
+     */
+    public void setBudget(FeedBudget budget) {
+        this.budget = budget;
+    }
+
+    private UnchangedFeedDetector unchangedFeedDetector = new UnchangedFeedDetector();
+
+    /**
+     * Recognizes bodies identical to the previous fetch of a feed.  Each
+     * adapter has its own by default;  share one to see statistics for every
+     * adapter's feeds in one place.
+     *
+     * @param unchangedFeedDetector a {@link org.jasig.portlet.newsreader.adapter.UnchangedFeedDetector} object
+     */
+    public void setUnchangedFeedDetector(UnchangedFeedDetector unchangedFeedDetector) {
+        this.unchangedFeedDetector = unchangedFeedDetector;
+    }
+
+    private FeedCircuitBreaker circuitBreaker;
+
+    /**
+     * Optional circuit breaker that stops feeds whose origin keeps failing from
+     * being fetched on request threads until they recover.
+     *
+     * @param circuitBreaker a {@link org.jasig.portlet.newsreader.adapter.FeedCircuitBreaker} object
+     */
+    public void setCircuitBreaker(FeedCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    private FeedFetchCoalescer coalescer = new FeedFetchCoalescer();
+
+    /**
+     * Coalesces concurrent fetches of the same feed.  Each adapter has a private
+     * coalescer by default;  configure a shared one so that background refreshes
+     * and request threads join each other's fetches as well.
+     *
+     * @param coalescer a {@link org.jasig.portlet.newsreader.adapter.FeedFetchCoalescer} object
+     */
+    public void setCoalescer(FeedFetchCoalescer coalescer) {
+        this.coalescer = coalescer;
+    }
+
+    /**
+     * Fetches a feed and stores it in the cache under its key.  An expired
+     * entry already in the cache is revalidated rather than fetched again.
+     * Outcomes are reported to the circuit breaker, if any, against the
+     * feed's primary URL.  After a background refresh the variants of the
+     * feed still in the cache are rebuilt from it.
+     */
+    private final class FeedLoader implements Callable<CachedFeed>, FeedRefreshScheduler.Prewarmer {
+
+        private final String key;
+        private final String url;
+        private final String url2;
+
+        private FeedLoader(String key, String url, String url2) {
+            this.key = key;
+            this.url = url;
+            this.url2 = url2;
+        }
+
+        @Override
+        public CachedFeed call() throws NewsException {
+            if (circuitBreaker == null) {
+                return load();
+            }
+            circuitBreaker.checkAvailable(url);
+            try {
+                CachedFeed feed = load();
+                circuitBreaker.recordSuccess(url);
+                return feed;
+            } catch (NewsException ex) {
+                circuitBreaker.recordFailure(url, ex, this);
+                throw ex;
+            } catch (RuntimeException ex) {
+                circuitBreaker.recordFailure(url, ex, this);
+                throw ex;
+            }
+        }
+
+        private CachedFeed load() throws NewsException {
+            CachedFeed feed = loadFeed(url, url2, getCachedFeed(key));
+            cache.put(key, feed, FeedCacheCapacity.estimateSize(feed.getFeed()));
+            return feed;
+        }
+
+        @Override
+        public void prewarm(CachedFeed feed) throws NewsException {
+            for (String[] pair : policies.values()) {
+                // peeked, so that rebuilding a variant does not count as reading it
+                if (cache.peek(getVariantKey(key, pair[0], pair[1])) instanceof FeedVariant) {
+                    getVariant(key, feed, pair[0], pair[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sanitizes a cached feed with one pair of policies and stores the result
+     * in the cache alongside it.
+     */
+    private final class VariantBuilder implements Callable<FeedVariant> {
+
+        private final String variantKey;
+        private final CachedFeed source;
+        private final String titlePolicy;
+        private final String descriptionPolicy;
+
+        private VariantBuilder(String variantKey, CachedFeed source, String titlePolicy, String descriptionPolicy) {
+            this.variantKey = variantKey;
+            this.source = source;
+            this.titlePolicy = titlePolicy;
+            this.descriptionPolicy = descriptionPolicy;
+        }
+
+        @Override
+        public FeedVariant call() throws NewsException {
+            try {
+                // reuse the items of entries unchanged since the previous variant
+                FeedVariant previous = getCachedVariant(variantKey);
+                SanitizedEntries entries = previous != null ? previous.getEntries().next() : new SanitizedEntries();
+                PaginatingNewsFeed feed = processor.getFeed(source.getFeed(), titlePolicy, descriptionPolicy, -1, entries);
+                log.debug("Reused {} of {} sanitized entries for {}", entries.getReusedCount(), entries.size(), variantKey);
+                FeedVariant variant;
+                if (offHeap) {
+                    variant = putOffHeap(feed.toSnapshot());
+                } else {
+                    variant = new FeedVariant(source.getVersion(), feed.toSnapshot(), entries);
+                    // as its entries are read, the variant grows to about the size of its source,
+                    // and to about the size of their JSON again as they are written
+                    long bytes = FeedCacheCapacity.estimateSize(source.getFeed());
+                    if (entryJsonKept) {
+                        bytes += FeedCacheCapacity.estimateJsonSize(source.getFeed());
+                    }
+                    cache.put(variantKey, variant, bytes);
+                }
+                if (snapshotStore != null && snapshotStore.isEnabled()) {
+                    // the copy read back from the store, if any, is no longer needed
+                    cache.remove(variantKey + " stored");
+                    // writing the variant sanitizes all of its entries, on the store's thread
+                    snapshotStore.save(variantKey, source.getFetchedTime(), source.getExpirationTime(), variant.getSnapshot());
+                }
+                return variant;
+            } catch (PolicyException e) {
+                log.warn("Error sanitizing feed", e);
+                throw new NewsException("Error sanitizing feed", e);
+            } catch (ScanException e) {
+                log.warn("Error sanitizing feed", e);
+                throw new NewsException("Error sanitizing feed", e);
+            }
+        }
+
+        /**
+         * Move the sanitized feed out of the heap, decoding entries from it
+         * as they are read.  Encoding it sanitizes every entry now, and the
+         * entries are not kept for reuse by the next variant.
+         */
+        private FeedVariant putOffHeap(FeedSnapshot snapshot) throws NewsException {
+            try {
+                ByteBuffer encoded = FeedSnapshotCodec.encodeDirect(
+                        new StoredFeed(variantKey, source.getFetchedTime(), source.getExpirationTime(), snapshot));
+                FeedVariant variant = new FeedVariant(source.getVersion(),
+                        FeedSnapshotCodec.decodeLazily(encoded).getSnapshot());
+                log.debug("Stored {} off the heap in {} bytes", variantKey, encoded.capacity());
+                cache.put(variantKey, variant, encoded.capacity());
+                return variant;
+            } catch (IllegalStateException e) {
+                log.warn("Error sanitizing feed", e);
+                throw new NewsException("Error sanitizing feed", e);
+            } catch (IOException e) {
+                // not thrown for a buffer just encoded
+                throw new NewsException("Error decoding feed", e);
+            }
+        }
+    }
+
 }
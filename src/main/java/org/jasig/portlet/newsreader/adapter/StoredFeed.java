@@ -0,0 +1,107 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import org.jasig.portlet.newsreader.model.FeedSnapshot;
+
+/**
+ * A sanitized feed as kept outside the news cache, with the times it was
+ * fetched and expires.
+ *
+ * @since 6.0.0
+ */
+public final class StoredFeed {
+
+    private final String key;
+    private final long fetchedTime;
+    private final long expirationTime;
+    private final FeedSnapshot snapshot;
+
+    /**
+     * <p>Constructor for StoredFeed.</p>
+     *
+     * @param key cache key of the sanitized feed
+     * @param fetchedTime when the feed was fetched
+     * @param expirationTime when the feed expires
+     * @param snapshot the sanitized feed
+     */
+    public StoredFeed(String key, long fetchedTime, long expirationTime, FeedSnapshot snapshot) {
+        this.key = key;
+        this.fetchedTime = fetchedTime;
+        this.expirationTime = expirationTime;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * <p>isExpired.</p>
+     *
+     * @param now a long
+     * @return a boolean
+     */
+    public boolean isExpired(long now) {
+        return now >= expirationTime;
+    }
+
+    /**
+     * Get this feed limited to the specified number of stories.
+     *
+     * @param maxStories a int;  zero or less for all stories
+     * @return a {@link org.jasig.portlet.newsreader.model.FeedSnapshot} object
+     */
+    public FeedSnapshot getSnapshot(int maxStories) {
+        return maxStories > 0 ? snapshot.truncate(maxStories) : snapshot;
+    }
+
+    /**
+     * <p>Getter for the field <code>key</code>.</p>
+     *
+     * @return a {@link java.lang.String} object
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * <p>Getter for the field <code>fetchedTime</code>.</p>
+     *
+     * @return a long
+     */
+    public long getFetchedTime() {
+        return fetchedTime;
+    }
+
+    /**
+     * <p>Getter for the field <code>expirationTime</code>.</p>
+     *
+     * @return a long
+     */
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
+    /**
+     * <p>Getter for the field <code>snapshot</code>.</p>
+     *
+     * @return a {@link org.jasig.portlet.newsreader.model.FeedSnapshot} object
+     */
+    public FeedSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+}
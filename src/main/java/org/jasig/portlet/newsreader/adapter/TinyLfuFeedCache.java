@@ -0,0 +1,464 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The news cache bounded by the estimated size of its entries, keeping the
+ * feeds read most often rather than those read last (W-TinyLFU).
+ * <p>
+ * New entries enter an LRU window, initially small, whose share of the
+ * capacity is adapted to the reads.  Entries pushed out of the window are
+ * admitted to the main region only if they have been read more often
+ * recently than the entry they would evict, so that a burst of feeds read
+ * once each (a long tail of personal feeds) cannot push out the few feeds
+ * read by everyone.  The main region is a segmented LRU:  entries read again
+ * while on probation are promoted to a protected segment that takes most of
+ * the capacity.  Recent read counts are kept approximately, in a count-min
+ * sketch of 4-bit counters that is halved periodically so that the counts
+ * follow changes in popularity.
+ * <p>
+ * Entries expire <code>timeToLiveSeconds</code> after they are put;
+ * adapters apply their own, shorter expiry to the values.
+ *
+ * @since 6.0.0
+ */
+public class TinyLfuFeedCache implements FeedCache {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final int MAX_COUNT = 15;
+    // adapting the size of the window
+    private static final double STEP = 0.0625;
+    private static final double STEP_DECAY = 0.98;
+    private static final double RESTART_THRESHOLD = 0.05;
+    private static final double MAX_WINDOW_SHARE = 0.8;
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    private long maxBytes = 64L * 1024 * 1024;
+    private int windowPercent = 1;
+    private int protectedPercent = 80;
+    private int timeToLiveSeconds = 3600;
+    private int expectedEntries = 2000;
+
+    private final Map<String, Node> data = new HashMap<>();
+    // each in access order, least recently used first
+    private final LinkedHashMap<String, Node> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Node> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Node> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+
+    private byte[][] sketch;
+    private int sampleSize;
+    private int samples;
+
+    private double windowShare;
+    private double step;
+    private double previousHitRate;
+    private int climbInterval;
+    private int sampleReads;
+    private int sampleHits;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long rejectionCount;
+
+    /**
+     * Largest total estimated size of the cached entries.
+     *
+     * @param maxBytes a long
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Share of the capacity initially given to the window that new entries
+     * enter.  The share is then adapted to the reads, growing while that
+     * raises the hit ratio (reads favouring recent entries) and shrinking
+     * while shrinking does (reads favouring frequent ones).
+     *
+     * @param windowPercent an int
+     */
+    public void setWindowPercent(int windowPercent) {
+        this.windowPercent = windowPercent;
+    }
+
+    /**
+     * Share of the main region given to entries read more than once.
+     *
+     * @param protectedPercent an int
+     */
+    public void setProtectedPercent(int protectedPercent) {
+        this.protectedPercent = protectedPercent;
+    }
+
+    /**
+     * <p>Setter for the field <code>timeToLiveSeconds</code>.</p>
+     *
+     * @param timeToLiveSeconds an int
+     */
+    public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+        this.timeToLiveSeconds = timeToLiveSeconds;
+    }
+
+    /**
+     * Number of entries the cache usually holds, which sizes the sketch of
+     * read counts.
+     *
+     * @param expectedEntries an int
+     */
+    public void setExpectedEntries(int expectedEntries) {
+        this.expectedEntries = expectedEntries;
+    }
+
+    /**
+     * <p>init.</p>
+     */
+    public synchronized void init() {
+        if (maxBytes <= 0) {
+            throw new IllegalStateException("maxBytes must be positive");
+        }
+        // a power of two of at least 16 counters per row, 10 reads per counter between halvings
+        final int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1)) << 1;
+        sketch = new byte[SEEDS.length][width];
+        sampleSize = 10 * width;
+        samples = 0;
+        windowShare = windowPercent / 100.0;
+        step = STEP;
+        previousHitRate = 0;
+        climbInterval = 10 * Math.max(expectedEntries, 16);
+        sampleReads = 0;
+        sampleHits = 0;
+        log.info("News cache keeps up to {} bytes, sketching the reads of about {} feeds", maxBytes, expectedEntries);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized Object get(String key) {
+        increment(key);
+        final Node node = data.get(key);
+        if (node == null || node.expirationTime <= System.currentTimeMillis()) {
+            if (node != null) {
+                remove(key);
+            }
+            missCount++;
+            sample(false);
+            return null;
+        }
+        if (node.segment == probation) {
+            // read again while on probation
+            move(node, protectedSegment);
+            demoteProtected();
+        } else {
+            node.segment.get(key);
+        }
+        hitCount++;
+        sample(true);
+        return node.value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized Object peek(String key) {
+        final Node node = data.get(key);
+        if (node == null || node.expirationTime <= System.currentTimeMillis()) {
+            return null;
+        }
+        return node.value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void put(String key, Object value, long bytes) {
+        final long expirationTime = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeToLiveSeconds);
+        final Node node = data.get(key);
+        if (node != null) {
+            // replaced in place, keeping its position
+            addBytes(node.segment, bytes - node.bytes);
+            node.value = value;
+            node.bytes = bytes;
+            node.expirationTime = expirationTime;
+            demoteProtected();
+        } else {
+            final Node added = new Node(key, value, bytes, expirationTime);
+            data.put(key, added);
+            added.segment = window;
+            window.put(key, added);
+            addBytes(window, bytes);
+        }
+        evict();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void remove(String key) {
+        final Node node = data.remove(key);
+        if (node != null) {
+            node.segment.remove(key);
+            addBytes(node.segment, -node.bytes);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void clear() {
+        data.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+        windowBytes = 0;
+        probationBytes = 0;
+        protectedBytes = 0;
+    }
+
+    private void move(Node node, LinkedHashMap<String, Node> segment) {
+        node.segment.remove(node.key);
+        addBytes(node.segment, -node.bytes);
+        node.segment = segment;
+        segment.put(node.key, node);
+        addBytes(segment, node.bytes);
+    }
+
+    private void addBytes(LinkedHashMap<String, Node> segment, long bytes) {
+        if (segment == window) {
+            windowBytes += bytes;
+        } else if (segment == probation) {
+            probationBytes += bytes;
+        } else {
+            protectedBytes += bytes;
+        }
+    }
+
+    /**
+     * Move the least recently used protected entries back to probation while
+     * the protected segment is over its share.
+     */
+    private void demoteProtected() {
+        final long maxProtected = (maxBytes - maxWindowBytes()) * protectedPercent / 100;
+        while (protectedBytes > maxProtected && !protectedSegment.isEmpty()) {
+            move(protectedSegment.values().iterator().next(), probation);
+        }
+    }
+
+    /**
+     * Move entries out of the window while it is over its share, evicting
+     * each one or the main region's least recently used entry, whichever has
+     * been read less often, until the cache is within capacity.
+     */
+    private void evict() {
+        while (windowBytes > maxWindowBytes()) {
+            final Node candidate = window.values().iterator().next();
+            move(candidate, probation);
+            admit(candidate);
+        }
+        // entries grown in place, or too large to fit beside the window, may
+        // still leave the cache over capacity
+        while (totalBytes() > maxBytes && (!probation.isEmpty() || !protectedSegment.isEmpty())) {
+            final LinkedHashMap<String, Node> segment = !probation.isEmpty() ? probation : protectedSegment;
+            evict(segment.keySet().iterator().next());
+        }
+    }
+
+    private void admit(Node candidate) {
+        while (totalBytes() > maxBytes) {
+            final Node victim = victim(candidate);
+            if (victim == null) {
+                // nothing left to make room for it but the window
+                return;
+            }
+            if (frequency(candidate.key) > frequency(victim.key)) {
+                evict(victim.key);
+            } else {
+                log.debug("Not admitting {} to the news cache in place of {}", candidate.key, victim.key);
+                remove(candidate.key);
+                rejectionCount++;
+                return;
+            }
+        }
+    }
+
+    private Node victim(Node candidate) {
+        for (Node node : probation.values()) {
+            if (node != candidate) {
+                return node;
+            }
+        }
+        final Iterator<Node> protectedNodes = protectedSegment.values().iterator();
+        return protectedNodes.hasNext() ? protectedNodes.next() : null;
+    }
+
+    private void evict(String key) {
+        log.debug("Removing {} from the news cache to stay within {} bytes", key, maxBytes);
+        remove(key);
+        evictionCount++;
+    }
+
+    /**
+     * Resize the window after every <code>climbInterval</code> reads, taking
+     * another step in the same direction if the hit ratio rose over the last
+     * interval and turning back if it fell.  Steps shrink as the hit ratio
+     * settles and start over when it changes sharply.
+     */
+    private void sample(boolean hit) {
+        if (hit) {
+            sampleHits++;
+        }
+        if (++sampleReads < climbInterval) {
+            return;
+        }
+        final double hitRate = (double) sampleHits / sampleReads;
+        final double change = hitRate - previousHitRate;
+        final double amount = change >= 0 ? step : -step;
+        windowShare = Math.max(0, Math.min(MAX_WINDOW_SHARE, windowShare + amount));
+        step = Math.abs(change) >= RESTART_THRESHOLD ? Math.copySign(STEP, amount) : STEP_DECAY * amount;
+        previousHitRate = hitRate;
+        sampleReads = 0;
+        sampleHits = 0;
+        evict();
+    }
+
+    private long maxWindowBytes() {
+        return (long) (maxBytes * windowShare);
+    }
+
+    private long totalBytes() {
+        return windowBytes + probationBytes + protectedBytes;
+    }
+
+    private void increment(String key) {
+        final int hash = spread(key.hashCode());
+        for (int row = 0; row < sketch.length; row++) {
+            final int index = index(hash, row);
+            if (sketch[row][index] < MAX_COUNT) {
+                sketch[row][index]++;
+            }
+        }
+        if (++samples >= sampleSize) {
+            // age every count, so that feeds no longer read lose their place
+            for (byte[] counters : sketch) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>= 1;
+                }
+            }
+            samples /= 2;
+        }
+    }
+
+    private int frequency(String key) {
+        final int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < sketch.length; row++) {
+            frequency = Math.min(frequency, sketch[row][index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private int index(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & (sketch[row].length - 1);
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+
+    /**
+     * <p>Getter for the field <code>maxBytes</code>.</p>
+     *
+     * @return a long
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the total estimated size of the cached entries
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes();
+    }
+
+    /**
+     * @return number of cached entries
+     */
+    public synchronized int getSize() {
+        return data.size();
+    }
+
+    /**
+     * @return number of reads that found an entry
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of reads that found no entry, or an expired one
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of entries removed to stay within capacity
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return number of entries leaving the window that were not admitted
+     */
+    public synchronized long getRejectionCount() {
+        return rejectionCount;
+    }
+
+    private static final class Node {
+
+        private final String key;
+        private Object value;
+        private long bytes;
+        private long expirationTime;
+        private LinkedHashMap<String, Node> segment;
+
+        private Node(String key, Object value, long bytes, long expirationTime) {
+            this.key = key;
+            this.value = value;
+            this.bytes = bytes;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+}
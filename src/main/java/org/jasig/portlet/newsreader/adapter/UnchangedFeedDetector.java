@@ -0,0 +1,166 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recognizes response bodies identical to the previous fetch of the same URL.
+ * Many origins ignore conditional GETs and send the whole feed every time;
+ * comparing a digest of the body with the one stored with the cached feed
+ * lets the adapter keep the cached feed, and the variants already sanitized
+ * from it, in place of the feed just parsed.  The digest is computed as the
+ * body streams to the parser, so the body is never held in memory.
+ *
+ * @since 6.0.0
+ */
+public class UnchangedFeedDetector {
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Start the digest of a response body, to be updated as it is read.
+     *
+     * @return a new {@link java.security.MessageDigest}
+     */
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Complete the digest of a response body.
+     *
+     * @param digest the digest updated with the complete body
+     * @return the digest, Base64 encoded
+     */
+    public String digest(MessageDigest digest) {
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * Decide whether a body is the same as the one the cached feed was parsed
+     * from, and count the outcome for the URL.
+     *
+     * @param url URL of the feed
+     * @param previous the cached feed from the same URL, or <code>null</code>
+     * @param digest digest of the new body
+     * @return <code>true</code> if the cached feed can be kept
+     */
+    public boolean isUnchanged(String url, CachedFeed previous, String digest) {
+        final boolean unchanged = previous != null && previous.getFeed() != null
+                && digest.equals(previous.getContentDigest());
+        getCounters(url).record(unchanged);
+        return unchanged;
+    }
+
+    private Counters getCounters(String url) {
+        Counters result = counters.get(url);
+        if (result == null) {
+            final Counters created = new Counters(url);
+            result = counters.putIfAbsent(url, created);
+            if (result == null) {
+                result = created;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return how often each feed's body was unchanged, by URL
+     */
+    public List<FeedStatistics> getStatistics() {
+        final List<FeedStatistics> result = new ArrayList<>();
+        for (Counters counter : counters.values()) {
+            result.add(new FeedStatistics(counter.url, counter.hits.get(), counter.misses.get()));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static final class Counters {
+
+        private final String url;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        private Counters(String url) {
+            this.url = url;
+        }
+
+        private void record(boolean hit) {
+            (hit ? hits : misses).incrementAndGet();
+        }
+    }
+
+    /**
+     * Unchanged and changed bodies received from one feed, for display to
+     * administrators.
+     */
+    public static final class FeedStatistics implements Comparable<FeedStatistics> {
+
+        private final String url;
+        private final long hits;
+        private final long misses;
+
+        private FeedStatistics(String url, long hits, long misses) {
+            this.url = url;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return number of bodies identical to the previous one
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return number of bodies that had to be parsed
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        @Override
+        public int compareTo(FeedStatistics that) {
+            return this.url.compareTo(that.url);
+        }
+    }
+
+}
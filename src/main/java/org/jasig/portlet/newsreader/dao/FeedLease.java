@@ -0,0 +1,87 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.dao;
+
+/**
+ * The right of one portlet node to fetch a feed on behalf of the others until
+ * the lease expires or is released.
+ *
+ * @since 6.0.0
+ */
+public class FeedLease {
+
+    private String id;
+    private String owner;
+    private long expires;
+
+    /**
+     * <p>Getter for the field <code>id</code>.</p>
+     *
+     * @return digest of the cache key of the feed
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * <p>Setter for the field <code>id</code>.</p>
+     *
+     * @param id digest of the cache key of the feed
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * <p>Getter for the field <code>owner</code>.</p>
+     *
+     * @return identifier of the node holding the lease
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * <p>Setter for the field <code>owner</code>.</p>
+     *
+     * @param owner identifier of the node holding the lease
+     */
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * <p>Getter for the field <code>expires</code>.</p>
+     *
+     * @return a long
+     */
+    public long getExpires() {
+        return expires;
+    }
+
+    /**
+     * <p>Setter for the field <code>expires</code>.</p>
+     *
+     * @param expires a long
+     */
+    public void setExpires(long expires) {
+        this.expires = expires;
+    }
+
+}
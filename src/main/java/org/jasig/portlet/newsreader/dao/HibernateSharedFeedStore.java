@@ -0,0 +1,104 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.dao;
+
+import org.hibernate.HibernateException;
+import org.springframework.orm.hibernate3.support.HibernateDaoSupport;
+
+/**
+ * HibernateSharedFeedStore provides a hibernate implementation of the
+ * SharedFeedStore.  Leases are taken with a conditional update, so that of
+ * several nodes racing for an expired lease only one succeeds;  nodes racing
+ * to create a lease fail on its primary key instead.
+ *
+ * @since 6.0.0
+ */
+public class HibernateSharedFeedStore extends HibernateDaoSupport implements SharedFeedStore {
+
+    /** {@inheritDoc} */
+    public boolean storeLease(String id, String owner, long now, long expires) {
+        try {
+
+            int updated = getHibernateTemplate().bulkUpdate(
+                    "UPDATE FeedLease SET owner = ?, expires = ? "
+                            + "WHERE id = ? AND (expires <= ? OR owner = ?)",
+                    owner, expires, id, now, owner);
+            if (updated > 0) {
+                return true;
+            }
+            if (getHibernateTemplate().get(FeedLease.class, id) != null) {
+                // held by another node
+                return false;
+            }
+            FeedLease lease = new FeedLease();
+            lease.setId(id);
+            lease.setOwner(owner);
+            lease.setExpires(expires);
+            getHibernateTemplate().save(lease);
+            getHibernateTemplate().flush();
+            return true;
+
+        } catch (HibernateException ex) {
+            throw convertHibernateAccessException(ex);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void removeLease(String id, String owner) {
+        try {
+
+            getHibernateTemplate().bulkUpdate(
+                    "DELETE FROM FeedLease WHERE id = ? AND owner = ?", id, owner);
+
+        } catch (HibernateException ex) {
+            throw convertHibernateAccessException(ex);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public SharedFeed getSharedFeed(String id) {
+        try {
+
+            return getHibernateTemplate().get(SharedFeed.class, id);
+
+        } catch (HibernateException ex) {
+            throw convertHibernateAccessException(ex);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void storeSharedFeed(SharedFeed feed) {
+        try {
+
+            int updated = getHibernateTemplate().bulkUpdate(
+                    "UPDATE SharedFeed SET fetchedTime = ?, expirationTime = ?, data = ? "
+                            + "WHERE id = ? AND fetchedTime <= ?",
+                    feed.getFetchedTime(), feed.getExpirationTime(), feed.getData(),
+                    feed.getId(), feed.getFetchedTime());
+            if (updated == 0 && getHibernateTemplate().get(SharedFeed.class, feed.getId()) == null) {
+                getHibernateTemplate().save(feed);
+                getHibernateTemplate().flush();
+            }
+
+        } catch (HibernateException ex) {
+            throw convertHibernateAccessException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.dao;
+
+/**
+ * A sanitized feed published by the portlet node that fetched it, for the
+ * other nodes to read instead of fetching it themselves.
+ *
+ * @since 6.0.0
+ */
+public class SharedFeed {
+
+    private String id;
+    private long fetchedTime;
+    private long expirationTime;
+    private byte[] data;
+
+    /**
+     * <p>Getter for the field <code>id</code>.</p>
+     *
+     * @return digest of the cache key of the feed
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * <p>Setter for the field <code>id</code>.</p>
+     *
+     * @param id digest of the cache key of the feed
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * <p>Getter for the field <code>fetchedTime</code>.</p>
+     *
+     * @return a long
+     */
+    public long getFetchedTime() {
+        return fetchedTime;
+    }
+
+    /**
+     * <p>Setter for the field <code>fetchedTime</code>.</p>
+     *
+     * @param fetchedTime a long
+     */
+    public void setFetchedTime(long fetchedTime) {
+        this.fetchedTime = fetchedTime;
+    }
+
+    /**
+     * <p>Getter for the field <code>expirationTime</code>.</p>
+     *
+     * @return a long
+     */
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
+    /**
+     * <p>Setter for the field <code>expirationTime</code>.</p>
+     *
+     * @param expirationTime a long
+     */
+    public void setExpirationTime(long expirationTime) {
+        this.expirationTime = expirationTime;
+    }
+
+    /**
+     * <p>Getter for the field <code>data</code>.</p>
+     *
+     * @return the encoded feed
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * <p>Setter for the field <code>data</code>.</p>
+     *
+     * @param data the encoded feed
+     */
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.dao;
+
+/**
+ * SharedFeedStore lets the nodes of a cluster agree on which of them fetches
+ * each feed, and publish the result to the others, through the portlet
+ * database.
+ *
+ * @since 6.0.0
+ */
+public interface SharedFeedStore {
+
+    /**
+     * Take the lease on a feed if it is free, expired or already held by the
+     * specified owner.
+     *
+     * @param id digest of the cache key of the feed
+     * @param owner identifier of the node taking the lease
+     * @param now the current time
+     * @param expires when the lease expires unless released first
+     * @return <code>true</code> if the owner now holds the lease
+     */
+    public boolean storeLease(String id, String owner, long now, long expires);
+
+    /**
+     * Release the lease on a feed, if the specified owner holds it.
+     *
+     * @param id digest of the cache key of the feed
+     * @param owner identifier of the node releasing the lease
+     */
+    public void removeLease(String id, String owner);
+
+    /**
+     * <p>getSharedFeed.</p>
+     *
+     * @param id digest of the cache key of the feed
+     * @return the published feed or <code>null</code>
+     */
+    public SharedFeed getSharedFeed(String id);
+
+    /**
+     * Publish a feed, unless a copy fetched later has been published already.
+     *
+     * @param feed a {@link org.jasig.portlet.newsreader.dao.SharedFeed} object
+     */
+    public void storeSharedFeed(SharedFeed feed);
+
+}
@@ -18,6 +18,8 @@
  */
 package org.jasig.portlet.newsreader.model;
 
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,4 +48,26 @@ public class DefaultFullStory implements FullStory {
     public String getFullStoryText() {
         return content;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof DefaultFullStory)) {
+            return false;
+        }
+        return new EqualsBuilder()
+            .append(this.content, ((DefaultFullStory) obj).content)
+            .isEquals();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(1108432379, -588103723)
+            .append(this.content)
+            .toHashCode();
+    }
 }
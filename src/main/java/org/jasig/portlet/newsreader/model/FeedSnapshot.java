@@ -0,0 +1,148 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable copy of a processed feed, as shared between requests by the
+ * news cache.  Requests never see a snapshot directly;  each is given its own
+ * {@link PaginatingNewsFeed} view over the snapshot's entries, so readers of
+ * different pages cannot interfere with each other.  The entries must not be
+ * modified once they belong to a snapshot.
+ *
+ * @since 6.0.0
+ */
+public final class FeedSnapshot {
+
+    private final String title;
+    private final String link;
+    private final String author;
+    private final String copyright;
+    private final List<NewsFeedItem> entries;
+    private final int maxStories;
+    private final int entriesPerPage;
+
+    /**
+     * <p>Constructor for FeedSnapshot.</p>
+     *
+     * @param title a {@link java.lang.String} object
+     * @param link a {@link java.lang.String} object
+     * @param author a {@link java.lang.String} object
+     * @param copyright a {@link java.lang.String} object
+     * @param entries the entries, which are copied into a new list unless
+     *                they are a {@link LazyEntryList}
+     * @param maxStories a int
+     * @param entriesPerPage a int
+     */
+    public FeedSnapshot(String title, String link, String author, String copyright,
+            List<NewsFeedItem> entries, int maxStories, int entriesPerPage) {
+        this(title, link, author, copyright, entries, maxStories, entriesPerPage, !(entries instanceof LazyEntryList));
+    }
+
+    FeedSnapshot(String title, String link, String author, String copyright,
+            List<NewsFeedItem> entries, int maxStories, int entriesPerPage, boolean copy) {
+        this.title = title;
+        this.link = link;
+        this.author = author;
+        this.copyright = copyright;
+        this.entries = copy ? Collections.unmodifiableList(new ArrayList<>(entries)) : entries;
+        this.maxStories = maxStories;
+        this.entriesPerPage = entriesPerPage;
+    }
+
+    /**
+     * Get this snapshot limited to its first <code>maxStories</code> entries.
+     * The result shares this snapshot's entry list.
+     *
+     * @param maxStories a int;  zero or less for all entries
+     * @return a {@link org.jasig.portlet.newsreader.model.FeedSnapshot} object
+     */
+    public FeedSnapshot truncate(int maxStories) {
+        final List<NewsFeedItem> truncated = maxStories > 0 && maxStories < entries.size()
+                ? entries.subList(0, maxStories) : entries;
+        return new FeedSnapshot(title, link, author, copyright, truncated, maxStories, entriesPerPage, false);
+    }
+
+    /**
+     * <p>Getter for the field <code>title</code>.</p>
+     *
+     * @return a {@link java.lang.String} object
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * <p>Getter for the field <code>link</code>.</p>
+     *
+     * @return a {@link java.lang.String} object
+     */
+    public String getLink() {
+        return link;
+    }
+
+    /**
+     * <p>Getter for the field <code>author</code>.</p>
+     *
+     * @return a {@link java.lang.String} object
+     */
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * <p>Getter for the field <code>copyright</code>.</p>
+     *
+     * @return a {@link java.lang.String} object
+     */
+    public String getCopyright() {
+        return copyright;
+    }
+
+    /**
+     * <p>Getter for the field <code>entries</code>.</p>
+     *
+     * @return an unmodifiable {@link java.util.List} object
+     */
+    public List<NewsFeedItem> getEntries() {
+        return entries;
+    }
+
+    /**
+     * <p>Getter for the field <code>maxStories</code>.</p>
+     *
+     * @return a int
+     */
+    public int getMaxStories() {
+        return maxStories;
+    }
+
+    /**
+     * <p>Getter for the field <code>entriesPerPage</code>.</p>
+     *
+     * @return a int
+     */
+    public int getEntriesPerPage() {
+        return entriesPerPage;
+    }
+
+}
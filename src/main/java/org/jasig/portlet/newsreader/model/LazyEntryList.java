@@ -0,0 +1,72 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.model;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Supplier;
+
+/**
+ * An unmodifiable list of entries, each of which is only built when it is
+ * first read.  The suppliers are responsible for building their entry once
+ * and returning the same entry afterwards, however many threads read it;  or,
+ * for entries kept outside the heap, for building an equal entry each time.
+ * <p>
+ * A {@link FeedSnapshot} keeps a list of this kind as it is, rather than
+ * copying it, so that entries nobody reads are never built.
+ *
+ * @since 6.0.0
+ */
+public final class LazyEntryList extends AbstractList<NewsFeedItem> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<? extends Supplier<NewsFeedItem>> suppliers;
+
+    /**
+     * <p>Constructor for LazyEntryList.</p>
+     *
+     * @param suppliers one supplier per entry, which are copied into a new list
+     */
+    public LazyEntryList(List<? extends Supplier<NewsFeedItem>> suppliers) {
+        this.suppliers = Collections.unmodifiableList(new ArrayList<>(suppliers));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public NewsFeedItem get(int index) {
+        return suppliers.get(index).get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        return suppliers.size();
+    }
+
+    private Object writeReplace() {
+        // the suppliers need not be serializable;  write the entries themselves
+        return new ArrayList<>(this);
+    }
+
+}
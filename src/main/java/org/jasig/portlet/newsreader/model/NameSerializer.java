@@ -0,0 +1,55 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.model;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Writes the name of an author or category as <code>{"name": ...}</code>,
+ * the JSON of the ROME person and category objects items used to hold.
+ * Items now keep only the name, so the other properties of those objects,
+ * such as an author's email address or a category's taxonomy, are no longer
+ * written.
+ *
+ * @since 6.0.0
+ */
+public class NameSerializer extends StdSerializer<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * <p>Constructor for NameSerializer.</p>
+     */
+    public NameSerializer() {
+        super(String.class);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void serialize(String name, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("name", name);
+        generator.writeEndObject();
+    }
+
+}
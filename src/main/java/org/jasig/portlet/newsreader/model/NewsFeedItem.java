@@ -21,11 +21,17 @@ package org.jasig.portlet.newsreader.model;
 import java.util.Date;
 import java.util.List;
 
-import com.rometools.rome.feed.synd.SyndCategory;
-import com.rometools.rome.feed.synd.SyndPerson;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
 
 /**
  * <p>NewsFeedItem class.</p>
+ * <p>
+ * Items are held by the news cache for as long as their feed, so they keep
+ * no references to the parsed feed:  authors and categories are plain
+ * names, written to JSON as objects with a <code>name</code> as before.
  *
  * @author Jen Bourey, jennifer.bourey@gmail.com
  * @since 5.1.1
@@ -33,7 +39,7 @@ import com.rometools.rome.feed.synd.SyndPerson;
 public class NewsFeedItem  implements Comparable<NewsFeedItem> {
 
     private String imageUrl;
-    private List<SyndPerson> authors;
+    private List<String> authors;
     private String description;
     private String content;
     private String videoUrl;
@@ -42,7 +48,33 @@ public class NewsFeedItem  implements Comparable<NewsFeedItem> {
     private String uri;
     private FullStory fullStory;
     private Date pubDate;
-    private List<SyndCategory> categories;
+    private List<String> categories;
+    private boolean cached;
+
+    /**
+     * <p>Constructor for NewsFeedItem.</p>
+     */
+    public NewsFeedItem() {}
+
+    /**
+     * Create a shallow copy of the specified item.  The copy is not
+     * {@link #isCached() cached}.
+     *
+     * @param item a {@link org.jasig.portlet.newsreader.model.NewsFeedItem} object
+     */
+    public NewsFeedItem(NewsFeedItem item) {
+        this.imageUrl = item.imageUrl;
+        this.authors = item.authors;
+        this.description = item.description;
+        this.content = item.content;
+        this.videoUrl = item.videoUrl;
+        this.link = item.link;
+        this.title = item.title;
+        this.uri = item.uri;
+        this.fullStory = item.fullStory;
+        this.pubDate = item.pubDate;
+        this.categories = item.categories;
+    }
 
     /**
      * <p>Getter for the field <code>imageUrl</code>.</p>
@@ -65,18 +97,19 @@ public class NewsFeedItem  implements Comparable<NewsFeedItem> {
     /**
      * <p>Getter for the field <code>authors</code>.</p>
      *
-     * @return a {@link java.util.List} object
+     * @return the names of the authors
      */
-    public List<SyndPerson> getAuthors() {
+    @JsonSerialize(contentUsing = NameSerializer.class)
+    public List<String> getAuthors() {
         return authors;
     }
 
     /**
      * <p>Setter for the field <code>authors</code>.</p>
      *
-     * @param authors a {@link java.util.List} object
+     * @param authors the names of the authors
      */
-    public void setAuthors(List<SyndPerson> authors) {
+    public void setAuthors(List<String> authors) {
         this.authors = authors;
     }
 
@@ -227,21 +260,92 @@ public class NewsFeedItem  implements Comparable<NewsFeedItem> {
     /**
      * <p>Getter for the field <code>categories</code>.</p>
      *
-     * @return a {@link java.util.List} object
+     * @return the names of the categories
      */
-    public List<SyndCategory> getCategories() {
+    @JsonSerialize(contentUsing = NameSerializer.class)
+    public List<String> getCategories() {
         return categories;
     }
 
     /**
      * <p>Setter for the field <code>categories</code>.</p>
      *
-     * @param categories a {@link java.util.List} object
+     * @param categories the names of the categories
      */
-    public void setCategories(List<SyndCategory> categories) {
+    public void setCategories(List<String> categories) {
         this.categories = categories;
     }
 
+    /**
+     * Whether this item is kept in the news cache and shown in many responses,
+     * rather than built for one response.
+     *
+     * @return a boolean
+     */
+    @JsonIgnore
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * <p>Setter for the field <code>cached</code>.</p>
+     *
+     * @param cached a boolean
+     */
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Items are equal if everything shown of them is, so that copies of an
+     * entry, such as those decoded from a stored feed, compare equal to each
+     * other.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof NewsFeedItem)) {
+            return false;
+        }
+
+        NewsFeedItem item = (NewsFeedItem) obj;
+        return new EqualsBuilder()
+            .append(this.title, item.title)
+            .append(this.link, item.link)
+            .append(this.uri, item.uri)
+            .append(this.description, item.description)
+            .append(this.content, item.content)
+            .append(this.imageUrl, item.imageUrl)
+            .append(this.videoUrl, item.videoUrl)
+            .append(this.pubDate, item.pubDate)
+            .append(this.authors, item.authors)
+            .append(this.categories, item.categories)
+            .append(this.fullStory, item.fullStory)
+            .isEquals();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(-1849361183, 1386745829)
+            .append(this.title)
+            .append(this.link)
+            .append(this.uri)
+            .append(this.description)
+            .append(this.content)
+            .append(this.imageUrl)
+            .append(this.videoUrl)
+            .append(this.pubDate)
+            .append(this.authors)
+            .append(this.categories)
+            .append(this.fullStory)
+            .toHashCode();
+    }
+
     /** {@inheritDoc} */
     @Override
     public int compareTo(NewsFeedItem that) {
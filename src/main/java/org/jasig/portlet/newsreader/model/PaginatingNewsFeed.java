@@ -18,8 +18,11 @@
  */
 package org.jasig.portlet.newsreader.model;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.springframework.beans.support.PagedListHolder;
 
 /**
@@ -36,6 +39,11 @@ public class PaginatingNewsFeed extends NewsFeed {
     private int maxStories = -1;
     // need to track page separate from holder due to holder.setPage(int)/.getPage() staying within last page
     private int page = 0;
+    private boolean stale = false;
+    // entries of the current page replaced through setPageEntry, if any
+    private List<NewsFeedItem> pageEntries;
+    // the snapshot this is a view of, if any
+    private transient FeedSnapshot snapshot;
 
     /**
      * <p>Constructor for PaginatingNewsFeed.</p>
@@ -59,6 +67,24 @@ public class PaginatingNewsFeed extends NewsFeed {
         holder.setSource(super.getEntries());
     }
 
+    /**
+     * Create a view of a cached snapshot.  The view shares the snapshot's
+     * entries;  paging it, or substituting entries, affects this view only.
+     *
+     * @param snapshot a {@link org.jasig.portlet.newsreader.model.FeedSnapshot} object
+     * @param initialPage a int
+     */
+    public PaginatingNewsFeed(FeedSnapshot snapshot, int initialPage) {
+        this(snapshot.getEntriesPerPage(), initialPage);
+        setAuthor(snapshot.getAuthor());
+        setLink(snapshot.getLink());
+        setTitle(snapshot.getTitle());
+        setCopyright(snapshot.getCopyright());
+        this.maxStories = snapshot.getMaxStories();
+        this.snapshot = snapshot;
+        holder.setSource(snapshot.getEntries());
+    }
+
     /**
      * <p>Getter for the field <code>page</code>.</p>
      *
@@ -76,6 +102,7 @@ public class PaginatingNewsFeed extends NewsFeed {
     public void setPage(int p) {
         this.page = p;
         holder.setPage(p);
+        pageEntries = null;
     }
 
     /**
@@ -105,12 +132,111 @@ public class PaginatingNewsFeed extends NewsFeed {
         return this.maxStories;
     }
 
+    /**
+     * Indicates the feed expired and could not be refreshed before it was
+     * returned, so it may be out of date.
+     *
+     * @return a boolean
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * <p>Setter for the field <code>stale</code>.</p>
+     *
+     * @param stale a boolean
+     */
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
+    /**
+     * Create an immutable copy of this feed, with all its entries, that can be
+     * shared between requests.
+     *
+     * @return a {@link org.jasig.portlet.newsreader.model.FeedSnapshot} object
+     */
+    public FeedSnapshot toSnapshot() {
+        if (snapshot != null) {
+            // share the entries of the snapshot this is a view of
+            return new FeedSnapshot(getTitle(), getLink(), getAuthor(), getCopyright(),
+                    snapshot.getEntries(), maxStories, holder.getPageSize(), false);
+        }
+        return new FeedSnapshot(getTitle(), getLink(), getAuthor(), getCopyright(),
+                super.getEntries(), maxStories, holder.getPageSize());
+    }
+
+    /**
+     * Replace an entry of the current page in this feed only.  Views share
+     * their entries with a cached snapshot, so an entry that needs
+     * request-specific changes must be copied and substituted this way rather
+     * than modified.
+     *
+     * @param index position of the entry within the current page
+     * @param item the entry to show instead
+     */
+    public void setPageEntry(int index, NewsFeedItem item) {
+        if (pageEntries == null) {
+            pageEntries = new ArrayList<>(getEntries());
+        }
+        pageEntries.set(index, item);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setEntries(List<NewsFeedItem> entries) {
+        super.setEntries(entries);
+        holder.setSource(super.getEntries());
+        pageEntries = null;
+        snapshot = null;
+    }
+
     /** {@inheritDoc} */
     @Override
     public List<NewsFeedItem> getEntries() {
+        if (pageEntries != null) {
+            return Collections.unmodifiableList(pageEntries);
+        }
         if (page < holder.getPageCount()) {  // using .getPage() was always returning a valid value, so never reaching empty set
             return holder.getPageList();
         }
         return Collections.emptyList();
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The entries of a view of a snapshot are not held by the feed itself, so
+     * the entries of the current page are compared instead, together with the
+     * page and whether the feed is stale.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof PaginatingNewsFeed)) {
+            return false;
+        }
+
+        PaginatingNewsFeed feed = (PaginatingNewsFeed) obj;
+        return new EqualsBuilder()
+            .appendSuper(super.equals(obj))
+            .append(this.page, feed.page)
+            .append(this.stale, feed.stale)
+            .append(this.getEntries(), feed.getEntries())
+            .isEquals();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(-1368047657, 1020864097)
+            .appendSuper(super.hashCode())
+            .append(this.page)
+            .append(this.stale)
+            .append(this.getEntries())
+            .toHashCode();
+    }
 }
@@ -20,6 +20,8 @@ package org.jasig.portlet.newsreader.model;
 
 import java.io.IOException;
 
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.http.client.ClientProtocolException;
@@ -96,4 +98,26 @@ public class RemoteHttpFullStory implements FullStory {
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof RemoteHttpFullStory)) {
+            return false;
+        }
+        return new EqualsBuilder()
+            .append(this.remoteHttpUrl, ((RemoteHttpFullStory) obj).remoteHttpUrl)
+            .isEquals();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(-1717591163, 869361997)
+            .append(this.remoteHttpUrl)
+            .toHashCode();
+    }
+
 }
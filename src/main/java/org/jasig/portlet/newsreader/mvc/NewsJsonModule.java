@@ -0,0 +1,295 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.mvc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import org.jasig.portlet.newsreader.model.NewsFeedItem;
+
+/**
+ * Serializes each news feed entry to JSON once, rather than for every
+ * response that shows it.
+ * <p>
+ * The entries of a cached feed are shared by every view of it:  each page,
+ * every <code>maxStories</code> limit and the combined view of several feeds.
+ * The first time a {@link NewsFeedItem#isCached() cached} entry is written,
+ * its UTF-8 JSON is kept for as long as the entry itself is referenced;
+ * later responses copy those bytes into their output in place of
+ * serializing the entry again, date formatting included.  The
+ * news cache counts the kept JSON in the size of the feeds it holds.  The
+ * rest of each response (the user's feeds, the page, entries decoded from
+ * an off-heap feed or copied to carry a link for this request) is
+ * serialized as usual around them.
+ * <p>
+ * Entries are looked up by value, which is fine since entries equal in value
+ * have the same JSON.  They must not be modified once they have been
+ * written, as is already the case for the entries of a cached feed.
+ *
+ * @since 6.0.0
+ */
+public class NewsJsonModule extends SimpleModule {
+
+    private static final long serialVersionUID = 1L;
+
+    // overrideStdFeatures mask selecting every generator feature
+    private static final int ALL_FEATURES = -1;
+
+    private boolean enabled = true;
+
+    private final transient Map<NewsFeedItem, Fragment> fragments =
+            Collections.synchronizedMap(new WeakHashMap<NewsFeedItem, Fragment>());
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * <p>Constructor for NewsJsonModule.</p>
+     */
+    public NewsJsonModule() {
+        super("NewsJsonModule");
+        setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public JsonSerializer<?> modifySerializer(SerializationConfig config,
+                    BeanDescription description, JsonSerializer<?> serializer) {
+                if (NewsFeedItem.class.isAssignableFrom(description.getBeanClass())) {
+                    return new ItemSerializer((JsonSerializer<Object>) serializer);
+                }
+                return serializer;
+            }
+        });
+    }
+
+    /**
+     * Keep the JSON of entries;  when disabled, entries are serialized for
+     * every response.
+     *
+     * @param enabled a boolean
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * <p>isEnabled.</p>
+     *
+     * @return a boolean
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return number of entries written from their kept JSON
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of cached entries serialized
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of entries whose JSON is kept
+     */
+    public int getSize() {
+        return fragments.size();
+    }
+
+    /**
+     * Writes entries from their kept JSON, serializing them with the default
+     * serializer the first time.
+     */
+    private final class ItemSerializer extends JsonSerializer<Object>
+            implements ResolvableSerializer, ContextualSerializer {
+
+        private final JsonSerializer<Object> delegate;
+
+        private ItemSerializer(JsonSerializer<Object> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider) throws JsonMappingException {
+            if (delegate instanceof ResolvableSerializer) {
+                ((ResolvableSerializer) delegate).resolve(provider);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property)
+                throws JsonMappingException {
+            if (delegate instanceof ContextualSerializer) {
+                final JsonSerializer<?> contextual = ((ContextualSerializer) delegate).createContextual(provider, property);
+                if (contextual != delegate) {
+                    return new ItemSerializer((JsonSerializer<Object>) contextual);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public void serialize(Object value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            // entries built for this response alone are not worth keeping, and the
+            // kept JSON is compact;  these and pretty-printed output are serialized as usual
+            final NewsFeedItem item = (NewsFeedItem) value;
+            if (!enabled || !item.isCached() || generator.getCodec() == null || generator.getPrettyPrinter() != null) {
+                delegate.serialize(value, generator, provider);
+                return;
+            }
+            Fragment fragment = fragments.get(item);
+            if (fragment != null) {
+                hitCount.incrementAndGet();
+            } else {
+                missCount.incrementAndGet();
+                final ByteArrayBuilder buffer = new ByteArrayBuilder();
+                try (JsonGenerator itemGenerator = generator.getCodec().getFactory().createGenerator(buffer, JsonEncoding.UTF8)) {
+                    itemGenerator.overrideStdFeatures(generator.getFeatureMask(), ALL_FEATURES);
+                    delegate.serialize(item, itemGenerator, provider);
+                }
+                fragment = new Fragment(buffer.toByteArray());
+                fragments.put(item, fragment);
+            }
+            generator.writeRawValue(fragment);
+        }
+
+        @Override
+        public boolean usesObjectId() {
+            return delegate.usesObjectId();
+        }
+    }
+
+    /**
+     * The UTF-8 JSON of one entry, written as is.  Only the unquoted forms are
+     * used, by <code>writeRawValue</code>.
+     */
+    private static final class Fragment implements SerializableString {
+
+        private final byte[] utf8;
+
+        private Fragment(byte[] utf8) {
+            this.utf8 = utf8;
+        }
+
+        @Override
+        public String getValue() {
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int charLength() {
+            return getValue().length();
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return utf8;
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+            if (offset + utf8.length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(utf8, 0, buffer, offset, utf8.length);
+            return utf8.length;
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+            final String value = getValue();
+            if (offset + value.length() > buffer.length) {
+                return -1;
+            }
+            value.getChars(0, value.length(), buffer, offset);
+            return value.length();
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(utf8);
+            return utf8.length;
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) throws IOException {
+            if (utf8.length > buffer.remaining()) {
+                return -1;
+            }
+            buffer.put(utf8);
+            return utf8.length;
+        }
+    }
+
+}
@@ -19,6 +19,7 @@
 package org.jasig.portlet.newsreader.mvc.portlet.reader;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -28,13 +29,28 @@ import javax.portlet.PortletSecurityException;
 import javax.portlet.RenderRequest;
 import javax.servlet.http.HttpServletRequest;
 
+import org.jasig.portlet.newsreader.adapter.FeedBudget;
+import org.jasig.portlet.newsreader.adapter.FeedCache;
+import org.jasig.portlet.newsreader.adapter.FeedCacheCapacity;
+import org.jasig.portlet.newsreader.adapter.FeedCoordinator;
+import org.jasig.portlet.newsreader.adapter.FeedFetchCoalescer;
+import org.jasig.portlet.newsreader.adapter.FeedRefreshScheduler;
+import org.jasig.portlet.newsreader.adapter.FeedSnapshotStore;
+import org.jasig.portlet.newsreader.adapter.FeedCircuitBreaker;
+import org.jasig.portlet.newsreader.adapter.TinyLfuFeedCache;
+import org.jasig.portlet.newsreader.adapter.UnchangedFeedDetector;
 import org.jasig.portlet.newsreader.mvc.AbstractNewsController;
+import org.jasig.portlet.newsreader.mvc.NewsJsonModule;
+import org.jasig.portlet.newsreader.processor.RomeNewsProcessorImpl;
+import org.jasig.portlet.newsreader.processor.SanitizationCache;
+import org.jasig.portlet.newsreader.service.FeedAggregationService;
 import org.jasig.portlet.newsreader.service.RolesService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.jasig.portlet.newsreader.PredefinedNewsDefinition;
 import org.jasig.portlet.newsreader.dao.NewsStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -62,6 +78,46 @@ public class AdminNewsController {
     @Autowired(required = true)
     private NewsStore newsStore;
 
+    @Autowired(required = false)
+    private FeedRefreshScheduler refreshScheduler;
+
+    @Autowired(required = false)
+    private FeedFetchCoalescer coalescer;
+
+    @Autowired(required = false)
+    private FeedAggregationService aggregationService;
+
+    @Autowired(required = false)
+    private FeedCircuitBreaker circuitBreaker;
+
+    @Autowired(required = false)
+    private FeedBudget budget;
+
+    @Autowired(required = false)
+    private UnchangedFeedDetector unchangedFeedDetector;
+
+    @Autowired(required = false)
+    @Qualifier("feedCache")
+    private FeedCache feedCache;
+
+    @Autowired(required = false)
+    private FeedCacheCapacity cacheCapacity;
+
+    @Autowired(required = false)
+    private FeedSnapshotStore snapshotStore;
+
+    @Autowired(required = false)
+    private FeedCoordinator coordinator;
+
+    @Autowired(required = false)
+    private List<RomeNewsProcessorImpl> processors;
+
+    @Autowired(required = false)
+    private SanitizationCache sanitizationCache;
+
+    @Autowired(required = false)
+    private NewsJsonModule jsonModule;
+
     /**
      * <p>getAdminView.</p>
      *
@@ -84,6 +140,82 @@ public class AdminNewsController {
 
         // get a list of all predefined newss
         model.put("feeds", newsStore.getPredefinedNewsConfigurations());
+
+        // feeds refreshed in the background before they expire
+        if (refreshScheduler != null) {
+            model.put("refreshScheduler", refreshScheduler);
+        }
+
+        // requests that shared a fetch already in flight
+        if (coalescer != null) {
+            model.put("coalescer", coalescer);
+        }
+
+        // feeds left out of the combined view, and how long feeds take to fetch for it
+        if (aggregationService != null) {
+            model.put("aggregation", aggregationService);
+        }
+
+        // feeds whose origin has been failing
+        if (circuitBreaker != null) {
+            model.put("circuits", circuitBreaker.getCircuits());
+        }
+
+        // feeds that were too large or too slow
+        if (budget != null) {
+            model.put("budgetExceeded", budget.getExceeded());
+        }
+
+        // how much of the news cache each feed takes up
+        if (feedCache instanceof TinyLfuFeedCache) {
+            model.put("tinyLfuCache", feedCache);
+        } else if (cacheCapacity != null) {
+            model.put("cacheCapacity", cacheCapacity);
+        }
+
+        // feeds kept on disk across restarts
+        if (snapshotStore != null && snapshotStore.isEnabled()) {
+            model.put("snapshotStore", snapshotStore);
+        }
+
+        // feeds shared with the other nodes of the cluster
+        if (coordinator != null && coordinator.isEnabled()) {
+            model.put("coordinator", coordinator);
+        }
+
+        // how often each feed was sent again unchanged
+        if (unchangedFeedDetector != null) {
+            model.put("unchangedFeeds", unchangedFeedDetector.getStatistics());
+        }
+
+        // how many entries were reused rather than sanitized again
+        if (processors != null) {
+            long reused = 0;
+            long sanitized = 0;
+            long plainText = 0;
+            for (RomeNewsProcessorImpl processor : processors) {
+                reused += processor.getReusedEntryCount();
+                sanitized += processor.getSanitizedEntryCount();
+                plainText += processor.getPlainTextCount();
+            }
+            if (reused + sanitized > 0) {
+                model.put("reusedEntries", reused);
+                model.put("processedEntries", reused + sanitized);
+                model.put("entryReuseRatio", (double) reused / (reused + sanitized));
+            }
+            if (plainText > 0) {
+                model.put("plainTextCount", plainText);
+            }
+        }
+
+        if (sanitizationCache != null) {
+            model.put("sanitizationCache", sanitizationCache);
+        }
+
+        // how many entries were written from their kept JSON
+        if (jsonModule != null && jsonModule.isEnabled()) {
+            model.put("jsonModule", jsonModule);
+        }
         return new ModelAndView("adminNews", "model", model);
 
     }
@@ -37,10 +37,11 @@ import org.jasig.portlet.newsreader.NewsSet;
 import org.jasig.portlet.newsreader.adapter.INewsAdapter;
 import org.jasig.portlet.newsreader.adapter.NewsException;
 import org.jasig.portlet.newsreader.dao.NewsStore;
-import org.jasig.portlet.newsreader.model.NewsFeed;
 import org.jasig.portlet.newsreader.model.NewsFeedItem;
 import org.jasig.portlet.newsreader.model.PaginatingNewsFeed;
 import org.jasig.portlet.newsreader.mvc.AbstractNewsController;
+import org.jasig.portlet.newsreader.service.FeedAggregationService;
+import org.jasig.portlet.newsreader.service.FeedItemMerger;
 import org.jasig.portlet.newsreader.service.NewsSetResolvingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,6 +64,9 @@ import org.springframework.web.portlet.bind.annotation.ResourceMapping;
 @RequestMapping("VIEW")
 public class AjaxNewsController {
 
+    // value from RomeNewsProcessorImpl
+    private static final int AGGREGATED_ENTRIES_PER_PAGE = 10;
+
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
     private NewsStore newsStore;
@@ -103,6 +107,18 @@ public class AjaxNewsController {
         this.applicationContext = applicationContext;
     }
 
+    private FeedAggregationService aggregationService;
+
+    /**
+     * <p>Setter for the field <code>aggregationService</code>.</p>
+     *
+     * @param aggregationService a {@link org.jasig.portlet.newsreader.service.FeedAggregationService} object
+     */
+    @Autowired
+    public void setAggregationService(FeedAggregationService aggregationService) {
+        this.aggregationService = aggregationService;
+    }
+
     /**
      * <p>getJSONFeeds.</p>
      *
@@ -214,6 +230,7 @@ public class AjaxNewsController {
 
             try {
                 PaginatingNewsFeed sharedFeed;
+                Double maxPage = null;
 
                 /*
                  * If user selected all feeds combined in edit news
@@ -226,40 +243,47 @@ public class AjaxNewsController {
 
                     log.debug("Getting all feed items");
 
-                    List<NewsFeedItem> allFeedItems = new ArrayList<>();
-
+                    // Load each configuration here, on the request thread, and
+                    // let the aggregation service fetch the feeds concurrently
+                    List<NewsConfiguration> aggregatedConfigs = new ArrayList<>();
                     for (NewsConfiguration newsConfig : feeds) {
-
-                        log.debug("Getting feed items for " + newsConfig.getNewsDefinition().getName());
-
                         if (newsConfig.getNewsDefinition().getName().equals("All") || !newsConfig.isDisplayed()) {
-                            log.debug("Breaking out of for loop and not getting feed entries");
+                            log.debug("Not getting feed entries for " + newsConfig.getNewsDefinition().getName());
                             continue;
                         }
-                        INewsAdapter adapter = (INewsAdapter) applicationContext.getBean(newsConfig.getNewsDefinition().getClassName());
-
-                        feedConfig = newsStore.getNewsConfiguration( newsConfig.getId());
-
-                        NewsFeed feed = adapter.getSyndFeed(feedConfig, page, maxStories);
-                        List<NewsFeedItem> feedItems = feed.getEntries();
+                        aggregatedConfigs.add(newsStore.getNewsConfiguration(newsConfig.getId()));
+                    }
 
-                        log.debug("Number of feed entries for " + newsConfig.getNewsDefinition().getName() + " is " + feedItems.size() );
+                    FeedAggregationService.Result result = aggregationService.getFeeds(aggregatedConfigs, page, maxStories);
 
-                        for (int i = 0; i < feedItems.size(); i++) {
-                            allFeedItems.add(feedItems.get(i));
-                        }
+                    List<List<NewsFeedItem>> feedItems = new ArrayList<>();
+                    boolean stale = false;
+                    for (PaginatingNewsFeed feed : result.getFeeds()) {
+                        feedItems.add(feed.getEntries());
+                        stale |= feed.isStale();
+                        log.debug("Number of feed entries for " + feed.getTitle() + " is " + feed.getEntries().size());
+                    }
+                    if (!result.getUnavailableFeeds().isEmpty()) {
+                        log.debug("Feeds left out of the combined view: " + result.getUnavailableFeeds());
                     }
 
-                    sharedFeed = new PaginatingNewsFeed(10); // value from RomeNewsProcessorImpl
+                    /*
+                     * Each feed has already returned the requested page of its
+                     * own items;  the combined view is the first page of their
+                     * merge, in date order.
+                     */
+                    FeedItemMerger.Page merged = FeedItemMerger.merge(feedItems, 0, AGGREGATED_ENTRIES_PER_PAGE);
 
-                    Collections.sort(allFeedItems);
+                    sharedFeed = new PaginatingNewsFeed(AGGREGATED_ENTRIES_PER_PAGE);
                     sharedFeed.setTitle("News Feed");
                     sharedFeed.setAuthor("Various");
                     Date year = new Date();
                     sharedFeed.setCopyright(Integer.toString(year.getYear()));
-                    sharedFeed.setEntries(allFeedItems);
+                    sharedFeed.setEntries(merged.getItems());
+                    sharedFeed.setStale(stale);
+                    maxPage = Math.max(1, Math.ceil((double) merged.getTotalCount() / AGGREGATED_ENTRIES_PER_PAGE));
 
-                    log.debug("TOTAL Number of feed items: " + sharedFeed.getEntries().size() );
+                    log.debug("TOTAL Number of feed items: " + merged.getTotalCount());
 
                 } else {
 
@@ -278,12 +302,15 @@ public class AjaxNewsController {
                             link.setParameter("activeFeed", feedConfig.getId().toString());
                             link.setParameter("itemIndex", String.valueOf(i));
                             link.setParameter("page", Integer.toString(page));
-                            item.setLink(link.toString());
+                            // the item is shared through the cache, so link a copy
+                            NewsFeedItem linked = new NewsFeedItem(item);
+                            linked.setLink(link.toString());
+                            sharedFeed.setPageEntry(i, linked);
                         }
                     }
 
                     model.put("feed", sharedFeed);
-                    model.put("maxPage", sharedFeed.getPageCount());
+                    model.put("maxPage", maxPage != null ? maxPage : sharedFeed.getPageCount());
                 } else {
                     log.warn("Failed to get feed from adapter.");
                     model.put("message", "The news \"" + feedConfig.getNewsDefinition().getName() + "\" is currently unavailable.");
@@ -0,0 +1,296 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.processor;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+/**
+ * Produces a short plain-text excerpt of an HTML body, such as the
+ * <code>content:encoded</code> of an entry that has no description.  Only a
+ * prefix of the body is read:  tags and comments are dropped, the contents
+ * of scripts and styles are skipped, entities are decoded and whitespace is
+ * collapsed until enough text has been found.  The excerpt is escaped, so
+ * it is safe to show as HTML whatever the body contained, and a tag or
+ * entity cut off at the end of the prefix never reaches it.
+ *
+ * @since 6.0.0
+ */
+final class ExcerptGenerator {
+
+    private static final String ELLIPSIS = "...";
+
+    // elements whose content is not text to show
+    private static final Set<String> SKIPPED_ELEMENTS = new HashSet<>(Arrays.asList(
+            "script", "style", "noscript", "iframe", "object", "template", "title"));
+
+    // elements that separate the text before them from the text after them
+    private static final Set<String> BLOCK_ELEMENTS = new HashSet<>(Arrays.asList(
+            "address", "article", "aside", "blockquote", "br", "dd", "div", "dl", "dt", "figcaption",
+            "figure", "footer", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "img", "li", "ol",
+            "p", "pre", "section", "table", "td", "th", "tr", "ul"));
+
+    // longest entity reference recognized, e.g. "&thetasym;" or "&#x1F600;"
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    private static final int CUT_OFF = -2;
+
+    private final int maxLength;
+    private final int maxScanLength;
+
+    /**
+     * @param maxLength longest excerpt, in characters before escaping, including
+     *                  the ellipsis added to one that was cut short
+     * @param maxScanLength most characters of the body to read
+     */
+    ExcerptGenerator(int maxLength, int maxScanLength) {
+        if (maxLength <= ELLIPSIS.length()) {
+            throw new IllegalArgumentException("maxLength must be greater than " + ELLIPSIS.length());
+        }
+        this.maxLength = maxLength;
+        this.maxScanLength = maxScanLength;
+    }
+
+    /**
+     * Get an excerpt of the text of an HTML body.
+     *
+     * @param html the body
+     * @return escaped text of at most <code>maxLength</code> characters,
+     *         before escaping
+     */
+    String generate(String html) {
+        final int end = Math.min(html.length(), maxScanLength);
+        final StringBuilder text = new StringBuilder(maxLength + 1);
+        boolean space = false;
+        boolean complete = false;
+
+        int i = 0;
+        // one character past maxLength shows that the excerpt must be cut
+        while (text.length() <= maxLength) {
+            if (i >= end) {
+                complete = end == html.length();
+                break;
+            }
+            final char c = html.charAt(i);
+            if (c == '<' && i + 1 == end && end < html.length()) {
+                // possible markup cut off by the end of the prefix
+                break;
+            } else if (c == '<' && i + 1 < end && isMarkupStart(html.charAt(i + 1))) {
+                final int next = skipMarkup(html, i, end);
+                if (next < 0) {
+                    // markup cut off by the end of the prefix
+                    complete = end == html.length();
+                    break;
+                }
+                // "one<br>two" is two words, "one<b>two</b>" only one
+                space |= BLOCK_ELEMENTS.contains(getTagName(html, html.charAt(i + 1) == '/' ? i + 2 : i + 1, next));
+                i = next;
+            } else if (c == '&') {
+                final int semicolon = findEntityEnd(html, i, end);
+                if (semicolon == CUT_OFF && end < html.length()) {
+                    // entity reference cut off by the end of the prefix
+                    break;
+                }
+                final String decoded = semicolon < 0 ? null : decode(html.substring(i, semicolon + 1));
+                if (decoded != null && decoded.length() == 1 && isSpace(decoded.charAt(0))) {
+                    space = true;
+                    i = semicolon + 1;
+                } else if (decoded != null) {
+                    separate(text, space).append(decoded);
+                    space = false;
+                    i = semicolon + 1;
+                } else {
+                    separate(text, space).append('&');
+                    space = false;
+                    i++;
+                }
+            } else if (isSpace(c)) {
+                space = true;
+                i++;
+            } else {
+                if (c >= ' ') {
+                    separate(text, space).append(c);
+                    space = false;
+                }
+                i++;
+            }
+        }
+
+        if (text.length() > maxLength || (!complete && text.length() > 0)) {
+            int cut = Math.min(text.length(), maxLength - ELLIPSIS.length());
+            if (cut > 0 && Character.isHighSurrogate(text.charAt(cut - 1))) {
+                cut--;
+            }
+            text.setLength(cut);
+            text.append(ELLIPSIS);
+        }
+        return escape(text);
+    }
+
+    private static StringBuilder separate(StringBuilder text, boolean space) {
+        if (space && text.length() > 0) {
+            text.append(' ');
+        }
+        return text;
+    }
+
+    private static boolean isSpace(char c) {
+        return Character.isWhitespace(c) || Character.isSpaceChar(c);
+    }
+
+    private static boolean isMarkupStart(char c) {
+        return Character.isLetter(c) || c == '/' || c == '!' || c == '?';
+    }
+
+    /**
+     * @return index just past the tag, comment or skipped element starting
+     *         at <code>start</code>, or -1 if it does not end before <code>end</code>
+     */
+    private static int skipMarkup(String html, int start, int end) {
+        if (html.startsWith("<!--", start)) {
+            final int close = html.indexOf("-->", start + 4);
+            return close >= 0 && close + 3 <= end ? close + 3 : -1;
+        }
+        final int tagEnd = findTagEnd(html, start, end);
+        if (tagEnd < 0) {
+            return -1;
+        }
+        final String name = getTagName(html, start + 1, tagEnd);
+        if (SKIPPED_ELEMENTS.contains(name) && html.charAt(tagEnd - 1) != '/') {
+            // skip to the end of the element
+            final int close = indexOfIgnoreCase(html, "</" + name, tagEnd + 1, end);
+            if (close < 0) {
+                return -1;
+            }
+            final int closeEnd = findTagEnd(html, close, end);
+            return closeEnd < 0 ? -1 : closeEnd + 1;
+        }
+        return tagEnd + 1;
+    }
+
+    /**
+     * @return index of the '&gt;' that ends the tag at <code>start</code>, ignoring
+     *         any within quoted attribute values, or -1
+     */
+    private static int findTagEnd(String html, int start, int end) {
+        char quote = 0;
+        for (int i = start + 1; i < end; i++) {
+            final char c = html.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String getTagName(String html, int start, int end) {
+        int i = start;
+        while (i < end && Character.isLetterOrDigit(html.charAt(i))) {
+            i++;
+        }
+        return html.substring(start, i).toLowerCase(Locale.ROOT);
+    }
+
+    private static int indexOfIgnoreCase(String html, String s, int from, int end) {
+        for (int i = from; i + s.length() <= end; i++) {
+            if (html.regionMatches(true, i, s, 0, s.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return index of the ';' ending the entity reference at <code>start</code>,
+     *         {@link #CUT_OFF} if <code>end</code> comes first, or -1
+     */
+    private static int findEntityEnd(String html, int start, int end) {
+        final int limit = start + MAX_ENTITY_LENGTH;
+        for (int i = start + 1; i < limit; i++) {
+            if (i >= end) {
+                return CUT_OFF;
+            }
+            final char c = html.charAt(i);
+            if (c == ';') {
+                return i > start + 1 ? i : -1;
+            }
+            if (!Character.isLetterOrDigit(c) && !(c == '#' && i == start + 1)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the text of an entity reference, or <code>null</code> if it is not one
+     */
+    private static String decode(String entity) {
+        if (entity.charAt(1) == '#') {
+            try {
+                final int codePoint = entity.charAt(2) == 'x' || entity.charAt(2) == 'X'
+                        ? Integer.parseInt(entity.substring(3, entity.length() - 1), 16)
+                        : Integer.parseInt(entity.substring(2, entity.length() - 1));
+                return Character.isValidCodePoint(codePoint) && codePoint >= ' '
+                        ? new String(Character.toChars(codePoint)) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        final String decoded = StringEscapeUtils.unescapeHtml(entity);
+        return decoded.equals(entity) ? null : decoded;
+    }
+
+    private static String escape(CharSequence text) {
+        final StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                case '\'':
+                    escaped.append("&#39;");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.processor;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * One entry of a {@link ParsedFeed}.  The title and description are exactly
+ * as the origin sent them;  the image and video are those chosen from the
+ * entry's enclosures and media, and authors and categories are plain names.
+ *
+ * @since 6.0.0
+ */
+public final class ParsedEntry {
+
+    private String title;
+    private String link;
+    private String uri;
+    private String description;
+    private String content;
+    private Date pubDate;
+    private List<String> authors = Collections.emptyList();
+    private List<String> categories = Collections.emptyList();
+    private String imageUrl;
+    private String videoUrl;
+
+    ParsedEntry() {}
+
+    public String getTitle() {
+        return title;
+    }
+
+    void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getLink() {
+        return link;
+    }
+
+    void setLink(String link) {
+        this.link = link;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    void setUri(String uri) {
+        this.uri = uri;
+    }
+
+    /**
+     * @return the description, not yet sanitized
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    void setContent(String content) {
+        this.content = content;
+    }
+
+    public Date getPubDate() {
+        return pubDate;
+    }
+
+    void setPubDate(Date pubDate) {
+        this.pubDate = pubDate;
+    }
+
+    public List<String> getAuthors() {
+        return authors;
+    }
+
+    void setAuthors(List<String> authors) {
+        this.authors = authors;
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    void setCategories(List<String> categories) {
+        this.categories = categories;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    void setImageUrl(String imageUrl) {
+        this.imageUrl = imageUrl;
+    }
+
+    public String getVideoUrl() {
+        return videoUrl;
+    }
+
+    void setVideoUrl(String videoUrl) {
+        this.videoUrl = videoUrl;
+    }
+
+}
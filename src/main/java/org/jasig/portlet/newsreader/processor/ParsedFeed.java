@@ -0,0 +1,76 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.processor;
+
+import java.util.List;
+
+/**
+ * A feed as parsed, before any AntiSamy policy has been applied, holding only
+ * what {@link RomeNewsProcessorImpl} reads when it builds the sanitized copies
+ * of the feed.  Unlike the ROME object model it is made from, it is small
+ * enough to keep in the news cache for as long as the feed.
+ *
+ * @since 6.0.0
+ */
+public final class ParsedFeed {
+
+    private final String title;
+    private final String link;
+    private final String author;
+    private final String copyright;
+    private final List<ParsedEntry> entries;
+
+    /**
+     * <p>Constructor for ParsedFeed.</p>
+     *
+     * @param title a {@link java.lang.String} object
+     * @param link a {@link java.lang.String} object
+     * @param author a {@link java.lang.String} object
+     * @param copyright a {@link java.lang.String} object
+     * @param entries the entries of the feed, which must not be modified afterwards
+     */
+    public ParsedFeed(String title, String link, String author, String copyright, List<ParsedEntry> entries) {
+        this.title = title;
+        this.link = link;
+        this.author = author;
+        this.copyright = copyright;
+        this.entries = entries;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getLink() {
+        return link;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public String getCopyright() {
+        return copyright;
+    }
+
+    public List<ParsedEntry> getEntries() {
+        return entries;
+    }
+
+}
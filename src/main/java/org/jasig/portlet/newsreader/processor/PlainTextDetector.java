@@ -0,0 +1,71 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.processor;
+
+/**
+ * Recognizes text that AntiSamy would return unchanged, so that it need not be
+ * parsed and serialized again.  Most feed titles, and many short descriptions,
+ * are plain text:  no markup, no entities, nothing the serializer would
+ * escape or re-encode.
+ * <p>
+ * The test is deliberately conservative.  Only printable ASCII other than
+ * <code>&lt; &gt; &amp; &quot;</code> qualifies, with no leading or trailing
+ * spaces, no runs of spaces and no line breaks or tabs, since AntiSamy
+ * escapes or rewrites all of these.  Anything else is left to AntiSamy.
+ *
+ * @since 6.0.0
+ */
+final class PlainTextDetector {
+
+    /**
+     * Longest input checked;  longer input is rare and is left to AntiSamy,
+     * which enforces the policy's maximum input size.
+     */
+    static final int MAX_LENGTH = 4096;
+
+    private PlainTextDetector() {
+    }
+
+    /**
+     * @param input text to be cleaned
+     * @return <code>true</code> if cleaning would return the text unchanged
+     */
+    static boolean isUnchanged(String input) {
+        final int length = input.length();
+        if (length == 0 || length > MAX_LENGTH) {
+            return false;
+        }
+        if (input.charAt(0) == ' ' || input.charAt(length - 1) == ' ') {
+            return false;
+        }
+        char previous = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = input.charAt(i);
+            if (c < 0x20 || c > 0x7e || c == '<' || c == '>' || c == '&' || c == '"') {
+                return false;
+            }
+            if (c == ' ' && previous == ' ') {
+                return false;
+            }
+            previous = c;
+        }
+        return true;
+    }
+
+}
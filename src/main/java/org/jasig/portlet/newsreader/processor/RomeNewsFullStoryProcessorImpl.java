@@ -25,8 +25,6 @@ import org.jasig.portlet.newsreader.model.RemoteHttpFullStory;
 import org.owasp.validator.html.PolicyException;
 import org.owasp.validator.html.ScanException;
 
-import com.rometools.rome.feed.synd.SyndEntry;
-
 /**
  * Strategy implementation derived from {@link org.jasig.portlet.newsreader.processor.RomeNewsProcessorImpl} with support for full story.
  *
@@ -42,7 +40,7 @@ public class RomeNewsFullStoryProcessorImpl extends RomeNewsProcessorImpl {
 
     /** {@inheritDoc} */
     @Override
-    protected NewsFeedItem getNewsFeedItem(SyndEntry entry, String titlePolicy, String descriptionPolicy) throws PolicyException, ScanException {
+    protected NewsFeedItem getNewsFeedItem(ParsedEntry entry, String titlePolicy, String descriptionPolicy) throws PolicyException, ScanException {
         log.debug("getNewsFeedItem() in full story method");
         NewsFeedItem item = super.getNewsFeedItem(entry, titlePolicy, descriptionPolicy);
         RemoteHttpFullStory fullStory = new RemoteHttpFullStory(entry.getLink());
@@ -20,13 +20,24 @@ package org.jasig.portlet.newsreader.processor;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.jasig.portlet.newsreader.model.FeedSnapshot;
+import org.jasig.portlet.newsreader.model.LazyEntryList;
 import org.jasig.portlet.newsreader.model.NewsFeedItem;
 import org.jasig.portlet.newsreader.model.PaginatingNewsFeed;
 import org.owasp.validator.html.AntiSamy;
@@ -41,10 +52,12 @@ import com.rometools.rome.feed.module.Module;
 import com.rometools.modules.mediarss.MediaEntryModule;
 import com.rometools.modules.mediarss.types.MediaContent;
 import com.rometools.modules.mediarss.types.MediaGroup;
+import com.rometools.rome.feed.synd.SyndCategory;
 import com.rometools.rome.feed.synd.SyndContent;
 import com.rometools.rome.feed.synd.SyndEnclosure;
 import com.rometools.rome.feed.synd.SyndEntry;
 import com.rometools.rome.feed.synd.SyndFeed;
+import com.rometools.rome.feed.synd.SyndPerson;
 import com.rometools.rome.io.FeedException;
 import com.rometools.rome.io.SyndFeedInput;
 import com.rometools.rome.io.XmlReader;
@@ -60,6 +73,30 @@ public class RomeNewsProcessorImpl {
     @Value("${newsreader.synfeedinput.xmlreader.allowDoctypes:false}")
     private boolean allowDoctypes;
 
+    @Value("${newsreader.processor.streamingParser:false}")
+    private boolean streamingParser;
+
+    @Value("${newsreader.budget.maxEntries:-1}")
+    private int maxEntries = -1;
+
+    @Value("${newsreader.processor.lazySanitization:true}")
+    private boolean lazySanitization = true;
+
+    private volatile StaxFeedParser staxParser;
+
+    private SanitizationCache sanitizationCache;
+
+    private Set<String> textOnlyPolicies = Collections.singleton("antisamy-textonly");
+
+    private final AtomicLong plainTextCount = new AtomicLong();
+
+    // descriptions of entries that only have content are excerpts of its first 16K characters
+    private final ExcerptGenerator excerptGenerator = new ExcerptGenerator(200, 16384);
+
+    private final AtomicLong sanitizedEntryCount = new AtomicLong();
+    private final AtomicLong reusedEntryCount = new AtomicLong();
+    private final AtomicLong sanitizationFailureCount = new AtomicLong();
+
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
     private List<String> imageTypes;
@@ -95,6 +132,64 @@ public class RomeNewsProcessorImpl {
         this.videoTypes = videoTypes;
     }
 
+    /**
+     * Optional cache of AntiSamy output, best shared by every processor.
+     *
+     * @param sanitizationCache a {@link org.jasig.portlet.newsreader.processor.SanitizationCache} object
+     */
+    public void setSanitizationCache(SanitizationCache sanitizationCache) {
+        this.sanitizationCache = sanitizationCache;
+    }
+
+    /**
+     * Names of the policies that allow no markup at all.  Plain text cleaned
+     * with one of these is recognized by {@link PlainTextDetector} and kept
+     * as it is, without a pass through AntiSamy.
+     *
+     * @param textOnlyPolicies a {@link java.util.Set} object
+     */
+    public void setTextOnlyPolicies(Set<String> textOnlyPolicies) {
+        this.textOnlyPolicies = textOnlyPolicies;
+    }
+
+    /**
+     * <p>Getter for the field <code>plainTextCount</code>.</p>
+     *
+     * @return number of texts kept as they are without a pass through AntiSamy
+     */
+    public long getPlainTextCount() {
+        return plainTextCount.get();
+    }
+
+    /**
+     * Whether to read feeds with {@link StaxFeedParser} rather than ROME's
+     * DOM-based parsers.
+     *
+     * @param streamingParser a boolean
+     */
+    public void setStreamingParser(boolean streamingParser) {
+        this.streamingParser = streamingParser;
+    }
+
+    /**
+     * Whether to sanitize each entry when it is first read rather than
+     * sanitizing every entry while the feed is processed.
+     *
+     * @param lazySanitization a boolean
+     */
+    public void setLazySanitization(boolean lazySanitization) {
+        this.lazySanitization = lazySanitization;
+    }
+
+    /**
+     * The most entries to keep from any feed, or -1 for all of them.
+     *
+     * @param maxEntries a int
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
     /**
      * <p>getFeed.</p>
      *
@@ -110,65 +205,440 @@ public class RomeNewsProcessorImpl {
      * @throws org.owasp.validator.html.ScanException if any.
      */
     public PaginatingNewsFeed getFeed(InputStream in, String titlePolicy, String descriptionPolicy, int maxStories) throws IOException, IllegalArgumentException, FeedException, PolicyException, ScanException {
+        // stories past maxStories would be discarded anyway, so don't read them
+        int limit = maxEntries;
+        if (maxStories > 0 && (limit <= 0 || maxStories < limit)) {
+            limit = maxStories;
+        }
+        return getFeed(parseFeed(in, limit), titlePolicy, descriptionPolicy, maxStories);
+    }
+
+    /**
+     * Parse a feed without sanitizing it.  The result can be passed to
+     * {@link #getParsedFeed(SyndFeed)} to keep, and then to
+     * {@link #getFeed(ParsedFeed, String, String, int, SanitizedEntries)} any
+     * number of times to produce copies cleaned with different AntiSamy
+     * policies.  At most <code>maxEntries</code> entries are kept.
+     *
+     * @param in a {@link java.io.InputStream} object
+     * @return a {@link com.rometools.rome.feed.synd.SyndFeed} object
+     * @throws java.io.IOException if any.
+     * @throws java.lang.IllegalArgumentException if any.
+     * @throws com.rometools.rome.io.FeedException if any.
+     */
+    public SyndFeed parseFeed(InputStream in) throws IOException, IllegalArgumentException, FeedException {
+        return parseFeed(in, maxEntries);
+    }
+
+    /**
+     * Parse a feed without sanitizing it, keeping at most <code>limit</code>
+     * entries.  The streaming parser stops reading the document there.
+     *
+     * @param in a {@link java.io.InputStream} object
+     * @param limit a int, zero or less for no limit
+     * @return a {@link com.rometools.rome.feed.synd.SyndFeed} object
+     * @throws java.io.IOException if any.
+     * @throws java.lang.IllegalArgumentException if any.
+     * @throws com.rometools.rome.io.FeedException if any.
+     */
+    public SyndFeed parseFeed(InputStream in, int limit) throws IOException, IllegalArgumentException, FeedException {
+        if (streamingParser) {
+            return getStaxParser().parse(in, limit);
+        }
+
         // get a vanilla SyndFeed from the input stream
         XmlReader reader = new XmlReader(in);
         SyndFeedInput input = new SyndFeedInput();
         input.setAllowDoctypes(allowDoctypes);
         SyndFeed feed = input.build(reader);
+        if (limit > 0 && feed.getEntries().size() > limit) {
+            feed.setEntries(new ArrayList<>(feed.getEntries().subList(0, limit)));
+        }
+        return feed;
+    }
+
+    private StaxFeedParser getStaxParser() {
+        // allowDoctypes is injected after construction, so create this on first use
+        StaxFeedParser parser = staxParser;
+        if (parser == null) {
+            parser = new StaxFeedParser(allowDoctypes);
+            staxParser = parser;
+        }
+        return parser;
+    }
 
-        PaginatingNewsFeed newsFeed = new PaginatingNewsFeed(entriesPerPage);
-        newsFeed.setAuthor(feed.getAuthor());
-        newsFeed.setLink(feed.getLink());
-        newsFeed.setTitle(feed.getTitle());
-        newsFeed.setCopyright(feed.getCopyright());
-        newsFeed.setMaxStories(maxStories);
+    /**
+     * Copy what is needed to build the sanitized copies of a feed out of the
+     * ROME object model, so that the copy can be cached without it.
+     *
+     * @param feed a {@link com.rometools.rome.feed.synd.SyndFeed} object
+     * @return a {@link org.jasig.portlet.newsreader.processor.ParsedFeed} object
+     */
+    public ParsedFeed getParsedFeed(SyndFeed feed) {
+        List<ParsedEntry> entries = new ArrayList<>(feed.getEntries().size());
+        for (SyndEntry entry : feed.getEntries()) {
+            entries.add(getParsedEntry(entry));
+        }
+        return new ParsedFeed(feed.getTitle(), feed.getLink(), feed.getAuthor(), feed.getCopyright(),
+                Collections.unmodifiableList(entries));
+    }
 
-        List<NewsFeedItem> newEntries = new ArrayList<>();
+    /**
+     * Translate a parsed feed into our implementation, cleaning its titles and
+     * descriptions with the specified AntiSamy policies.  The parsed feed is
+     * not modified.
+     *
+     * @param feed a {@link com.rometools.rome.feed.synd.SyndFeed} object
+     * @param titlePolicy a {@link java.lang.String} object
+     * @param descriptionPolicy a {@link java.lang.String} object
+     * @param maxStories a int
+     * @return a {@link org.jasig.portlet.newsreader.model.PaginatingNewsFeed} object
+     * @throws org.owasp.validator.html.PolicyException if any.
+     * @throws org.owasp.validator.html.ScanException if any.
+     */
+    public PaginatingNewsFeed getFeed(SyndFeed feed, String titlePolicy, String descriptionPolicy, int maxStories) throws PolicyException, ScanException {
+        return getFeed(getParsedFeed(feed), titlePolicy, descriptionPolicy, maxStories, null);
+    }
+
+    /**
+     * Translate a parsed feed into our implementation, cleaning its titles and
+     * descriptions with the specified AntiSamy policies.  Entries identical to
+     * one already in <code>entries</code>' previous set reuse its item rather
+     * than being cleaned again;  every item is added to <code>entries</code>.
+     * Unless <code>lazySanitization</code> is off, each entry is only cleaned
+     * when its item is first read.
+     *
+     * @param feed a {@link org.jasig.portlet.newsreader.processor.ParsedFeed} object
+     * @param titlePolicy a {@link java.lang.String} object
+     * @param descriptionPolicy a {@link java.lang.String} object
+     * @param maxStories a int
+     * @param entries items of the feed cleaned with the same policies, or <code>null</code>
+     * @return a {@link org.jasig.portlet.newsreader.model.PaginatingNewsFeed} object
+     * @throws org.owasp.validator.html.PolicyException if any.
+     * @throws org.owasp.validator.html.ScanException if any.
+     */
+    public PaginatingNewsFeed getFeed(ParsedFeed feed, String titlePolicy, String descriptionPolicy, int maxStories, SanitizedEntries entries) throws PolicyException, ScanException {
+        List<SanitizedItem> items = new ArrayList<>();
 
         // translate the default entries into our implementation
-        List<SyndEntry> entries =  feed.getEntries();
-        if (maxStories > 0 && maxStories < entries.size()) {
-            entries = entries.subList(0, maxStories);
+        List<ParsedEntry> parsedEntries = feed.getEntries();
+        if (maxStories > 0 && maxStories < parsedEntries.size()) {
+            parsedEntries = parsedEntries.subList(0, maxStories);
         }
-        for (SyndEntry entry : entries) {
-            NewsFeedItem item = getNewsFeedItem(entry, titlePolicy, descriptionPolicy);
-            newEntries.add(item);
+        for (ParsedEntry entry : parsedEntries) {
+            String key = entries != null ? getEntryKey(entry) : null;
+            SanitizedItem item = key != null ? entries.reuse(key) : null;
+            if (item == null) {
+                item = new SanitizedItem(this, entry, titlePolicy, descriptionPolicy);
+                if (key != null) {
+                    entries.add(key, item);
+                }
+            } else {
+                reusedEntryCount.incrementAndGet();
+            }
+            if (!lazySanitization) {
+                item.load();
+            }
+            items.add(item);
+        }
+        if (entries != null) {
+            entries.complete();
         }
-        newsFeed.setEntries(newEntries);
 
-        return newsFeed;
+        FeedSnapshot snapshot = new FeedSnapshot(feed.getTitle(), feed.getLink(), feed.getAuthor(),
+                feed.getCopyright(), new LazyEntryList(items), maxStories, entriesPerPage);
+        return new PaginatingNewsFeed(snapshot, 0);
     }
 
     /**
-     * <p>getNewsFeedItem.</p>
+     * Sanitize one entry on behalf of a {@link SanitizedItem}.
+     */
+    NewsFeedItem sanitize(ParsedEntry entry, String titlePolicy, String descriptionPolicy) throws PolicyException, ScanException {
+        NewsFeedItem item = getNewsFeedItem(entry, titlePolicy, descriptionPolicy);
+        sanitizedEntryCount.incrementAndGet();
+        return item;
+    }
+
+    /**
+     * Build the item shown in place of an entry that could not be sanitized.
+     * It has no description, and its title is the entry's title escaped as
+     * plain text.
+     *
+     * @param entry the entry
+     * @param cause why it could not be sanitized
+     * @return a {@link org.jasig.portlet.newsreader.model.NewsFeedItem} object
+     */
+    NewsFeedItem getPlaceholderItem(ParsedEntry entry, Exception cause) {
+        log.warn("Error sanitizing feed entry " + (entry.getUri() != null ? entry.getUri() : entry.getLink())
+                + ";  showing it without a description", cause);
+        sanitizationFailureCount.incrementAndGet();
+        NewsFeedItem item = new NewsFeedItem();
+        item.setAuthors(entry.getAuthors());
+        item.setCategories(entry.getCategories());
+        item.setLink(entry.getLink());
+        item.setUri(entry.getUri());
+        item.setPubDate(entry.getPubDate());
+        item.setTitle(StringEscapeUtils.escapeHtml(entry.getTitle()));
+        return item;
+    }
+
+    /**
+     * Clean text with AntiSamy, or take the result of cleaning the same text
+     * with the same policy from the sanitization cache.  Plain text cleaned
+     * with a text-only policy is returned as it is.
+     *
+     * @param as a {@link org.owasp.validator.html.AntiSamy} object
+     * @param input the text to clean
+     * @param policyName name of the policy
+     * @param policy the policy
+     * @return the clean HTML
+     * @throws org.owasp.validator.html.PolicyException if any.
+     * @throws org.owasp.validator.html.ScanException if any.
+     */
+    protected String scan(AntiSamy as, String input, String policyName, Policy policy) throws PolicyException, ScanException {
+        if (policy != null && textOnlyPolicies.contains(policyName) && PlainTextDetector.isUnchanged(input)) {
+            plainTextCount.incrementAndGet();
+            return input;
+        }
+
+        String key = null;
+        if (sanitizationCache != null && policy != null) {
+            key = sanitizationCache.getKey(policyName, input);
+            String cleanHtml = sanitizationCache.get(key);
+            if (cleanHtml != null) {
+                return cleanHtml;
+            }
+        }
+
+        CleanResults cr = as.scan(input, policy);
+        if (log.isDebugEnabled()) {
+            log.debug("Text cleaned with policy '" + policyName + "' in " + cr.getScanTime() + " seconds");
+        }
+        String cleanHtml = cr.getCleanHTML();
+        if (key != null) {
+            sanitizationCache.put(key, cleanHtml);
+        }
+        return cleanHtml;
+    }
+
+    /**
+     * Identify an entry by its URI, or its link if it has none, together with
+     * a digest of everything {@link #getNewsFeedItem} reads from it.  Entries
+     * with the same key produce the same item.
+     *
+     * @param entry a {@link org.jasig.portlet.newsreader.processor.ParsedEntry} object
+     * @return the key, or <code>null</code> if the entry has no identity
+     */
+    protected String getEntryKey(ParsedEntry entry) {
+        String identity = entry.getUri() != null ? entry.getUri() : entry.getLink();
+        if (identity == null) {
+            return null;
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        update(digest, entry.getTitle());
+        update(digest, entry.getLink());
+        update(digest, entry.getUri());
+        update(digest, entry.getDescription());
+        update(digest, entry.getContent());
+        update(digest, entry.getPubDate() != null ? String.valueOf(entry.getPubDate().getTime()) : null);
+        for (String author : entry.getAuthors()) {
+            update(digest, author);
+        }
+        // a separator, so that an author cannot pass for a category
+        update(digest, null);
+        for (String category : entry.getCategories()) {
+            update(digest, category);
+        }
+        update(digest, entry.getImageUrl());
+        update(digest, entry.getVideoUrl());
+        return identity + " " + Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    private void update(MessageDigest digest, String value) {
+        // mark nulls and field boundaries so that different entries cannot run together
+        if (value == null) {
+            digest.update((byte) 0);
+        } else {
+            digest.update((byte) 1);
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+    }
+
+    /**
+     * Get the names of the authors of an entry, or their email addresses if
+     * they have no names.  Names recur across entries and feeds, so they are
+     * interned.
+     */
+    private List<String> getAuthorNames(List<SyndPerson> authors) {
+        if (authors == null || authors.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>(authors.size());
+        for (SyndPerson author : authors) {
+            String name = StringUtils.isNotBlank(author.getName()) ? author.getName() : author.getEmail();
+            if (name != null) {
+                names.add(name.intern());
+            }
+        }
+        return compact(names);
+    }
+
+    /**
+     * Get the names of an entry's categories, interned like author names.
+     */
+    private List<String> getCategoryNames(List<SyndCategory> categories) {
+        if (categories == null || categories.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>(categories.size());
+        for (SyndCategory category : categories) {
+            if (category.getName() != null) {
+                names.add(category.getName().intern());
+            }
+        }
+        return compact(names);
+    }
+
+    private List<String> compact(List<String> names) {
+        switch (names.size()) {
+            case 0:
+                return Collections.emptyList();
+            case 1:
+                return Collections.singletonList(names.get(0));
+            default:
+                return Collections.unmodifiableList(Arrays.asList(names.toArray(new String[names.size()])));
+        }
+    }
+
+    /**
+     * @return number of entries cleaned with AntiSamy
+     */
+    public long getSanitizedEntryCount() {
+        return sanitizedEntryCount.get();
+    }
+
+    /**
+     * @return number of entries shown as a placeholder because they could not be sanitized
+     */
+    public long getSanitizationFailureCount() {
+        return sanitizationFailureCount.get();
+    }
+
+    /**
+     * @return number of entries whose item was reused from a previous copy of the feed
+     */
+    public long getReusedEntryCount() {
+        return reusedEntryCount.get();
+    }
+
+    /**
+     * Copy what {@link #getNewsFeedItem} needs from an entry parsed by ROME,
+     * choosing its image and video from its enclosures and media.
      *
      * @param entry a {@link com.rometools.rome.feed.synd.SyndEntry} object
+     * @return a {@link org.jasig.portlet.newsreader.processor.ParsedEntry} object
+     */
+    protected ParsedEntry getParsedEntry(SyndEntry entry) {
+        ParsedEntry parsed = new ParsedEntry();
+        parsed.setAuthors(getAuthorNames(entry.getAuthors()));
+        parsed.setCategories(getCategoryNames(entry.getCategories()));
+        parsed.setLink(entry.getLink());
+        parsed.setUri(entry.getUri());
+        parsed.setTitle(entry.getTitle());
+        if (entry.getDescription() != null) {
+            parsed.setDescription(entry.getDescription().getValue());
+        }
+        parsed.setPubDate(entry.getPublishedDate());
+
+        String content = null;
+        if (entry.getContents() != null) {
+            for (SyndContent syndContent : (List<SyndContent>) entry.getContents()) {
+                if ("html".equals(syndContent.getType()) || "text".equals(syndContent.getType())) {
+                    content = syndContent.getValue();
+                }
+            }
+        }
+        parsed.setContent(content);
+
+        List<SyndEnclosure> enclosures = entry.getEnclosures();
+        for(SyndEnclosure enclosure: enclosures) {
+            String type = enclosure.getType();
+            if(StringUtils.isNotBlank(type) && videoTypes.contains(type)){
+                parsed.setVideoUrl(enclosure.getUrl());
+                break;
+            } else if(StringUtils.isNotBlank(type) && imageTypes.contains(type)){
+                parsed.setImageUrl(enclosure.getUrl());
+                break;
+            }
+        }
+
+        Module mediaModule = entry.getModule(MediaEntryModule.URI);
+        if (mediaModule!=null && mediaModule instanceof MediaEntryModule ){
+            MediaEntryModule mentry = (MediaEntryModule) mediaModule;
+
+            for (MediaGroup mg : mentry.getMediaGroups()) {
+                for (MediaContent mc : mg.getContents()) {
+                    String type = mc.getType();
+                    if (StringUtils.isNotBlank(type) && videoTypes.contains(type)) {
+                        parsed.setVideoUrl(mc.getReference().toString());
+                        break;
+                    } else if (StringUtils.isNotBlank(type) && imageTypes.contains(type)) {
+                        parsed.setImageUrl(mc.getReference().toString());
+                        break;
+                    }
+                }
+                if (parsed.getImageUrl() == null && mg.getMetadata().getThumbnail().length != 0) {
+                    parsed.setImageUrl(mg.getMetadata().getThumbnail()[0].getUrl().toString());
+                }
+            }
+
+            for (MediaContent mc : mentry.getMediaContents()) {
+                String type = mc.getType();
+                if (StringUtils.isNotBlank(type) && videoTypes.contains(type)) {
+                    parsed.setVideoUrl(mc.getReference().toString());
+                    break;
+                } else if (StringUtils.isNotBlank(type) && imageTypes.contains(type)) {
+                    parsed.setImageUrl(mc.getReference().toString());
+                    break;
+                }
+            }
+        }
+
+        return parsed;
+    }
+
+    /**
+     * <p>getNewsFeedItem.</p>
+     *
+     * @param entry a {@link org.jasig.portlet.newsreader.processor.ParsedEntry} object
      * @param titlePolicy a {@link java.lang.String} object
      * @param descriptionPolicy a {@link java.lang.String} object
      * @return a {@link org.jasig.portlet.newsreader.model.NewsFeedItem} object
      * @throws org.owasp.validator.html.PolicyException if any.
      * @throws org.owasp.validator.html.ScanException if any.
      */
-    protected NewsFeedItem getNewsFeedItem(SyndEntry entry, String titlePolicy, String descriptionPolicy) throws PolicyException, ScanException {
+    protected NewsFeedItem getNewsFeedItem(ParsedEntry entry, String titlePolicy, String descriptionPolicy) throws PolicyException, ScanException {
         NewsFeedItem item = new NewsFeedItem();
         item.setAuthors(entry.getAuthors());
         item.setCategories(entry.getCategories());
         item.setLink(entry.getLink());
         item.setUri(entry.getUri());
 
-        if (entry.getContents() != null) {
-            for (SyndContent content : (List<SyndContent>) entry.getContents()) {
-                if ("html".equals(content.getType()) || "text".equals(content.getType())) {
-                    item.setContent(content.getValue());
-                }
-            }
-        }
+        String content = entry.getContent();
+        item.setContent(content);
 
         // AntiSamy is used to remove unwanted, or risky, HTML tags from RSS Feed data.
         // AntiSamy Policy files describe what is okay and what is not. Different portlets
         // can use different policy files.
         AntiSamy as = new AntiSamy();
-        CleanResults cr = null;
 
         // When working with AntiSamy filter changes, it helps to know what things were
         // before AntiSamy messes them up...
@@ -186,9 +656,9 @@ public class RomeNewsProcessorImpl {
                 log.debug("SyndEntry Pre-AntiSamy Title: null value; skipping AntiSamy." );
             }
 
-            if ( entry.getDescription() != null && entry.getDescription().getValue() != null )
+            if ( entry.getDescription() != null )
             {
-                log.debug("SyndEntry Pre-AntiSamy Description: '" + entry.getDescription().getValue() + "'" );
+                log.debug("SyndEntry Pre-AntiSamy Description: '" + entry.getDescription() + "'" );
             }
             else
             {
@@ -197,9 +667,10 @@ public class RomeNewsProcessorImpl {
         }
 
         // Scrub the HTML data from the RSS Feed's Description tag...
-        if (entry.getDescription() != null && entry.getDescription().getValue() != null)
+        if (entry.getDescription() != null || content != null)
         {
             // Retrieve the specified AntiSamy policy for the description...
+            String descriptionPolicyName = descriptionPolicy;
             Policy asDescriptionPolicy = policies.get( descriptionPolicy );
 
             // Make sure the specified AntiSamy policy actually exists...
@@ -209,24 +680,20 @@ public class RomeNewsProcessorImpl {
                 log.warn( "AntiSamy Policy NOT FOUND for Feed Description: '" + descriptionPolicy + "'." );
                 log.warn( "Either the 'descriptionPolicy' portlet preference is incorrect or does not exist in the applicationContext.xml file." );
                 log.warn( "Proceeding with a Text Only policy, instead." );
-                asDescriptionPolicy = policies.get( "antisamy-textonly" );
+                descriptionPolicyName = "antisamy-textonly";
+                asDescriptionPolicy = policies.get( descriptionPolicyName );
             }
 
-            // Have AntiSamy scan the description and clean out unwanted HTML tags...
-            cr = as.scan(entry.getDescription().getValue(), asDescriptionPolicy);
-            item.setDescription(cr.getCleanHTML());
-        } else if (item.getContent() != null) {
-            cr = as.scan(item.getContent(), policies.get(descriptionPolicy));
-            String desc = cr.getCleanHTML();
-            if (desc.length() > 200) {
-                desc = desc.substring(0, 197).concat("...");
-            }
-            item.setDescription(desc);
+            // Have AntiSamy scan the description and clean out unwanted HTML tags;
+            // entries without one get an excerpt of the text at the start of their
+            // content, scanned with the same policy
+            String description = entry.getDescription() != null
+                    ? entry.getDescription() : excerptGenerator.generate(content);
+            item.setDescription(scan(as, description, descriptionPolicyName, asDescriptionPolicy));
         }
 
-        if (log.isDebugEnabled() && cr != null)
+        if (log.isDebugEnabled() && item.getDescription() != null)
         {
-            log.debug("SyndEntry '" + entry.getTitle() + "' description cleaned in " + cr.getScanTime() + " seconds");
             log.debug("SyndEntry '" + entry.getTitle() + "' modified description is '" + item.getDescription() + "'" );
         }
 
@@ -234,6 +701,7 @@ public class RomeNewsProcessorImpl {
         if (entry.getTitle() != null)
         {
             // Retrieve the specified AntiSamy policy for the title...
+            String titlePolicyName = titlePolicy;
             Policy asTitlePolicy = policies.get( titlePolicy );
 
             // Make sure the specified AntiSamy policy actually exists...
@@ -243,72 +711,30 @@ public class RomeNewsProcessorImpl {
                 log.warn( "AntiSamy Policy NOT FOUND for Feed Title: '" + titlePolicy + "'." );
                 log.warn( "Either the 'titlePolicy' portlet preference is incorrect or does not exist in the applicationContext.xml file." );
                 log.warn( "Proceeding with a Text Only policy, instead." );
-                asTitlePolicy = policies.get( "antisamy-textonly" );
+                titlePolicyName = "antisamy-textonly";
+                asTitlePolicy = policies.get( titlePolicyName );
             }
 
             // Have AntiSamy scan the description and clean out unwanted HTML tags...
-            cr = as.scan(entry.getTitle(), asTitlePolicy);
-            item.setTitle(cr.getCleanHTML());
+            item.setTitle(scan(as, entry.getTitle(), titlePolicyName, asTitlePolicy));
         }
 
-        if (log.isDebugEnabled() && cr != null)
+        if (log.isDebugEnabled() && item.getTitle() != null)
         {
-            log.debug("SyndEntry '" + entry.getTitle() + "' title cleaned in " + cr.getScanTime() + " seconds");
             log.debug("SyndEntry '" + entry.getTitle() + "' modified title is '" + item.getTitle() + "'" );
         }
 
         //add more types as required
 
-        if (entry.getPublishedDate() != null) {
-            log.debug(" Entry "  + entry.getTitle() + " pub date is " + entry.getPublishedDate().toString() );
-            item.setPubDate(entry.getPublishedDate());
+        if (entry.getPubDate() != null) {
+            log.debug(" Entry "  + entry.getTitle() + " pub date is " + entry.getPubDate().toString() );
+            item.setPubDate(entry.getPubDate());
         } else {
             log.debug("Pub date null for " + entry.getTitle() ) ;
         }
 
-        List<SyndEnclosure> enclosures = entry.getEnclosures();
-        for(SyndEnclosure enclosure: enclosures) {
-            String type = enclosure.getType();
-            if(StringUtils.isNotBlank(type) && videoTypes.contains(type)){
-                item.setVideoUrl(enclosure.getUrl());
-                break;
-            } else if(StringUtils.isNotBlank(type) && imageTypes.contains(type)){
-                item.setImageUrl(enclosure.getUrl());
-                break;
-            }
-        }
-
-        Module mediaModule = entry.getModule(MediaEntryModule.URI);
-        if (mediaModule!=null && mediaModule instanceof MediaEntryModule ){
-            MediaEntryModule mentry = (MediaEntryModule) mediaModule;
-
-            for (MediaGroup mg : mentry.getMediaGroups()) {
-                for (MediaContent mc : mg.getContents()) {
-                    String type = mc.getType();
-                    if (StringUtils.isNotBlank(type) && videoTypes.contains(type)) {
-                        item.setVideoUrl(mc.getReference().toString());
-                        break;
-                    } else if (StringUtils.isNotBlank(type) && imageTypes.contains(type)) {
-                        item.setImageUrl(mc.getReference().toString());
-                        break;
-                    }
-                }
-                if (item.getImageUrl() == null && mg.getMetadata().getThumbnail().length != 0) {
-                    item.setImageUrl(mg.getMetadata().getThumbnail()[0].getUrl().toString());
-                }
-            }
-
-            for (MediaContent mc : mentry.getMediaContents()) {
-                String type = mc.getType();
-                if (StringUtils.isNotBlank(type) && videoTypes.contains(type)) {
-                    item.setVideoUrl(mc.getReference().toString());
-                    break;
-                } else if (StringUtils.isNotBlank(type) && imageTypes.contains(type)) {
-                    item.setImageUrl(mc.getReference().toString());
-                    break;
-                }
-            }
-        }
+        item.setImageUrl(entry.getImageUrl());
+        item.setVideoUrl(entry.getVideoUrl());
 
         return item;
     }
@@ -0,0 +1,140 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.processor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+
+/**
+ * Remembers the output of AntiSamy for each policy and input, so that text
+ * seen before is not scanned again.  The same titles and descriptions recur
+ * across refreshes of a feed, across the adapters and across feeds that
+ * syndicate each other;  one instance should be shared by every processor.
+ * <p>
+ * Inputs are identified by their SHA-256 digest, so the keys stay small
+ * however long the input.  Policies are identified by name, so processors
+ * sharing a cache must use the same policy under each name.  The backing
+ * cache should be bounded by heap size rather than element count, since
+ * descriptions vary widely in length.
+ *
+ * @since 6.0.0
+ */
+public class SanitizationCache {
+
+    private Cache cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * <p>Setter for the field <code>cache</code>.</p>
+     *
+     * @param cache a {@link net.sf.ehcache.Cache} object
+     */
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Get the key under which the output for the specified policy and input is
+     * stored.
+     *
+     * @param policyName name of the AntiSamy policy
+     * @param input the text to clean
+     * @return a {@link java.lang.String} object
+     */
+    public String getKey(String policyName, String input) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+            return policyName + " " + Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param key a key from {@link #getKey(String, String)}
+     * @return the clean HTML, or <code>null</code> if it has not been cached
+     */
+    public String get(String key) {
+        final Element element = cache.get(key);
+        if (element == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return (String) element.getObjectValue();
+    }
+
+    /**
+     * @param key a key from {@link #getKey(String, String)}
+     * @param cleanHtml the output of AntiSamy
+     */
+    public void put(String key, String cleanHtml) {
+        cache.put(new Element(key, cleanHtml));
+    }
+
+    /**
+     * @return number of scans avoided
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of inputs that had to be scanned
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return fraction of lookups that avoided a scan, or zero before any lookup
+     */
+    public double getHitRatio() {
+        final long hits = hitCount.get();
+        final long total = hits + missCount.get();
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    /**
+     * @return number of outputs cached
+     */
+    public int getSize() {
+        return cache.getSize();
+    }
+
+    /**
+     * Measure the heap used by the cached outputs.  This walks the cache, so
+     * it is meant for the administration page rather than frequent use.
+     *
+     * @return bytes of heap used
+     */
+    public long getSizeInBytes() {
+        return cache.calculateInMemorySize();
+    }
+
+}
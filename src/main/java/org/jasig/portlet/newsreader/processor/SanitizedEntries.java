@@ -0,0 +1,101 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.processor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The sanitized items of one feed, keyed by the identity and content of the
+ * entry each was built from.  When the feed changes, the items of entries
+ * that did not change are reused from the previous set instead of being
+ * sanitized again;  usually only one or two entries are new.  Items not yet
+ * sanitized are shared as well, and are sanitized once for both sets.
+ * <p>
+ * A set is filled while one copy of the feed is processed and only read
+ * afterwards.  Items must therefore be built for a single pair of AntiSamy
+ * policies.
+ *
+ * @since 6.0.0
+ */
+public final class SanitizedEntries {
+
+    private final Map<String, SanitizedItem> items = new HashMap<>();
+    private Map<String, SanitizedItem> previous;
+    private int reusedCount;
+
+    /**
+     * Create an empty set.
+     */
+    public SanitizedEntries() {
+        this.previous = Collections.emptyMap();
+    }
+
+    private SanitizedEntries(Map<String, SanitizedItem> previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Create an empty set that reuses the items in this one.
+     *
+     * @return a {@link org.jasig.portlet.newsreader.processor.SanitizedEntries} object
+     */
+    public SanitizedEntries next() {
+        return new SanitizedEntries(Collections.unmodifiableMap(items));
+    }
+
+    /**
+     * Take the item built from an identical entry in the previous set, if any.
+     */
+    SanitizedItem reuse(String key) {
+        final SanitizedItem item = previous.get(key);
+        if (item != null) {
+            items.put(key, item);
+            reusedCount++;
+        }
+        return item;
+    }
+
+    void add(String key, SanitizedItem item) {
+        items.put(key, item);
+    }
+
+    /**
+     * Let go of the previous set once the feed has been processed.
+     */
+    void complete() {
+        previous = Collections.emptyMap();
+    }
+
+    /**
+     * @return number of items in this set
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * @return number of items in this set taken from the previous set
+     */
+    public int getReusedCount() {
+        return reusedCount;
+    }
+
+}
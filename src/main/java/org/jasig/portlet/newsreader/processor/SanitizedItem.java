@@ -0,0 +1,95 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.processor;
+
+import java.util.function.Supplier;
+
+import org.jasig.portlet.newsreader.model.NewsFeedItem;
+import org.owasp.validator.html.PolicyException;
+import org.owasp.validator.html.ScanException;
+
+/**
+ * The item for one feed entry, sanitized when it is first read.  Concurrent
+ * first reads wait for a single sanitization and then share its result.  If
+ * the entry cannot be sanitized, a placeholder item is remembered and
+ * returned instead, so the failure is neither repeated nor allowed to break
+ * the page the entry is on.
+ *
+ * @since 6.0.0
+ */
+final class SanitizedItem implements Supplier<NewsFeedItem> {
+
+    private final RomeNewsProcessorImpl processor;
+    private final String titlePolicy;
+    private final String descriptionPolicy;
+    // released once the item is built
+    private ParsedEntry entry;
+    private volatile NewsFeedItem item;
+
+    SanitizedItem(RomeNewsProcessorImpl processor, ParsedEntry entry, String titlePolicy, String descriptionPolicy) {
+        this.processor = processor;
+        this.entry = entry;
+        this.titlePolicy = titlePolicy;
+        this.descriptionPolicy = descriptionPolicy;
+    }
+
+    /**
+     * Get the item, sanitizing the entry first if no one has yet.
+     *
+     * @return the item, or a placeholder if the entry could not be sanitized
+     */
+    @Override
+    public NewsFeedItem get() {
+        try {
+            return load();
+        } catch (PolicyException | ScanException | RuntimeException e) {
+            // load() has remembered the placeholder
+            return item;
+        }
+    }
+
+    /**
+     * Get the item, sanitizing the entry first if no one has yet.  If that
+     * fails, the placeholder is remembered before the failure is thrown.
+     */
+    NewsFeedItem load() throws PolicyException, ScanException {
+        NewsFeedItem result = item;
+        if (result == null) {
+            synchronized (this) {
+                result = item;
+                if (result == null) {
+                    try {
+                        result = processor.sanitize(entry, titlePolicy, descriptionPolicy);
+                    } catch (PolicyException | ScanException | RuntimeException e) {
+                        final NewsFeedItem placeholder = processor.getPlaceholderItem(entry, e);
+                        placeholder.setCached(true);
+                        item = placeholder;
+                        entry = null;
+                        throw e;
+                    }
+                    result.setCached(true);
+                    item = result;
+                    entry = null;
+                }
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,682 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rometools.modules.mediarss.MediaEntryModuleImpl;
+import com.rometools.modules.mediarss.types.MediaContent;
+import com.rometools.modules.mediarss.types.MediaGroup;
+import com.rometools.modules.mediarss.types.Metadata;
+import com.rometools.modules.mediarss.types.Thumbnail;
+import com.rometools.modules.mediarss.types.UrlReference;
+import com.rometools.rome.feed.synd.SyndCategory;
+import com.rometools.rome.feed.synd.SyndCategoryImpl;
+import com.rometools.rome.feed.synd.SyndContent;
+import com.rometools.rome.feed.synd.SyndContentImpl;
+import com.rometools.rome.feed.synd.SyndEnclosure;
+import com.rometools.rome.feed.synd.SyndEnclosureImpl;
+import com.rometools.rome.feed.synd.SyndEntry;
+import com.rometools.rome.feed.synd.SyndEntryImpl;
+import com.rometools.rome.feed.synd.SyndFeed;
+import com.rometools.rome.feed.synd.SyndFeedImpl;
+import com.rometools.rome.feed.synd.SyndPerson;
+import com.rometools.rome.feed.synd.SyndPersonImpl;
+import com.rometools.rome.io.FeedException;
+import com.rometools.rome.io.XmlReader;
+import com.rometools.rome.io.impl.DateParser;
+import com.rometools.rome.io.impl.XmlFixerReader;
+
+/**
+ * Reads RSS 0.9x/2.0, RSS 1.0 and Atom 0.3/1.0 feeds with StAX instead of
+ * building a DOM of the whole document, and stops reading once
+ * <code>maxEntries</code> entries have been read.  It produces the subset of
+ * the {@link SyndFeed} model that {@link RomeNewsProcessorImpl} uses, filled
+ * in the way ROME's own parsers and converters would fill it, so both paths
+ * yield the same news items.
+ * <p>
+ * Channel-level elements that appear after the last entry read are not seen,
+ * and Atom links are not resolved against <code>xml:base</code>.
+ *
+ * @since 6.0.0
+ */
+final class StaxFeedParser {
+
+    private static final String ATOM_10_NS = "http://www.w3.org/2005/Atom";
+    private static final String ATOM_03_NS = "http://purl.org/atom/ns#";
+    private static final String RSS_090_NS = "http://my.netscape.com/rdf/simple/0.9/";
+    private static final String RSS_10_NS = "http://purl.org/rss/1.0/";
+    private static final String CONTENT_NS = "http://purl.org/rss/1.0/modules/content/";
+    private static final String DC_NS = "http://purl.org/dc/elements/1.1/";
+    private static final String MEDIA_NS = "http://search.yahoo.com/mrss/";
+    private static final String MEDIA_NS_ALT = "http://search.yahoo.com/mrss";
+
+    // same default as SyndFeedInput
+    private static final Locale LOCALE = Locale.US;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final XMLInputFactory factory;
+    private final boolean allowDoctypes;
+
+    StaxFeedParser(boolean allowDoctypes) {
+        this.allowDoctypes = allowDoctypes;
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, allowDoctypes);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+    }
+
+    /**
+     * Parse a feed.
+     *
+     * @param in the document, in any encoding {@link XmlReader} can detect
+     * @param maxEntries stop after this many entries;  zero or less for all of them
+     * @return the feed
+     * @throws IOException if the document cannot be read
+     * @throws FeedException if the document is not a well-formed feed
+     */
+    SyndFeed parse(InputStream in, int maxEntries) throws IOException, FeedException {
+        // XmlFixerReader replaces HTML entities, as SyndFeedInput does
+        final Reader reader = new XmlFixerReader(new XmlReader(in));
+        XMLStreamReader xml = null;
+        try {
+            xml = factory.createXMLStreamReader(reader);
+            final int limit = maxEntries > 0 ? maxEntries : Integer.MAX_VALUE;
+            final SyndFeedImpl feed = new SyndFeedImpl();
+            final List<SyndEntry> entries = new ArrayList<>();
+
+            moveToRoot(xml);
+            final String root = xml.getLocalName();
+            final String ns = xml.getNamespaceURI();
+            if ("rss".equals(root)) {
+                parseRss(xml, feed, entries, limit);
+            } else if ("RDF".equals(root)) {
+                parseRdf(xml, feed, entries, limit);
+            } else if ("feed".equals(root) && (ATOM_10_NS.equals(ns) || ATOM_03_NS.equals(ns))) {
+                parseAtom(xml, feed, entries, limit);
+            } else {
+                throw new FeedException("Unrecognized feed format: " + root);
+            }
+
+            feed.setEntries(entries);
+            return feed;
+        } catch (XMLStreamException e) {
+            throw new FeedException("Invalid XML: " + e.getMessage(), e);
+        } finally {
+            if (xml != null) {
+                try {
+                    xml.close();
+                } catch (XMLStreamException e) {
+                    log.debug("Failed to close the feed reader", e);
+                }
+            }
+        }
+    }
+
+    private void moveToRoot(XMLStreamReader xml) throws XMLStreamException, FeedException {
+        while (xml.hasNext()) {
+            final int event = xml.next();
+            if (event == XMLStreamConstants.DTD && !allowDoctypes) {
+                throw new FeedException("Document type declarations are not allowed");
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return;
+            }
+        }
+        throw new FeedException("The document has no root element");
+    }
+
+    /*
+     * RSS 0.9x and 2.0
+     */
+
+    private void parseRss(XMLStreamReader xml, SyndFeedImpl feed, List<SyndEntry> entries, int limit) throws XMLStreamException {
+        while (nextChild(xml)) {
+            if ("channel".equals(xml.getLocalName())) {
+                parseChannel(xml, feed, entries, limit);
+                return;
+            }
+            skipElement(xml);
+        }
+    }
+
+    /**
+     * Read the channel, leaving the reader anywhere if the limit is reached.
+     */
+    private boolean parseChannel(XMLStreamReader xml, SyndFeedImpl feed, List<SyndEntry> entries, int limit) throws XMLStreamException {
+        while (nextChild(xml)) {
+            final String name = xml.getLocalName();
+            final String ns = xml.getNamespaceURI();
+            if ("item".equals(name)) {
+                entries.add(parseRssItem(xml));
+                if (entries.size() >= limit) {
+                    return false;
+                }
+            } else if (DC_NS.equals(ns)) {
+                if ("creator".equals(name) && feed.getAuthor() == null) {
+                    feed.setAuthor(readText(xml));
+                } else if ("rights".equals(name) && feed.getCopyright() == null) {
+                    feed.setCopyright(readText(xml));
+                } else {
+                    skipElement(xml);
+                }
+            } else if (isRssElement(ns)) {
+                if ("title".equals(name)) {
+                    feed.setTitle(readText(xml));
+                } else if ("link".equals(name)) {
+                    feed.setLink(readText(xml).trim());
+                } else if ("copyright".equals(name)) {
+                    feed.setCopyright(readText(xml));
+                } else if ("managingEditor".equals(name)) {
+                    feed.setAuthor(readText(xml));
+                } else {
+                    skipElement(xml);
+                }
+            } else {
+                skipElement(xml);
+            }
+        }
+        return true;
+    }
+
+    private SyndEntry parseRssItem(XMLStreamReader xml) throws XMLStreamException {
+        final SyndEntryImpl entry = new SyndEntryImpl();
+        final List<SyndCategory> categories = new ArrayList<>();
+        final List<SyndEnclosure> enclosures = new ArrayList<>();
+        final MediaCollector media = new MediaCollector();
+        String guid = null;
+        boolean guidIsPermaLink = true;
+        Date pubDate = null;
+        Date dcDate = null;
+
+        while (nextChild(xml)) {
+            final String name = xml.getLocalName();
+            final String ns = xml.getNamespaceURI();
+            if (isMediaElement(ns)) {
+                media.read(xml);
+            } else if (CONTENT_NS.equals(ns) && "encoded".equals(name)) {
+                entry.setContents(singleContent("html", readText(xml)));
+            } else if (DC_NS.equals(ns)) {
+                if ("date".equals(name)) {
+                    dcDate = DateParser.parseDate(readText(xml), LOCALE);
+                } else if ("creator".equals(name) && entry.getAuthor() == null) {
+                    entry.setAuthor(readText(xml));
+                } else {
+                    skipElement(xml);
+                }
+            } else if (!isRssElement(ns)) {
+                skipElement(xml);
+            } else if ("title".equals(name)) {
+                entry.setTitle(readText(xml));
+            } else if ("link".equals(name)) {
+                entry.setLink(readText(xml).trim());
+            } else if ("description".equals(name)) {
+                entry.setDescription(content("text/html", readText(xml)));
+            } else if ("guid".equals(name)) {
+                guidIsPermaLink = !"false".equalsIgnoreCase(xml.getAttributeValue(null, "isPermaLink"));
+                guid = readText(xml);
+            } else if ("pubDate".equals(name)) {
+                pubDate = DateParser.parseDate(readText(xml), LOCALE);
+            } else if ("author".equals(name)) {
+                if (entry.getAuthor() == null) {
+                    entry.setAuthor(readText(xml));
+                } else {
+                    skipElement(xml);
+                }
+            } else if ("category".equals(name)) {
+                final SyndCategoryImpl category = new SyndCategoryImpl();
+                category.setTaxonomyUri(xml.getAttributeValue(null, "domain"));
+                category.setName(readText(xml));
+                categories.add(category);
+            } else if ("enclosure".equals(name)) {
+                enclosures.add(enclosure(xml.getAttributeValue(null, "url"), xml.getAttributeValue(null, "type"),
+                        xml.getAttributeValue(null, "length")));
+                skipElement(xml);
+            } else {
+                skipElement(xml);
+            }
+        }
+
+        // as ROME's RSS converters do
+        if (guid != null) {
+            entry.setUri(guid);
+            if (entry.getLink() == null && guidIsPermaLink) {
+                entry.setLink(guid);
+            }
+        } else {
+            entry.setUri(entry.getLink());
+        }
+        entry.setPublishedDate(pubDate != null ? pubDate : dcDate);
+        entry.setCategories(categories);
+        entry.setEnclosures(enclosures);
+        media.addTo(entry);
+        return entry;
+    }
+
+    /*
+     * RSS 1.0, where the items follow the channel rather than appear in it
+     */
+
+    private void parseRdf(XMLStreamReader xml, SyndFeedImpl feed, List<SyndEntry> entries, int limit) throws XMLStreamException {
+        while (nextChild(xml)) {
+            final String name = xml.getLocalName();
+            if ("channel".equals(name)) {
+                if (!parseChannel(xml, feed, entries, limit)) {
+                    return;
+                }
+            } else if ("item".equals(name)) {
+                entries.add(parseRssItem(xml));
+                if (entries.size() >= limit) {
+                    return;
+                }
+            } else {
+                skipElement(xml);
+            }
+        }
+    }
+
+    /*
+     * Atom 0.3 and 1.0
+     */
+
+    private void parseAtom(XMLStreamReader xml, SyndFeedImpl feed, List<SyndEntry> entries, int limit) throws XMLStreamException {
+        String alternateLink = null;
+        String otherLink = null;
+        while (nextChild(xml)) {
+            final String name = xml.getLocalName();
+            if (!isAtomElement(xml.getNamespaceURI())) {
+                skipElement(xml);
+            } else if ("entry".equals(name)) {
+                entries.add(parseAtomEntry(xml));
+                if (entries.size() >= limit) {
+                    break;
+                }
+            } else if ("title".equals(name)) {
+                feed.setTitle(readTextConstruct(xml).getValue());
+            } else if ("link".equals(name)) {
+                final String rel = xml.getAttributeValue(null, "rel");
+                final String href = xml.getAttributeValue(null, "href");
+                if (rel == null || "alternate".equals(rel)) {
+                    alternateLink = alternateLink == null ? href : alternateLink;
+                } else if (otherLink == null) {
+                    otherLink = href;
+                }
+                skipElement(xml);
+            } else if ("rights".equals(name) || "copyright".equals(name)) {
+                feed.setCopyright(readTextConstruct(xml).getValue());
+            } else if ("author".equals(name) && feed.getAuthor() == null) {
+                feed.setAuthor(readPerson(xml).getName());
+            } else {
+                skipElement(xml);
+            }
+        }
+        feed.setLink(alternateLink != null ? alternateLink : otherLink);
+    }
+
+    private SyndEntry parseAtomEntry(XMLStreamReader xml) throws XMLStreamException {
+        final SyndEntryImpl entry = new SyndEntryImpl();
+        final List<SyndPerson> authors = new ArrayList<>();
+        final List<SyndCategory> categories = new ArrayList<>();
+        final List<SyndEnclosure> enclosures = new ArrayList<>();
+        final List<SyndContent> contents = new ArrayList<>();
+        final MediaCollector media = new MediaCollector();
+        String alternateLink = null;
+        String otherLink = null;
+
+        while (nextChild(xml)) {
+            final String name = xml.getLocalName();
+            final String ns = xml.getNamespaceURI();
+            if (isMediaElement(ns)) {
+                media.read(xml);
+            } else if (!isAtomElement(ns)) {
+                skipElement(xml);
+            } else if ("title".equals(name)) {
+                entry.setTitle(readTextConstruct(xml).getValue());
+            } else if ("link".equals(name)) {
+                final String rel = xml.getAttributeValue(null, "rel");
+                final String href = xml.getAttributeValue(null, "href");
+                if ("enclosure".equals(rel)) {
+                    enclosures.add(enclosure(href, xml.getAttributeValue(null, "type"), xml.getAttributeValue(null, "length")));
+                } else if (rel == null || "alternate".equals(rel)) {
+                    alternateLink = alternateLink == null ? href : alternateLink;
+                } else if (otherLink == null) {
+                    otherLink = href;
+                }
+                skipElement(xml);
+            } else if ("id".equals(name)) {
+                entry.setUri(readText(xml).trim());
+            } else if ("summary".equals(name)) {
+                entry.setDescription(readTextConstruct(xml));
+            } else if ("content".equals(name)) {
+                contents.add(readTextConstruct(xml));
+            } else if ("published".equals(name) || "issued".equals(name)) {
+                entry.setPublishedDate(DateParser.parseDate(readText(xml), LOCALE));
+            } else if ("updated".equals(name) || "modified".equals(name)) {
+                entry.setUpdatedDate(DateParser.parseDate(readText(xml), LOCALE));
+            } else if ("author".equals(name)) {
+                authors.add(readPerson(xml));
+            } else if ("category".equals(name)) {
+                final SyndCategoryImpl category = new SyndCategoryImpl();
+                category.setName(xml.getAttributeValue(null, "term"));
+                category.setTaxonomyUri(xml.getAttributeValue(null, "scheme"));
+                categories.add(category);
+                skipElement(xml);
+            } else {
+                skipElement(xml);
+            }
+        }
+
+        entry.setLink(alternateLink != null ? alternateLink : otherLink);
+        entry.setAuthors(authors);
+        entry.setCategories(categories);
+        entry.setEnclosures(enclosures);
+        entry.setContents(contents);
+        media.addTo(entry);
+        return entry;
+    }
+
+    private SyndPerson readPerson(XMLStreamReader xml) throws XMLStreamException {
+        final SyndPersonImpl person = new SyndPersonImpl();
+        while (nextChild(xml)) {
+            final String name = xml.getLocalName();
+            if ("name".equals(name)) {
+                person.setName(readText(xml));
+            } else if ("email".equals(name)) {
+                person.setEmail(readText(xml));
+            } else if ("uri".equals(name) || "url".equals(name)) {
+                person.setUri(readText(xml));
+            } else {
+                skipElement(xml);
+            }
+        }
+        return person;
+    }
+
+    /**
+     * Read an Atom text construct.  XHTML content is returned as markup, as
+     * ROME does, and anything else as the element's text.
+     */
+    private SyndContent readTextConstruct(XMLStreamReader xml) throws XMLStreamException {
+        final String type = StringUtils.defaultString(xml.getAttributeValue(null, "type"), "text");
+        final String value = "xhtml".equals(type) ? readMarkup(xml) : readText(xml);
+        return content(type, value);
+    }
+
+    /*
+     * Media RSS
+     */
+
+    /**
+     * Collects the Media RSS elements of one entry into the module ROME's
+     * MediaModuleParser would produce.
+     */
+    private final class MediaCollector {
+
+        private final List<MediaContent> contents = new ArrayList<>();
+        private final List<MediaGroup> groups = new ArrayList<>();
+        private final List<Thumbnail> thumbnails = new ArrayList<>();
+        private boolean present;
+
+        private void read(XMLStreamReader xml) throws XMLStreamException {
+            present = true;
+            final String name = xml.getLocalName();
+            if ("content".equals(name)) {
+                addContent(xml, contents);
+            } else if ("thumbnail".equals(name)) {
+                addThumbnail(xml, thumbnails);
+            } else if ("group".equals(name)) {
+                final List<MediaContent> groupContents = new ArrayList<>();
+                final List<Thumbnail> groupThumbnails = new ArrayList<>();
+                while (nextChild(xml)) {
+                    if (!isMediaElement(xml.getNamespaceURI())) {
+                        skipElement(xml);
+                    } else if ("content".equals(xml.getLocalName())) {
+                        addContent(xml, groupContents);
+                    } else if ("thumbnail".equals(xml.getLocalName())) {
+                        addThumbnail(xml, groupThumbnails);
+                    } else {
+                        skipElement(xml);
+                    }
+                }
+                final MediaGroup group = new MediaGroup(groupContents.toArray(new MediaContent[groupContents.size()]));
+                group.setMetadata(metadata(groupThumbnails));
+                groups.add(group);
+            } else {
+                skipElement(xml);
+            }
+        }
+
+        private void addContent(XMLStreamReader xml, List<MediaContent> list) throws XMLStreamException {
+            final String url = xml.getAttributeValue(null, "url");
+            final String type = xml.getAttributeValue(null, "type");
+            skipElement(xml);
+            final URI uri = toUri(url);
+            if (uri != null) {
+                final MediaContent content = new MediaContent(new UrlReference(uri));
+                content.setType(type);
+                list.add(content);
+            }
+        }
+
+        private void addThumbnail(XMLStreamReader xml, List<Thumbnail> list) throws XMLStreamException {
+            final URI uri = toUri(xml.getAttributeValue(null, "url"));
+            skipElement(xml);
+            if (uri != null) {
+                list.add(new Thumbnail(uri));
+            }
+        }
+
+        private Metadata metadata(List<Thumbnail> list) {
+            final Metadata metadata = new Metadata();
+            metadata.setThumbnail(list.toArray(new Thumbnail[list.size()]));
+            return metadata;
+        }
+
+        private void addTo(SyndEntryImpl entry) {
+            if (!present) {
+                return;
+            }
+            final MediaEntryModuleImpl module = new MediaEntryModuleImpl();
+            module.setMediaContents(contents.toArray(new MediaContent[contents.size()]));
+            module.setMediaGroups(groups.toArray(new MediaGroup[groups.size()]));
+            module.setMetadata(metadata(thumbnails));
+            entry.getModules().add(module);
+        }
+
+        private URI toUri(String url) {
+            if (url == null) {
+                return null;
+            }
+            try {
+                return new URI(url.trim());
+            } catch (URISyntaxException e) {
+                log.debug("Ignoring media with invalid URL {}", url);
+                return null;
+            }
+        }
+    }
+
+    /*
+     * Helpers
+     */
+
+    private static boolean isRssElement(String ns) {
+        // RSS 0.9x and 2.0 have no namespace;  RSS 0.90 and 1.0 have their own
+        return StringUtils.isEmpty(ns) || RSS_10_NS.equals(ns) || RSS_090_NS.equals(ns);
+    }
+
+    private static boolean isAtomElement(String ns) {
+        return ATOM_10_NS.equals(ns) || ATOM_03_NS.equals(ns);
+    }
+
+    private static boolean isMediaElement(String ns) {
+        return MEDIA_NS.equals(ns) || MEDIA_NS_ALT.equals(ns);
+    }
+
+    private static List<SyndContent> singleContent(String type, String value) {
+        final List<SyndContent> contents = new ArrayList<>(1);
+        contents.add(content(type, value));
+        return contents;
+    }
+
+    private static SyndContent content(String type, String value) {
+        final SyndContentImpl content = new SyndContentImpl();
+        content.setType(type);
+        content.setValue(value);
+        return content;
+    }
+
+    private static SyndEnclosure enclosure(String url, String type, String length) {
+        final SyndEnclosureImpl enclosure = new SyndEnclosureImpl();
+        enclosure.setUrl(url);
+        enclosure.setType(type);
+        if (length != null) {
+            try {
+                enclosure.setLength(Long.parseLong(length.trim()));
+            } catch (NumberFormatException e) {
+                // ignore, as ROME does
+            }
+        }
+        return enclosure;
+    }
+
+    /**
+     * Advance to the next child of the current element.
+     *
+     * @return <code>true</code> positioned on the child's start tag, or
+     *         <code>false</code> positioned on the current element's end tag
+     */
+    private static boolean nextChild(XMLStreamReader xml) throws XMLStreamException {
+        while (xml.hasNext()) {
+            final int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skip from the start tag of an element to its end tag.
+     */
+    private static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            final int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Read the text directly inside an element, ignoring any child elements,
+     * as JDOM's <code>getText()</code> does.  Leaves the reader on the end tag.
+     */
+    private static String readText(XMLStreamReader xml) throws XMLStreamException {
+        final StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            final int event = xml.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (depth == 1) {
+                        text.append(xml.getText());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Serialize the content of an element as markup.
+     */
+    private static String readMarkup(XMLStreamReader xml) throws XMLStreamException {
+        final StringBuilder markup = new StringBuilder();
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            final int event = xml.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    markup.append('<').append(xml.getLocalName());
+                    for (int i = 0; i < xml.getAttributeCount(); i++) {
+                        markup.append(' ').append(xml.getAttributeLocalName(i)).append("=\"")
+                                .append(escape(xml.getAttributeValue(i)).replace("\"", "&quot;")).append('"');
+                    }
+                    markup.append('>');
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    if (depth > 0) {
+                        markup.append("</").append(xml.getLocalName()).append('>');
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    markup.append(escape(xml.getText()));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return markup.toString().trim();
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+}
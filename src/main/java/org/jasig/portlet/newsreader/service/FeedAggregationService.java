@@ -0,0 +1,293 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.jasig.portlet.newsreader.NewsConfiguration;
+import org.jasig.portlet.newsreader.adapter.FeedRefreshScheduler;
+import org.jasig.portlet.newsreader.adapter.INewsAdapter;
+import org.jasig.portlet.newsreader.adapter.RomeAdapter;
+import org.jasig.portlet.newsreader.model.PaginatingNewsFeed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+
+/**
+ * Spring-managed bean that fetches the feeds of the "All" view concurrently.
+ * Every feed is fetched on a bounded pool of threads and the whole batch shares
+ * a single deadline;  feeds that are not ready by then are left out of the
+ * result and reported by name instead of holding up the response.  A feed
+ * left out this way keeps loading in the background, so it is usually cached
+ * by the next request.
+ * <p>
+ * Fetches never see the portlet request:  anything an adapter reads from it,
+ * such as the AntiSamy policies of {@link RomeAdapter}, is looked up on the
+ * request thread before the fetch is submitted.  Completion times are kept
+ * for at most <code>maxTimedFeeds</code> feeds.
+ *
+ * @since 6.0.0
+ */
+@Service
+public class FeedAggregationService {
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${newsreader.aggregation.timeoutMillis:5000}")
+    private long timeoutMillis;
+
+    @Value("${newsreader.aggregation.poolSize:10}")
+    private int poolSize;
+
+    @Value("${newsreader.aggregation.queueSize:200}")
+    private int queueSize;
+
+    @Value("${newsreader.aggregation.maxTimedFeeds:500}")
+    private int maxTimedFeeds;
+
+    private ThreadPoolExecutor executor;
+
+    private final ConcurrentMap<String, FeedTiming> completionTimes = new ConcurrentHashMap<>();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * <p>init.</p>
+     */
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new FeedRefreshScheduler.DaemonThreadFactory("feed-aggregation-"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * <p>destroy.</p>
+     */
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Fetch the specified feeds concurrently, waiting no longer than the
+     * configured timeout for all of them.
+     *
+     * @param configs the feeds to fetch;  must be fully loaded, since they are used off the request thread
+     * @param page page of each feed to fetch
+     * @param maxStories maximum number of stories per feed
+     * @return the feeds that were fetched in time, in the order requested, and the names of those that were not
+     */
+    public Result getFeeds(List<NewsConfiguration> configs, int page, int maxStories) {
+
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        final List<Future<PaginatingNewsFeed>> futures = new ArrayList<>(configs.size());
+        for (NewsConfiguration config : configs) {
+            try {
+                INewsAdapter adapter = (INewsAdapter) applicationContext.getBean(config.getNewsDefinition().getClassName());
+                // RomeAdapter reads the AntiSamy policies from the portlet request
+                String[] policies = adapter instanceof RomeAdapter ? ((RomeAdapter) adapter).getPolicies() : null;
+                futures.add(executor.submit(new FeedTask(adapter, config, page, maxStories, policies, deadline)));
+            } catch (RejectedExecutionException ex) {
+                log.warn("Too many feeds waiting to be fetched; leaving out " + config.getNewsDefinition().getName());
+                futures.add(null);
+            }
+        }
+
+        final Result result = new Result();
+        for (int i = 0; i < configs.size(); i++) {
+            final String name = configs.get(i).getNewsDefinition().getName();
+            final Future<PaginatingNewsFeed> future = futures.get(i);
+            if (future == null) {
+                result.unavailableFeeds.add(name);
+                continue;
+            }
+            try {
+                final long remaining = Math.max(0L, deadline - System.currentTimeMillis());
+                final PaginatingNewsFeed feed = future.get(remaining, TimeUnit.MILLISECONDS);
+                if (feed != null) {
+                    result.feeds.add(feed);
+                } else {
+                    result.unavailableFeeds.add(name);
+                }
+            } catch (TimeoutException ex) {
+                // Let a fetch already in progress finish and populate the cache,
+                // but don't start one that is still waiting in the queue
+                future.cancel(false);
+                log.debug("Feed {} missed the aggregation deadline", name);
+                result.unavailableFeeds.add(name);
+            } catch (ExecutionException ex) {
+                log.warn("Failed to fetch feed " + name, ex.getCause());
+                result.unavailableFeeds.add(name);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                future.cancel(false);
+                result.unavailableFeeds.add(name);
+            }
+        }
+        droppedCount.addAndGet(result.unavailableFeeds.size());
+        return result;
+    }
+
+    /**
+     * @return number of feeds left out of an aggregated view because they failed, missed
+     *         the deadline or could not be queued
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return completion time statistics keyed by feed name
+     */
+    public Map<String, FeedTiming> getCompletionTimes() {
+        return Collections.unmodifiableMap(completionTimes);
+    }
+
+    private void recordCompletion(String name, long millis) {
+        FeedTiming timing = completionTimes.get(name);
+        if (timing == null) {
+            if (completionTimes.size() >= maxTimedFeeds) {
+                // feed names are chosen by users;  don't let them grow the map without bound
+                return;
+            }
+            FeedTiming created = new FeedTiming();
+            timing = completionTimes.putIfAbsent(name, created);
+            if (timing == null) {
+                timing = created;
+            }
+        }
+        timing.record(millis);
+    }
+
+    private final class FeedTask implements Callable<PaginatingNewsFeed> {
+
+        private final INewsAdapter adapter;
+        private final NewsConfiguration config;
+        private final int page;
+        private final int maxStories;
+        private final String[] policies;
+        private final long deadline;
+
+        private FeedTask(INewsAdapter adapter, NewsConfiguration config, int page, int maxStories,
+                String[] policies, long deadline) {
+            this.adapter = adapter;
+            this.config = config;
+            this.page = page;
+            this.maxStories = maxStories;
+            this.policies = policies;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public PaginatingNewsFeed call() {
+            if (System.currentTimeMillis() >= deadline) {
+                // the response has gone without us
+                return null;
+            }
+            final String name = config.getNewsDefinition().getName();
+            final long start = System.currentTimeMillis();
+            try {
+                if (policies != null) {
+                    return ((RomeAdapter) adapter).getSyndFeed(config, page, maxStories, policies[0], policies[1]);
+                }
+                return adapter.getSyndFeed(config, page, maxStories);
+            } finally {
+                final long elapsed = System.currentTimeMillis() - start;
+                recordCompletion(name, elapsed);
+                log.debug("Fetched feed {} for aggregation in {} ms", name, elapsed);
+            }
+        }
+    }
+
+    /**
+     * Feeds returned by {@link FeedAggregationService#getFeeds(List, int, int)}.
+     */
+    public static final class Result {
+
+        private final List<PaginatingNewsFeed> feeds = new ArrayList<>();
+        private final List<String> unavailableFeeds = new ArrayList<>();
+
+        /**
+         * @return the feeds fetched before the deadline, in the order requested
+         */
+        public List<PaginatingNewsFeed> getFeeds() {
+            return feeds;
+        }
+
+        /**
+         * @return names of the feeds that failed or missed the deadline
+         */
+        public List<String> getUnavailableFeeds() {
+            return unavailableFeeds;
+        }
+    }
+
+    /**
+     * Running completion time statistics for one feed.
+     */
+    public static final class FeedTiming {
+
+        private long count;
+        private long totalMillis;
+        private long maxMillis;
+
+        private synchronized void record(long millis) {
+            count++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getMaxMillis() {
+            return maxMillis;
+        }
+
+        public synchronized long getAverageMillis() {
+            return count == 0 ? 0 : totalMillis / count;
+        }
+    }
+
+}
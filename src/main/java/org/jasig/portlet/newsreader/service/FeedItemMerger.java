@@ -0,0 +1,168 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.jasig.portlet.newsreader.model.NewsFeedItem;
+
+/**
+ * Merges the items of several feeds into one page of the combined view.  Each
+ * feed's items are treated as a sorted run and the runs are merged lazily
+ * through a heap, so only the items up to the end of the requested page are
+ * ever visited.  The result is the same as concatenating the runs in order,
+ * stably sorting them by {@link NewsFeedItem#compareTo(NewsFeedItem)} and
+ * taking a sublist.
+ *
+ * @since 6.0.0
+ */
+public final class FeedItemMerger {
+
+    private FeedItemMerger() {}
+
+    /**
+     * Merge the specified runs and return the items in positions
+     * <code>offset</code> to <code>offset + limit</code> of the result.
+     *
+     * @param runs items of each feed, in feed order;  runs that are not already in ascending order are handled too
+     * @param offset number of merged items to skip
+     * @param limit maximum number of items to return
+     * @return the requested items and the total number of items across all runs
+     */
+    public static Page merge(List<? extends List<NewsFeedItem>> runs, int offset, int limit) {
+        final PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, runs.size()));
+        int total = 0;
+        for (int i = 0; i < runs.size(); i++) {
+            final List<NewsFeedItem> run = runs.get(i);
+            total += run.size();
+            if (!run.isEmpty()) {
+                heap.add(Cursor.forRun(run, i));
+            }
+        }
+
+        final List<NewsFeedItem> items = new ArrayList<>(Math.max(0, Math.min(limit, total - offset)));
+        int position = 0;
+        while (items.size() < limit && !heap.isEmpty()) {
+            final Cursor cursor = heap.poll();
+            final NewsFeedItem item = cursor.next();
+            if (position++ >= offset) {
+                items.add(item);
+            }
+            if (cursor.hasNext()) {
+                heap.add(cursor);
+            }
+        }
+        return new Page(items, total);
+    }
+
+    /**
+     * Position within one run.  Ties between runs go to the earlier run, which
+     * keeps the merge stable.
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+
+        private final List<NewsFeedItem> run;
+        private final int runIndex;
+        private final boolean reversed;
+        private int position;
+
+        private Cursor(List<NewsFeedItem> run, int runIndex, boolean reversed) {
+            this.run = run;
+            this.runIndex = runIndex;
+            this.reversed = reversed;
+        }
+
+        /*
+         * Feeds usually list their newest items first, so a strictly
+         * descending run is read backwards rather than copied.  A descending
+         * run with ties can't be, since reading it backwards would reorder
+         * the tied items;  that and any other unsorted run is sorted first.
+         */
+        private static Cursor forRun(List<NewsFeedItem> run, int runIndex) {
+            boolean ascending = true;
+            boolean strictlyDescending = true;
+            for (int i = 1; i < run.size() && (ascending || strictlyDescending); i++) {
+                final int c = run.get(i - 1).compareTo(run.get(i));
+                ascending &= c <= 0;
+                strictlyDescending &= c > 0;
+            }
+            if (ascending) {
+                return new Cursor(run, runIndex, false);
+            }
+            if (strictlyDescending) {
+                return new Cursor(run, runIndex, true);
+            }
+            final List<NewsFeedItem> sorted = new ArrayList<>(run);
+            Collections.sort(sorted);
+            return new Cursor(sorted, runIndex, false);
+        }
+
+        private NewsFeedItem peek() {
+            return run.get(reversed ? run.size() - 1 - position : position);
+        }
+
+        private NewsFeedItem next() {
+            final NewsFeedItem item = peek();
+            position++;
+            return item;
+        }
+
+        private boolean hasNext() {
+            return position < run.size();
+        }
+
+        @Override
+        public int compareTo(Cursor that) {
+            final int c = this.peek().compareTo(that.peek());
+            return c != 0 ? c : Integer.compare(this.runIndex, that.runIndex);
+        }
+    }
+
+    /**
+     * One page of merged items.
+     */
+    public static final class Page {
+
+        private final List<NewsFeedItem> items;
+        private final int totalCount;
+
+        private Page(List<NewsFeedItem> items, int totalCount) {
+            this.items = items;
+            this.totalCount = totalCount;
+        }
+
+        /**
+         * @return the merged items on this page
+         */
+        public List<NewsFeedItem> getItems() {
+            return items;
+        }
+
+        /**
+         * @return the number of items across all the runs that were merged
+         */
+        public int getTotalCount() {
+            return totalCount;
+        }
+    }
+
+}
@@ -73,6 +73,220 @@
 			</table>
 		</div>
 	</div>
+	<c:if test="${ not empty model.refreshScheduler }">
+		<div class="row">
+			<div class="col-md-12">
+				<p><spring:message code="administration.refreshScheduler" arguments="${ model.refreshScheduler.refreshCount },${ model.refreshScheduler.skipCount },${ model.refreshScheduler.failureCount },${ model.refreshScheduler.hotFeedCount },${ model.refreshScheduler.coldCount }"/></p>
+			</div>
+		</div>
+	</c:if>
+	<c:if test="${ not empty model.coalescer }">
+		<div class="row">
+			<div class="col-md-12">
+				<p><spring:message code="administration.coalescer" arguments="${ model.coalescer.fetchCount },${ model.coalescer.coalescedCount },${ model.coalescer.inFlightCount }"/></p>
+			</div>
+		</div>
+	</c:if>
+	<c:if test="${ not empty model.aggregation }">
+		<div class="row">
+			<div class="col-md-12">
+				<h4><spring:message code="administration.aggregation"/></h4>
+				<p><spring:message code="administration.aggregation.dropped" arguments="${ model.aggregation.droppedCount }"/></p>
+				<c:if test="${ not empty model.aggregation.completionTimes }">
+					<table class="table table-condensed table-striped">
+						<thead>
+							<tr>
+								<th><spring:message code="administration.aggregation.feed"/></th>
+								<th class="text-center"><spring:message code="administration.aggregation.count"/></th>
+								<th class="text-center"><spring:message code="administration.aggregation.average"/></th>
+								<th class="text-center"><spring:message code="administration.aggregation.max"/></th>
+							</tr>
+						</thead>
+						<tbody>
+							<c:forEach items="${ model.aggregation.completionTimes }" var="timing">
+								<tr>
+									<td><c:out value="${ timing.key }"/></td>
+									<td class="text-center">${ timing.value.count }</td>
+									<td class="text-center">${ timing.value.averageMillis }</td>
+									<td class="text-center">${ timing.value.maxMillis }</td>
+								</tr>
+							</c:forEach>
+						</tbody>
+					</table>
+				</c:if>
+			</div>
+		</div>
+	</c:if>
+	<c:if test="${ not empty model.circuits }">
+		<div class="row">
+			<div class="col-md-12">
+				<h4><spring:message code="administration.circuits"/></h4>
+				<table class="table table-condensed table-striped">
+					<thead>
+						<tr>
+							<th><spring:message code="administration.circuits.url"/></th>
+							<th><spring:message code="administration.circuits.state"/></th>
+							<th class="text-center"><spring:message code="administration.circuits.failures"/></th>
+							<th><spring:message code="administration.circuits.lastError"/></th>
+							<th><spring:message code="administration.circuits.retryTime"/></th>
+						</tr>
+					</thead>
+					<tbody>
+						<c:forEach items="${ model.circuits }" var="circuit">
+							<tr>
+								<td><c:out value="${ circuit.url }"/></td>
+								<td>${ circuit.state }</td>
+								<td class="text-center">${ circuit.failures }</td>
+								<td><c:out value="${ circuit.lastError }"/></td>
+								<td><fmt:formatDate value="${ circuit.retryTime }" type="both"/></td>
+							</tr>
+						</c:forEach>
+					</tbody>
+				</table>
+			</div>
+		</div>
+	</c:if>
+	<c:if test="${ not empty model.budgetExceeded }">
+		<div class="row">
+			<div class="col-md-12">
+				<h4><spring:message code="administration.budgets"/></h4>
+				<table class="table table-condensed table-striped">
+					<thead>
+						<tr>
+							<th><spring:message code="administration.budgets.url"/></th>
+							<th><spring:message code="administration.budgets.limit"/></th>
+							<th class="text-center"><spring:message code="administration.budgets.count"/></th>
+							<th><spring:message code="administration.budgets.lastTime"/></th>
+						</tr>
+					</thead>
+					<tbody>
+						<c:forEach items="${ model.budgetExceeded }" var="exceeded">
+							<tr>
+								<td><c:out value="${ exceeded.url }"/></td>
+								<td><spring:message code="administration.budgets.limit.${ exceeded.limit }"/></td>
+								<td class="text-center">${ exceeded.count }</td>
+								<td><fmt:formatDate value="${ exceeded.lastTime }" type="both"/></td>
+							</tr>
+						</c:forEach>
+					</tbody>
+				</table>
+			</div>
+		</div>
+	</c:if>
+	<c:if test="${ not empty model.cacheCapacity }">
+		<c:set var="capacity" value="${ model.cacheCapacity }"/>
+		<div class="row">
+			<div class="col-md-12">
+				<h4><spring:message code="administration.cacheCapacity"/></h4>
+				<fmt:formatNumber var="totalKb" value="${ capacity.totalBytes / 1024 }" maxFractionDigits="0" groupingUsed="false"/>
+				<fmt:formatNumber var="maxKb" value="${ capacity.maxBytes / 1024 }" maxFractionDigits="0" groupingUsed="false"/>
+				<p><spring:message code="administration.cacheCapacity.total" arguments="${ totalKb },${ maxKb },${ capacity.evictionCount }"/></p>
+				<c:if test="${ not empty capacity.weights }">
+					<table class="table table-condensed table-striped">
+						<thead>
+							<tr>
+								<th><spring:message code="administration.cacheCapacity.key"/></th>
+								<th class="text-right"><spring:message code="administration.cacheCapacity.size"/></th>
+							</tr>
+						</thead>
+						<tbody>
+							<c:forEach items="${ capacity.weights }" var="weight">
+								<tr>
+									<td><c:out value="${ weight.key }"/></td>
+									<td class="text-right"><fmt:formatNumber value="${ weight.bytes / 1024 }" maxFractionDigits="0"/> KB</td>
+								</tr>
+							</c:forEach>
+						</tbody>
+					</table>
+				</c:if>
+			</div>
+		</div>
+	</c:if>
+	<c:if test="${ not empty model.tinyLfuCache }">
+		<c:set var="tinyLfu" value="${ model.tinyLfuCache }"/>
+		<div class="row">
+			<div class="col-md-12">
+				<h4><spring:message code="administration.cacheCapacity"/></h4>
+				<fmt:formatNumber var="totalKb" value="${ tinyLfu.totalBytes / 1024 }" maxFractionDigits="0" groupingUsed="false"/>
+				<fmt:formatNumber var="maxKb" value="${ tinyLfu.maxBytes / 1024 }" maxFractionDigits="0" groupingUsed="false"/>
+				<p><spring:message code="administration.tinyLfuCache.total" arguments="${ totalKb },${ maxKb },${ tinyLfu.size }"/></p>
+				<p><spring:message code="administration.tinyLfuCache.counts" arguments="${ tinyLfu.hitCount },${ tinyLfu.missCount },${ tinyLfu.evictionCount },${ tinyLfu.rejectionCount }"/></p>
+			</div>
+		</div>
+	</c:if>
+	<c:if test="${ not empty model.snapshotStore }">
+		<div class="row">
+			<div class="col-md-12">
+				<h4><spring:message code="administration.snapshotStore"/></h4>
+				<p><spring:message code="administration.snapshotStore.counts" arguments="${ model.snapshotStore.saveCount },${ model.snapshotStore.loadCount },${ model.snapshotStore.failureCount }"/></p>
+			</div>
+		</div>
+	</c:if>
+	<c:if test="${ not empty model.coordinator }">
+		<div class="row">
+			<div class="col-md-12">
+				<h4><spring:message code="administration.coordinator" arguments="${ model.coordinator.nodeId }"/></h4>
+				<p><spring:message code="administration.coordinator.counts" arguments="${ model.coordinator.publishCount },${ model.coordinator.readCount },${ model.coordinator.leaseCount },${ model.coordinator.leaseRefusedCount },${ model.coordinator.failureCount }"/></p>
+			</div>
+		</div>
+	</c:if>
+	<c:if test="${ not empty model.unchangedFeeds }">
+		<div class="row">
+			<div class="col-md-12">
+				<h4><spring:message code="administration.unchanged"/></h4>
+				<table class="table table-condensed table-striped">
+					<thead>
+						<tr>
+							<th><spring:message code="administration.unchanged.url"/></th>
+							<th class="text-center"><spring:message code="administration.unchanged.hits"/></th>
+							<th class="text-center"><spring:message code="administration.unchanged.misses"/></th>
+						</tr>
+					</thead>
+					<tbody>
+						<c:forEach items="${ model.unchangedFeeds }" var="unchanged">
+							<tr>
+								<td><c:out value="${ unchanged.url }"/></td>
+								<td class="text-center">${ unchanged.hits }</td>
+								<td class="text-center">${ unchanged.misses }</td>
+							</tr>
+						</c:forEach>
+					</tbody>
+				</table>
+			</div>
+		</div>
+	</c:if>
+	<c:if test="${ not empty model.processedEntries }">
+		<div class="row">
+			<div class="col-md-12">
+				<p><spring:message code="administration.entryReuse" arguments="${ model.reusedEntries },${ model.processedEntries }"/>
+					(<fmt:formatNumber value="${ model.entryReuseRatio }" type="percent"/>)</p>
+			</div>
+		</div>
+	</c:if>
+	<c:if test="${ not empty model.plainTextCount }">
+		<div class="row">
+			<div class="col-md-12">
+				<p><spring:message code="administration.plainText" arguments="${ model.plainTextCount }"/></p>
+			</div>
+		</div>
+	</c:if>
+	<c:if test="${ not empty model.sanitizationCache }">
+		<div class="row">
+			<div class="col-md-12">
+				<c:set var="sanitization" value="${ model.sanitizationCache }"/>
+				<p><spring:message code="administration.sanitizationCache" arguments="${ sanitization.hitCount },${ sanitization.missCount },${ sanitization.size }"/>
+					(<fmt:formatNumber value="${ sanitization.hitRatio }" type="percent"/>,
+					<fmt:formatNumber value="${ sanitization.sizeInBytes / 1024 }" maxFractionDigits="0"/> KB)</p>
+			</div>
+		</div>
+	</c:if>
+	<c:if test="${ not empty model.jsonModule }">
+		<div class="row">
+			<div class="col-md-12">
+				<p><spring:message code="administration.jsonEntries" arguments="${ model.jsonModule.hitCount },${ model.jsonModule.missCount },${ model.jsonModule.size }"/></p>
+			</div>
+		</div>
+	</c:if>
 	<hr />
 	<div class="row">
 		<div class="col-md-12">
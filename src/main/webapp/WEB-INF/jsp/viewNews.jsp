@@ -93,6 +93,9 @@
                     <div class="titlebar portlet-titlebar">
                         <h3 class="feed-title">{{{title}}}</h3>
                     </div>
+                    {{#if stale}}
+                    <p class="newsreader-stale"><spring:message code="feed.stale"/></p>
+                    {{/if}}
                 </div>
                 <ul class="news-stories feed">
                 {{{news_stories entries}}}
@@ -113,6 +116,9 @@
                     <div class="titlebar portlet-titlebar">
                         <h3 class="feed-title">{{{title}}}</h3>
                     </div>
+                    {{#if stale}}
+                    <p class="newsreader-stale"><spring:message code="feed.stale"/></p>
+                    {{/if}}
                 </div>
                 <div class="news-stories feed">
                     {{{news_stories entries}}}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays traces of news cache reads against the least-recently-used policy
+ * of {@link EhcacheFeedCache} (bounded by a {@link FeedCacheCapacity}) and
+ * against {@link TinyLfuFeedCache}, at the same capacity, and compares their
+ * hit ratios.
+ * <p>
+ * A recorded trace is replayed when the system property
+ * <code>newsreader.replay.trace</code> names a file of reads, one per line,
+ * each a cache key and the estimated size of the feed in bytes separated by
+ * whitespace;  <code>newsreader.replay.maxBytes</code> sets the capacity.
+ * Without one, a generated trace is replayed:  a few large feeds read by
+ * everyone, amid personal feeds mostly read once and occasional scans of
+ * many personal feeds in a row, which W-TinyLFU must serve at least as well
+ * as LRU.
+ * <p>
+ * Ehcache orders its elements by their last access in milliseconds, too
+ * coarse for a trace replayed at full speed, so the least-recently-used
+ * policy is replayed with an exact model of it.
+ */
+public class FeedCacheReplayTest {
+
+    private static final long GENERATED_MAX_BYTES = 8L * 1024 * 1024;
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Test
+    public void testReplay() throws IOException {
+        final String tracePath = System.getProperty("newsreader.replay.trace");
+        final List<Read> trace;
+        final long maxBytes;
+        if (tracePath != null) {
+            trace = readTrace(new File(tracePath));
+            maxBytes = Long.getLong("newsreader.replay.maxBytes", GENERATED_MAX_BYTES);
+        } else {
+            trace = generateTrace(new Random(42), 200000);
+            maxBytes = GENERATED_MAX_BYTES;
+        }
+
+        final double lru = replay(new LruFeedCache(maxBytes), trace);
+        final TinyLfuFeedCache cache = new TinyLfuFeedCache();
+        cache.setMaxBytes(maxBytes);
+        cache.setExpectedEntries(500);
+        cache.init();
+        final double tinyLfu = replay(cache, trace);
+
+        log.info("Replayed {} reads within {} bytes:  LRU hit ratio {}, W-TinyLFU hit ratio {}",
+                trace.size(), maxBytes, lru, tinyLfu);
+        if (tracePath == null) {
+            // the feeds read by everyone survive the scans
+            assertTrue("W-TinyLFU " + tinyLfu + " < LRU " + lru, tinyLfu >= lru);
+        }
+    }
+
+    /**
+     * Read each feed as the adapters do, putting it on a miss.
+     *
+     * @return the hit ratio
+     */
+    private double replay(FeedCache cache, List<Read> trace) {
+        final Object value = new Object();
+        int hits = 0;
+        for (Read read : trace) {
+            if (cache.get(read.key) != null) {
+                hits++;
+            } else {
+                cache.put(read.key, value, read.bytes);
+            }
+        }
+        return (double) hits / trace.size();
+    }
+
+    private List<Read> readTrace(File file) throws IOException {
+        final List<Read> trace = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.trim().split("\\s+");
+                if (fields.length == 2) {
+                    trace.add(new Read(fields[0], Long.parseLong(fields[1])));
+                }
+            }
+        }
+        return trace;
+    }
+
+    private List<Read> generateTrace(Random random, int length) {
+        final List<Read> trace = new ArrayList<>(length);
+        int personal = 0;
+        while (trace.size() < length) {
+            final double p = random.nextDouble();
+            if (p < 0.001) {
+                // a scan of personal feeds, e.g. after a restart or by a crawler
+                for (int i = 0; i < 100; i++) {
+                    trace.add(personalFeed(random, personal++));
+                }
+            } else if (p < 0.6) {
+                // one of 20 predefined feeds, the first read most
+                final int feed = (int) (20 * Math.pow(random.nextDouble(), 2));
+                trace.add(new Read("predefined/" + feed, 300 * 1024));
+            } else if (p < 0.8 && personal > 0) {
+                // a personal feed read again, most likely a recent one
+                trace.add(personalFeed(random, personal - 1 - random.nextInt(Math.min(personal, 50))));
+            } else {
+                trace.add(personalFeed(random, personal++));
+            }
+        }
+        return trace.subList(0, length);
+    }
+
+    private Read personalFeed(Random random, int feed) {
+        return new Read("personal/" + feed, 50 * 1024 + (feed * 7919 % 100) * 1024);
+    }
+
+    private static final class Read {
+
+        private final String key;
+        private final long bytes;
+
+        private Read(String key, long bytes) {
+            this.key = key;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Least recently used entries first out, within a total size, as
+     * {@link FeedCacheCapacity} removes them from newsCache.
+     */
+    private static final class LruFeedCache implements FeedCache {
+
+        private final LinkedHashMap<String, Read> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, Object> values = new LinkedHashMap<>();
+        private final long maxBytes;
+        private long totalBytes;
+
+        private LruFeedCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public Object get(String key) {
+            return entries.get(key) != null ? values.get(key) : null;
+        }
+
+        @Override
+        public Object peek(String key) {
+            return values.get(key);
+        }
+
+        @Override
+        public void put(String key, Object value, long bytes) {
+            remove(key);
+            entries.put(key, new Read(key, bytes));
+            values.put(key, value);
+            totalBytes += bytes;
+            final Iterator<Read> oldest = entries.values().iterator();
+            while (totalBytes > maxBytes && entries.size() > 1) {
+                final Read read = oldest.next();
+                oldest.remove();
+                values.remove(read.key);
+                totalBytes -= read.bytes;
+            }
+        }
+
+        @Override
+        public void remove(String key) {
+            final Read read = entries.remove(key);
+            if (read != null) {
+                values.remove(key);
+                totalBytes -= read.bytes;
+            }
+        }
+
+        @Override
+        public void clear() {
+            entries.clear();
+            values.clear();
+            totalBytes = 0;
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FeedCircuitBreakerTest {
+
+    private static final String URL = "http://news.example.org/down.xml";
+
+    FeedCircuitBreaker breaker;
+    AtomicInteger probes;
+    Callable<Object> probe;
+
+    @Before
+    public void setUp() {
+        breaker = new FeedCircuitBreaker();
+        breaker.setFailureThreshold(1);
+        breaker.setInitialBackoffSeconds(1);
+        breaker.init();
+        probes = new AtomicInteger();
+        probe = new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                probes.incrementAndGet();
+                breaker.checkAvailable(URL);
+                breaker.recordSuccess(URL);
+                return null;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        breaker.destroy();
+    }
+
+    @Test
+    public void testRequestedFeedIsProbed() throws Exception {
+        breaker.recordFailure(URL, new NewsException("origin unavailable"), probe);
+        try {
+            breaker.checkAvailable(URL);
+            fail("The circuit is open");
+        } catch (NewsException e) {
+            // expected
+        }
+
+        waitForProbe();
+
+        assertEquals(1, probes.get());
+        assertEquals(1, breaker.getProbeCount());
+        assertEquals(0, breaker.getCircuits().size());
+    }
+
+    @Test
+    public void testUnrequestedFeedIsNotProbed() throws Exception {
+        breaker.recordFailure(URL, new NewsException("origin unavailable"), probe);
+
+        waitForProbe();
+
+        assertEquals(0, probes.get());
+        assertEquals(1, breaker.getSkippedProbeCount());
+        // the next request makes the attempt itself
+        assertEquals(FeedCircuitBreaker.State.HALF_OPEN, breaker.getCircuits().get(0).getState());
+        breaker.checkAvailable(URL);
+    }
+
+    @Test
+    public void testCircuitsAreCapped() throws Exception {
+        breaker.setMaxCircuits(2);
+        breaker.recordFailure("http://news.example.org/first.xml", new NewsException("origin unavailable"), probe);
+        breaker.recordFailure("http://news.example.org/second.xml", new NewsException("origin unavailable"), probe);
+
+        // both failed just now, so neither makes room
+        breaker.recordFailure("http://news.example.org/third.xml", new NewsException("origin unavailable"), probe);
+        assertEquals(2, breaker.getCircuits().size());
+        breaker.checkAvailable("http://news.example.org/third.xml");
+
+        // once they are idle they are forgotten
+        breaker.setMaxBackoffSeconds(0);
+        Thread.sleep(10);
+        breaker.recordFailure("http://news.example.org/third.xml", new NewsException("origin unavailable"), probe);
+        assertEquals(1, breaker.getCircuits().size());
+        assertEquals("http://news.example.org/third.xml", breaker.getCircuits().get(0).getUrl());
+    }
+
+    /**
+     * Wait until the probe scheduled after the backoff has run or been skipped.
+     */
+    private void waitForProbe() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (breaker.getProbeCount() + breaker.getSkippedProbeCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // let a probe that has started finish
+        Thread.sleep(50);
+    }
+
+}
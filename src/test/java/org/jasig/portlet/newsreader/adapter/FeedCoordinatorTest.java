@@ -0,0 +1,192 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.jasig.portlet.newsreader.model.FeedSnapshot;
+import org.jasig.portlet.newsreader.model.NewsFeedItem;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * Two portlet nodes, each an application context of its own, coordinating
+ * through one database.
+ */
+public class FeedCoordinatorTest {
+
+    private static final String CONTEXT = "/org/jasig/portlet/newsreader/adapter/feedCoordinatorTestContext.xml";
+
+    ClassPathXmlApplicationContext firstContext;
+    ClassPathXmlApplicationContext secondContext;
+
+    FeedCoordinator first;
+    FeedCoordinator second;
+
+    @Before
+    public void setUp() {
+        firstContext = new ClassPathXmlApplicationContext(CONTEXT);
+        secondContext = new ClassPathXmlApplicationContext(CONTEXT);
+        first = firstContext.getBean(FeedCoordinator.class);
+        second = secondContext.getBean(FeedCoordinator.class);
+    }
+
+    @After
+    public void tearDown() {
+        firstContext.close();
+        secondContext.close();
+    }
+
+    @Test
+    public void testOneNodeFetchesForTheCluster() {
+        String feedKey = "RomeFeed.http://news.example.org/shared.xml";
+        String key = feedKey + " antisamy-textonly antisamy-textonly";
+        assertNull(second.getSharedFeed(feedKey, key));
+
+        assertTrue(first.acquireLease(feedKey));
+        assertFalse(second.acquireLease(feedKey));
+        assertTrue(first.acquireLease(feedKey));
+
+        long fetched = System.currentTimeMillis();
+        first.publish(feedKey, key, fetched, fetched + 900000, getSnapshot("Shared"));
+        // waits for the feed to be published
+        first.destroy();
+
+        StoredFeed shared = second.getSharedFeed(feedKey, key);
+        assertNotNull(shared);
+        assertEquals(fetched, shared.getFetchedTime());
+        assertFalse(shared.isExpired(fetched));
+        assertEquals("Shared", shared.getSnapshot().getTitle());
+        assertEquals(2, shared.getSnapshot().getEntries().size());
+        assertEquals("Second story", shared.getSnapshot().getEntries().get(1).getTitle());
+        assertEquals(Arrays.asList("Jane Reporter"), shared.getSnapshot().getEntries().get(1).getAuthors());
+        assertEquals(1, second.getReadCount());
+
+        // publishing released the lease
+        assertTrue(second.acquireLease(feedKey));
+        assertEquals(1, second.getLeaseRefusedCount());
+    }
+
+    @Test
+    public void testOneLeasePerFeed() {
+        String feedKey = "RomeFeed.http://news.example.org/variants.xml";
+        String textOnly = feedKey + " antisamy-textonly antisamy-textonly";
+        String slashdot = feedKey + " antisamy-slashdot antisamy-slashdot";
+
+        assertTrue(first.acquireLease(feedKey));
+        long fetched = System.currentTimeMillis();
+        first.publish(feedKey, textOnly, fetched, fetched + 900000, getSnapshot("Text only"));
+        first.publish(feedKey, slashdot, fetched, fetched + 900000, getSnapshot("Slashdot"));
+        first.destroy();
+
+        assertEquals("Text only", second.getSharedFeed(feedKey, textOnly).getSnapshot().getTitle());
+        assertEquals("Slashdot", second.getSharedFeed(feedKey, slashdot).getSnapshot().getTitle());
+        assertEquals(2, first.getPublishCount());
+        // released once both copies were published
+        assertTrue(second.acquireLease(feedKey));
+    }
+
+    @Test
+    public void testOlderCopyIsNotPublished() {
+        String feedKey = "RomeFeed.http://news.example.org/older.xml";
+        String key = feedKey + " antisamy-textonly antisamy-textonly";
+        long fetched = System.currentTimeMillis();
+        first.publish(feedKey, key, fetched, fetched + 900000, getSnapshot("Newer"));
+        first.destroy();
+        second.publish(feedKey, key, fetched - 1000, fetched + 899000, getSnapshot("Older"));
+        second.destroy();
+
+        assertEquals("Newer", first.getSharedFeed(feedKey, key).getSnapshot().getTitle());
+    }
+
+    @Test
+    public void testExpiredLeaseIsTaken() {
+        String feedKey = "RomeFeed.http://news.example.org/expired.xml";
+        first.setLeaseSeconds(0);
+        assertTrue(first.acquireLease(feedKey));
+        // the first node stopped without publishing the feed
+        assertTrue(second.acquireLease(feedKey));
+        assertFalse(first.acquireLease(feedKey));
+    }
+
+    @Test
+    public void testFailedFetchKeepsLease() {
+        String feedKey = "RomeFeed.http://news.example.org/failed.xml";
+        assertTrue(first.acquireLease(feedKey));
+        first.recordFailedFetch(feedKey);
+
+        // neither node tries the feed again before the lease expires
+        long now = System.currentTimeMillis();
+        assertTrue(first.isBackingOff(feedKey, now));
+        assertFalse(first.acquireLease(feedKey));
+        assertFalse(second.acquireLease(feedKey));
+        assertEquals(0, first.getLeaseRefusedCount());
+        assertEquals(1, second.getLeaseRefusedCount());
+        assertEquals(1, first.getFailedFetchCount());
+        assertFalse(first.isBackingOff(feedKey, now + 60000));
+    }
+
+    @Test
+    public void testNodeWaitsForSharedCopy() {
+        String feedKey = "RomeFeed.http://news.example.org/awaited.xml";
+        String key = feedKey + " antisamy-textonly antisamy-textonly";
+        second.setWaitSeconds(0);
+        assertNull(second.awaitSharedFeed(feedKey, key));
+
+        assertTrue(first.acquireLease(feedKey));
+        assertFalse(second.acquireLease(feedKey));
+        assertTrue(second.isBackingOff(feedKey, System.currentTimeMillis()));
+        second.setWaitSeconds(10);
+        long fetched = System.currentTimeMillis();
+        // published in the background while the second node waits
+        first.publish(feedKey, key, fetched, fetched + 900000, getSnapshot("Awaited"));
+
+        StoredFeed shared = second.awaitSharedFeed(feedKey, key);
+        assertNotNull(shared);
+        assertEquals("Awaited", shared.getSnapshot().getTitle());
+        assertFalse(second.isBackingOff(feedKey, System.currentTimeMillis()));
+    }
+
+    private FeedSnapshot getSnapshot(String title) {
+        List<NewsFeedItem> entries = new ArrayList<>();
+        for (String story : new String[] { "First story", "Second story" }) {
+            NewsFeedItem item = new NewsFeedItem();
+            item.setTitle(story);
+            item.setLink("http://news.example.org/" + entries.size());
+            item.setDescription("<p>" + story + "</p>");
+            item.setPubDate(new Date());
+            item.setAuthors(Arrays.asList("Jane Reporter"));
+            item.setCategories(Collections.<String>emptyList());
+            entries.add(item);
+        }
+        return new FeedSnapshot(title, "http://news.example.org/", null, null, entries, -1, 10);
+    }
+
+}
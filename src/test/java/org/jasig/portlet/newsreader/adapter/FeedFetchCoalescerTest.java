@@ -0,0 +1,134 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FeedFetchCoalescerTest {
+
+    private static final int CALLERS = 5;
+
+    FeedFetchCoalescer coalescer;
+    ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        coalescer = new FeedFetchCoalescer();
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneFetch() throws Exception {
+        final Object feed = new Object();
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Future<Object>> results = fetchConcurrently(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                loads.incrementAndGet();
+                release.await();
+                return feed;
+            }
+        });
+        release.countDown();
+
+        for (Future<Object> result : results) {
+            assertSame(feed, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, coalescer.getFetchCount());
+        assertEquals(CALLERS - 1, coalescer.getCoalescedCount());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void testFailureReachesEveryWaiter() throws Exception {
+        final NewsException failure = new NewsException("origin unavailable");
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Future<Object>> results = fetchConcurrently(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                release.await();
+                throw failure;
+            }
+        });
+        release.countDown();
+
+        for (Future<Object> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("expected the fetch to fail");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+        assertEquals(1, coalescer.getFetchCount());
+        // the failed fetch is not remembered
+        assertEquals("again", coalescer.fetch("feed", new Callable<String>() {
+            @Override
+            public String call() {
+                return "again";
+            }
+        }));
+    }
+
+    /**
+     * Start every caller on the same key, returning once all but the first
+     * are waiting on its fetch.
+     */
+    private List<Future<Object>> fetchConcurrently(final Callable<Object> loader) throws InterruptedException {
+        final List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return coalescer.fetch("feed", loader);
+                }
+            }));
+        }
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (coalescer.getCoalescedCount() < CALLERS - 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(CALLERS - 1, coalescer.getCoalescedCount());
+        return results;
+    }
+
+}
@@ -0,0 +1,648 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.adapter;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.ehcache.Cache;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.jasig.portlet.newsreader.NewsConfiguration;
+import org.jasig.portlet.newsreader.NewsDefinition;
+import org.jasig.portlet.newsreader.model.FeedSnapshot;
+import org.jasig.portlet.newsreader.model.NewsFeedItem;
+import org.jasig.portlet.newsreader.model.PaginatingNewsFeed;
+import org.jasig.portlet.newsreader.model.RemoteHttpFullStory;
+import org.jasig.portlet.newsreader.processor.RomeNewsProcessorImpl;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.core.io.Resource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = "/org/jasig/portlet/newsreader/processor/romeProcessorTestContext.xml")
+public class RomeAdapterTest {
+
+    @Autowired(required = true)
+    RomeNewsProcessorImpl processor;
+
+    @Autowired(required = true)
+    ApplicationContext context;
+
+    Resource testFeed;
+
+    CountingRomeAdapter adapter;
+
+    @Before
+    public void setUp() {
+        testFeed = context.getResource("classpath:/org/jasig/portlet/newsreader/processor/testFeed.xml");
+        FeedCache feedCache = context.getBean("feedCache", FeedCache.class);
+        feedCache.clear();
+        adapter = new CountingRomeAdapter();
+        adapter.setProcessor(processor);
+        adapter.setCache(feedCache);
+        adapter.setCacheKeyPrefix("RomeAdapterTest.");
+    }
+
+    @Test
+    public void testAlternatingMaxStoriesFetchesOnce() throws NewsException {
+        NewsConfiguration config = getConfiguration("http://news.example.org/feed.xml");
+
+        for (int i = 0; i < 5; i++) {
+            PaginatingNewsFeed limited = adapter.getSyndFeed(config, 0, 3);
+            assertEquals(3, limited.getEntries().size());
+
+            PaginatingNewsFeed unlimited = adapter.getSyndFeed(config, 0, -1);
+            assertEquals(10, unlimited.getEntries().size());
+        }
+
+        assertEquals(1, adapter.fetchCount.get());
+    }
+
+    @Test
+    public void testPageViewsAreIndependent() throws NewsException {
+        NewsConfiguration config = getConfiguration("http://news.example.org/feed.xml");
+
+        // the test feed has 20 entries, so the third page is empty
+        PaginatingNewsFeed first = adapter.getSyndFeed(config, 0, -1);
+        PaginatingNewsFeed second = adapter.getSyndFeed(config, 1, -1);
+        PaginatingNewsFeed third = adapter.getSyndFeed(config, 2, -1);
+
+        assertEquals(10, first.getEntries().size());
+        assertEquals(10, second.getEntries().size());
+        assertNotSame(first.getEntries().get(0), second.getEntries().get(0));
+        assertEquals(0, third.getEntries().size());
+        assertSame(first.getEntries().get(0), adapter.getSyndFeed(config, 0, -1).getEntries().get(0));
+        assertEquals(1, adapter.fetchCount.get());
+    }
+
+    @Test
+    public void testViewsCompareByPageContent() throws NewsException {
+        NewsConfiguration config = getConfiguration("http://news.example.org/compared.xml");
+
+        PaginatingNewsFeed first = adapter.getSyndFeed(config, 0, -1);
+        PaginatingNewsFeed again = adapter.getSyndFeed(config, 0, -1);
+        assertEquals(first, again);
+        assertEquals(first.hashCode(), again.hashCode());
+        assertFalse(first.equals(adapter.getSyndFeed(config, 1, -1)));
+        again.setStale(true);
+        assertFalse(first.equals(again));
+
+        // fetched and parsed again, as after a refresh
+        context.getBean("feedCache", FeedCache.class).clear();
+        PaginatingNewsFeed refreshed = adapter.getSyndFeed(config, 0, -1);
+        assertNotSame(first.getEntries().get(0), refreshed.getEntries().get(0));
+        assertEquals(first, refreshed);
+        assertEquals(first.hashCode(), refreshed.hashCode());
+    }
+
+    @Test
+    public void testDecodedCopiesKeepTheirETag() throws IOException {
+        List<NewsFeedItem> entries = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            NewsFeedItem item = new NewsFeedItem();
+            item.setTitle("Story " + i);
+            item.setLink("http://news.example.org/story/" + i);
+            item.setDescription("About story " + i);
+            item.setPubDate(new Date(1500000000000L + i));
+            item.setAuthors(Arrays.asList("Reporter " + i));
+            item.setCategories(Arrays.asList("Campus", "Events"));
+            item.setFullStory(new RemoteHttpFullStory("http://news.example.org/full/" + i));
+            entries.add(item);
+        }
+        FeedSnapshot snapshot = new FeedSnapshot("Campus News", "http://news.example.org/", "Newsroom", null, entries, -1, 2);
+        byte[] bytes = FeedSnapshotCodec.encode(new StoredFeed("http://news.example.org/feed.xml", 0L, 0L, snapshot));
+
+        // as decoded on two nodes, or twice from the off-heap or stored copy
+        PaginatingNewsFeed decoded = new PaginatingNewsFeed(
+                FeedSnapshotCodec.decode(ByteBuffer.wrap(bytes)).getSnapshot(), 1);
+        PaginatingNewsFeed again = new PaginatingNewsFeed(
+                FeedSnapshotCodec.decodeLazily(ByteBuffer.wrap(bytes)).getSnapshot(), 1);
+        assertNotSame(decoded.getEntries().get(0), again.getEntries().get(0));
+        assertEquals(decoded, again);
+        assertEquals(decoded.hashCode(), again.hashCode());
+        assertEquals(decoded, new PaginatingNewsFeed(snapshot, 1));
+
+        // the controllers' ETag is the hash of the model holding the feed
+        Map<String, Object> model = new HashMap<>();
+        model.put("feed", decoded);
+        Map<String, Object> other = new HashMap<>();
+        other.put("feed", again);
+        assertEquals(String.valueOf(model.hashCode()), String.valueOf(other.hashCode()));
+
+        // ... and changes with the page
+        assertFalse(decoded.equals(new PaginatingNewsFeed(snapshot, 0)));
+    }
+
+    @Test
+    public void testUnchangedBodyKeepsCachedFeed() throws NewsException {
+        UnchangedFeedDetector detector = new UnchangedFeedDetector();
+        adapter.setUnchangedFeedDetector(detector);
+        // every request revalidates the cached copy with the origin
+        adapter.setTimeToLiveSeconds(0);
+        NewsConfiguration config = getConfiguration("http://news.example.org/unchanged.xml");
+
+        PaginatingNewsFeed first = adapter.getSyndFeed(config, 0, -1);
+        PaginatingNewsFeed second = adapter.getSyndFeed(config, 0, -1);
+
+        assertEquals(2, adapter.fetchCount.get());
+        // the variant sanitized for the first request is still current
+        assertSame(first.getEntries().get(0), second.getEntries().get(0));
+        assertEquals(1, detector.getStatistics().get(0).getHits());
+        assertEquals(1, detector.getStatistics().get(0).getMisses());
+    }
+
+    @Test
+    public void testCacheCapacity() throws Exception {
+        FeedCacheCapacity capacity = new FeedCacheCapacity();
+        capacity.setCache(context.getBean("newsCache", Cache.class));
+        capacity.init();
+        EhcacheFeedCache feedCache = new EhcacheFeedCache();
+        feedCache.setCache(context.getBean("newsCache", Cache.class));
+        feedCache.setCapacity(capacity);
+        adapter.setCache(feedCache);
+        try {
+            adapter.getSyndFeed(getConfiguration("http://news.example.org/first.xml"), 0, -1);
+            // the parsed feed and the copy sanitized for the request
+            assertEquals(2, capacity.getWeights().size());
+            assertTrue(capacity.getTotalBytes() > 0);
+
+            // leave room for one feed only
+            capacity.setMaxBytes(capacity.getTotalBytes());
+            Thread.sleep(10);
+            adapter.getSyndFeed(getConfiguration("http://news.example.org/second.xml"), 0, -1);
+
+            assertEquals(2, capacity.getEvictionCount());
+            assertEquals(2, capacity.getWeights().size());
+            for (FeedCacheCapacity.Weight weight : capacity.getWeights()) {
+                assertTrue(weight.getKey(), weight.getKey().contains("second.xml"));
+            }
+            assertEquals(capacity.getMaxBytes(), capacity.getTotalBytes());
+        } finally {
+            capacity.destroy();
+        }
+    }
+
+    @Test
+    public void testStoredFeedServedAfterRestart() throws Exception {
+        File directory = Files.createTempDirectory("newsreader-feeds").toFile();
+        try {
+            FeedSnapshotStore store = new FeedSnapshotStore();
+            store.setEnabled(true);
+            store.setDirectory(directory);
+            store.init();
+            adapter.setSnapshotStore(store);
+            NewsConfiguration config = getConfiguration("http://news.example.org/stored.xml");
+            PaginatingNewsFeed fetched = adapter.getSyndFeed(config, 0, -1);
+            // waits for the feed to be written
+            store.destroy();
+            assertEquals(1, store.getSaveCount());
+
+            // start again with an empty cache
+            context.getBean("feedCache", FeedCache.class).clear();
+            store = new FeedSnapshotStore();
+            store.setEnabled(true);
+            store.setDirectory(directory);
+            store.init();
+            final AtomicInteger refreshCount = new AtomicInteger();
+            CountingRomeAdapter restarted = new CountingRomeAdapter();
+            restarted.setProcessor(processor);
+            restarted.setCache(context.getBean("feedCache", FeedCache.class));
+            restarted.setCacheKeyPrefix("RomeAdapterTest.");
+            restarted.setSnapshotStore(store);
+            restarted.setRefreshScheduler(new FeedRefreshScheduler() {
+                @Override
+                public void refreshNow(String key, Callable<CachedFeed> loader) {
+                    refreshCount.incrementAndGet();
+                }
+            });
+
+            PaginatingNewsFeed stored = restarted.getSyndFeed(config, 0, -1);
+
+            assertEquals(0, restarted.fetchCount.get());
+            assertEquals(1, refreshCount.get());
+            assertEquals(1, store.getLoadCount());
+            assertFalse(stored.isStale());
+            assertEquals(fetched.getTitle(), stored.getTitle());
+            assertEquals(fetched.getEntries().size(), stored.getEntries().size());
+            for (int i = 0; i < fetched.getEntries().size(); i++) {
+                assertEquals(fetched.getEntries().get(i).getTitle(), stored.getEntries().get(i).getTitle());
+                assertEquals(fetched.getEntries().get(i).getDescription(), stored.getEntries().get(i).getDescription());
+                assertEquals(fetched.getEntries().get(i).getPubDate(), stored.getEntries().get(i).getPubDate());
+            }
+
+            // the stored copy is kept in the cache until the feed is fetched
+            restarted.getSyndFeed(config, 0, -1);
+            assertEquals(0, restarted.fetchCount.get());
+            assertEquals(1, store.getLoadCount());
+            store.destroy();
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testStoreIsOffByDefault() throws Exception {
+        File directory = Files.createTempDirectory("newsreader-feeds").toFile();
+        try {
+            FeedSnapshotStore store = new FeedSnapshotStore();
+            store.setDirectory(directory);
+            store.init();
+            adapter.setSnapshotStore(store);
+            adapter.getSyndFeed(getConfiguration("http://news.example.org/unstored.xml"), 0, -1);
+            store.destroy();
+
+            assertEquals(0, store.getSaveCount());
+            assertEquals(0, directory.listFiles().length);
+        } finally {
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testOffHeapVariant() throws NewsException {
+        NewsConfiguration config = getConfiguration("http://news.example.org/offheap.xml");
+        PaginatingNewsFeed onHeap = adapter.getSyndFeed(config, 1, -1);
+
+        context.getBean("feedCache", FeedCache.class).clear();
+        adapter.setOffHeap(true);
+        PaginatingNewsFeed offHeap = adapter.getSyndFeed(config, 1, -1);
+        PaginatingNewsFeed again = adapter.getSyndFeed(config, 1, -1);
+
+        assertEquals(2, adapter.fetchCount.get());
+        assertEquals(onHeap.getEntries().size(), offHeap.getEntries().size());
+        for (int i = 0; i < onHeap.getEntries().size(); i++) {
+            assertEquals(onHeap.getEntries().get(i).getTitle(), offHeap.getEntries().get(i).getTitle());
+            assertEquals(onHeap.getEntries().get(i).getLink(), offHeap.getEntries().get(i).getLink());
+            assertEquals(onHeap.getEntries().get(i).getDescription(), offHeap.getEntries().get(i).getDescription());
+        }
+        // each read decodes the entry again
+        assertNotSame(offHeap.getEntries().get(0), again.getEntries().get(0));
+        assertEquals(offHeap.getEntries().get(0).getTitle(), again.getEntries().get(0).getTitle());
+    }
+
+    @Test
+    public void testResponseByteBudget() {
+        FeedBudget budget = new FeedBudget();
+        budget.setMaxResponseBytes(4096);
+        adapter.setBudget(budget);
+        NewsConfiguration config = getConfiguration("http://news.example.org/large.xml");
+
+        try {
+            adapter.getSyndFeed(config, 0, -1);
+            fail("The test feed is larger than the budget");
+        } catch (FeedBudgetExceededException e) {
+            assertEquals(FeedBudget.Limit.BYTES, e.getLimit());
+        }
+
+        assertEquals(1, budget.getExceeded().size());
+        assertEquals(FeedBudget.Limit.BYTES, budget.getExceeded().get(0).getLimit());
+        assertEquals("http://news.example.org/large.xml", budget.getExceeded().get(0).getUrl());
+    }
+
+    @Test
+    public void testEntryBudgetKeepsFirstEntries() throws NewsException {
+        FeedBudget budget = new FeedBudget();
+        budget.setMaxEntries(5);
+        adapter.setBudget(budget);
+        NewsConfiguration config = getConfiguration("http://news.example.org/long.xml");
+
+        PaginatingNewsFeed feed = adapter.getSyndFeed(config, 0, -1);
+
+        assertEquals(5, feed.getEntries().size());
+        assertEquals(FeedBudget.Limit.ENTRIES, budget.getExceeded().get(0).getLimit());
+    }
+
+    @Test
+    public void testNotModifiedKeepsCachedFeed() throws NewsException {
+        adapter.etag = "\"v1\"";
+        // every request revalidates the cached copy with the origin
+        adapter.setTimeToLiveSeconds(0);
+        NewsConfiguration config = getConfiguration("http://news.example.org/revalidated.xml");
+
+        PaginatingNewsFeed first = adapter.getSyndFeed(config, 0, -1);
+        assertNull(adapter.ifNoneMatch);
+
+        adapter.status = HttpStatus.SC_NOT_MODIFIED;
+        PaginatingNewsFeed second = adapter.getSyndFeed(config, 0, -1);
+
+        assertEquals(2, adapter.fetchCount.get());
+        assertEquals("\"v1\"", adapter.ifNoneMatch);
+        assertFalse(second.isStale());
+        // neither parsed nor sanitized again
+        assertEquals(first.getEntries().size(), second.getEntries().size());
+        assertSame(first.getEntries().get(0), second.getEntries().get(0));
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws NewsException {
+        final AtomicInteger refreshCount = new AtomicInteger();
+        adapter.setRefreshScheduler(new FeedRefreshScheduler() {
+            @Override
+            public void refreshNow(String key, Callable<CachedFeed> loader) {
+                refreshCount.incrementAndGet();
+            }
+        });
+        adapter.setTimeToLiveSeconds(0);
+        adapter.setStaleWhileRevalidateSeconds(60);
+        NewsConfiguration config = getConfiguration("http://news.example.org/revalidating.xml");
+
+        PaginatingNewsFeed first = adapter.getSyndFeed(config, 0, -1);
+        PaginatingNewsFeed second = adapter.getSyndFeed(config, 0, -1);
+
+        // the expired copy is served and refreshed off the request thread
+        assertEquals(1, adapter.fetchCount.get());
+        assertEquals(1, refreshCount.get());
+        assertFalse(first.isStale());
+        assertTrue(second.isStale());
+        assertSame(first.getEntries().get(0), second.getEntries().get(0));
+    }
+
+    @Test
+    public void testStaleIfError() throws NewsException {
+        adapter.setTimeToLiveSeconds(0);
+        adapter.setStaleIfErrorSeconds(60);
+        NewsConfiguration config = getConfiguration("http://news.example.org/failing.xml");
+
+        PaginatingNewsFeed first = adapter.getSyndFeed(config, 0, -1);
+        adapter.failing = true;
+        PaginatingNewsFeed second = adapter.getSyndFeed(config, 0, -1);
+
+        assertEquals(2, adapter.fetchCount.get());
+        assertTrue(second.isStale());
+        assertEquals(first.getEntries().size(), second.getEntries().size());
+        assertEquals(first.getEntries().get(0).getTitle(), second.getEntries().get(0).getTitle());
+    }
+
+    @Test
+    public void testClusterServesSharedCopyWhenLeaseHolderFails() throws NewsException {
+        // two nodes, each with a cache of its own, sharing one database
+        String location = "/org/jasig/portlet/newsreader/adapter/feedCoordinatorTestContext.xml";
+        ClassPathXmlApplicationContext firstNode = new ClassPathXmlApplicationContext(location);
+        ClassPathXmlApplicationContext secondNode = new ClassPathXmlApplicationContext(location);
+        try {
+            FeedCoordinator firstCoordinator = firstNode.getBean(FeedCoordinator.class);
+            FeedCoordinator secondCoordinator = secondNode.getBean(FeedCoordinator.class);
+            adapter.setCoordinator(firstCoordinator);
+            adapter.setTimeToLiveSeconds(0);
+            adapter.setStaleIfErrorSeconds(60);
+            CountingRomeAdapter other = new CountingRomeAdapter();
+            TinyLfuFeedCache otherCache = new TinyLfuFeedCache();
+            otherCache.init();
+            other.setProcessor(processor);
+            other.setCache(otherCache);
+            other.setCacheKeyPrefix("RomeAdapterTest.");
+            other.setCoordinator(secondCoordinator);
+            other.setTimeToLiveSeconds(0);
+            other.setStaleIfErrorSeconds(60);
+            NewsConfiguration config = getConfiguration("http://news.example.org/clustered.xml");
+
+            // the first node fetches the feed for the cluster
+            PaginatingNewsFeed fetched = adapter.getSyndFeed(config, 0, -1);
+            // waits for the feed to be published
+            firstCoordinator.destroy();
+            assertEquals(1, firstCoordinator.getPublishCount());
+
+            // the copy has expired;  the first node takes the lease again and fails
+            adapter.failing = true;
+            other.failing = true;
+            PaginatingNewsFeed failed = adapter.getSyndFeed(config, 0, -1);
+            assertEquals(2, adapter.fetchCount.get());
+            assertEquals(1, firstCoordinator.getFailedFetchCount());
+            assertTrue(failed.isStale());
+            assertEquals(fetched.getEntries(), failed.getEntries());
+
+            // the second node finds the lease held and serves the shared copy
+            PaginatingNewsFeed shared = other.getSyndFeed(config, 0, -1);
+            assertEquals(0, other.fetchCount.get());
+            assertEquals(1, secondCoordinator.getLeaseRefusedCount());
+            assertTrue(shared.isStale());
+            assertEquals(fetched.getEntries(), shared.getEntries());
+        } finally {
+            firstNode.close();
+            secondNode.close();
+        }
+    }
+
+    @Test
+    public void testErrorAfterStaleIfErrorWindow() throws NewsException {
+        adapter.setTimeToLiveSeconds(0);
+        NewsConfiguration config = getConfiguration("http://news.example.org/failing.xml");
+
+        adapter.getSyndFeed(config, 0, -1);
+        adapter.failing = true;
+        try {
+            adapter.getSyndFeed(config, 0, -1);
+            fail("Stale copies are only served within the stale-if-error window");
+        } catch (NewsException e) {
+            assertEquals(2, adapter.fetchCount.get());
+        }
+    }
+
+    @Test
+    public void testCircuitOpensAndBacksOff() throws Exception {
+        FeedCircuitBreaker breaker = new FeedCircuitBreaker();
+        breaker.setFailureThreshold(2);
+        breaker.setInitialBackoffSeconds(1);
+        adapter.setCircuitBreaker(breaker);
+        adapter.failing = true;
+        NewsConfiguration config = getConfiguration("http://news.example.org/down.xml");
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                adapter.getSyndFeed(config, 0, -1);
+                fail("The origin is down");
+            } catch (NewsException e) {
+                // expected
+            }
+        }
+
+        // the third request is refused without reaching the origin
+        assertEquals(2, adapter.fetchCount.get());
+        assertEquals(1, breaker.getRejectedCount());
+        FeedCircuitBreaker.CircuitStatus status = breaker.getCircuits().get(0);
+        assertEquals(FeedCircuitBreaker.State.OPEN, status.getState());
+        assertEquals(1000, status.getRetryTime().getTime() - status.getLastFailure().getTime());
+
+        Thread.sleep(1100);
+        assertEquals(FeedCircuitBreaker.State.HALF_OPEN, breaker.getCircuits().get(0).getState());
+        try {
+            adapter.getSyndFeed(config, 0, -1);
+            fail("The origin is still down");
+        } catch (NewsException e) {
+            // expected
+        }
+
+        // one attempt was let through and the backoff doubled when it failed
+        assertEquals(3, adapter.fetchCount.get());
+        status = breaker.getCircuits().get(0);
+        assertEquals(FeedCircuitBreaker.State.OPEN, status.getState());
+        assertEquals(2000, status.getRetryTime().getTime() - status.getLastFailure().getTime());
+    }
+
+    @Test
+    public void testCircuitClosesWhenOriginRecovers() throws Exception {
+        FeedCircuitBreaker breaker = new FeedCircuitBreaker();
+        breaker.setFailureThreshold(1);
+        breaker.setInitialBackoffSeconds(1);
+        adapter.setCircuitBreaker(breaker);
+        adapter.failing = true;
+        NewsConfiguration config = getConfiguration("http://news.example.org/recovering.xml");
+
+        try {
+            adapter.getSyndFeed(config, 0, -1);
+            fail("The origin is down");
+        } catch (NewsException e) {
+            assertEquals(FeedCircuitBreaker.State.OPEN, breaker.getCircuits().get(0).getState());
+        }
+
+        adapter.failing = false;
+        Thread.sleep(1100);
+        PaginatingNewsFeed feed = adapter.getSyndFeed(config, 0, -1);
+
+        assertEquals(2, adapter.fetchCount.get());
+        assertEquals(10, feed.getEntries().size());
+        assertTrue(breaker.getCircuits().isEmpty());
+    }
+
+    @Test
+    public void testFeedWithinEntryBudget() throws NewsException {
+        FeedBudget budget = new FeedBudget();
+        // the test feed has exactly this many entries
+        budget.setMaxEntries(20);
+        adapter.setBudget(budget);
+        NewsConfiguration config = getConfiguration("http://news.example.org/exact.xml");
+
+        PaginatingNewsFeed feed = adapter.getSyndFeed(config, 1, -1);
+
+        assertEquals(10, feed.getEntries().size());
+        assertTrue(budget.getExceeded().isEmpty());
+    }
+
+    @Test
+    public void testStopsReadingAtEntryBudget() throws Exception {
+        FeedBudget budget = new FeedBudget();
+        budget.setMaxEntries(3);
+        adapter.setBudget(budget);
+        processor.setStreamingParser(true);
+        try {
+            PaginatingNewsFeed feed = adapter.getSyndFeed(getConfiguration("http://news.example.org/long.xml"), 0, -1);
+
+            assertEquals(3, feed.getEntries().size());
+            // the test feed has 20 entries;  most of it is never read
+            assertTrue(adapter.bytesRead.get() + " bytes read", adapter.bytesRead.get() < testFeed.contentLength() / 2);
+            assertEquals(1, budget.getExceeded().size());
+        } finally {
+            processor.setStreamingParser(false);
+        }
+    }
+
+    private NewsConfiguration getConfiguration(String url) {
+        NewsDefinition definition = new NewsDefinition(1L, RomeAdapter.class.getName(), "Test");
+        definition.addParameter("url", url);
+        NewsConfiguration config = new NewsConfiguration();
+        config.setNewsDefinition(definition);
+        return config;
+    }
+
+    /**
+     * Answers every request with the test feed, or with the configured status,
+     * and counts the requests.  While <code>failing</code> is set every request
+     * fails as if the origin could not be reached.
+     */
+    private class CountingRomeAdapter extends RomeAdapter {
+
+        final AtomicInteger fetchCount = new AtomicInteger();
+        final AtomicLong bytesRead = new AtomicLong();
+        volatile int status = HttpStatus.SC_OK;
+        volatile String etag;
+        volatile String ifNoneMatch;
+        volatile boolean failing;
+
+        @Override
+        protected HttpResponse executeGet(HttpGet get) throws IOException {
+            fetchCount.incrementAndGet();
+            if (failing) {
+                throw new IOException("Connection refused");
+            }
+            Header validator = get.getFirstHeader("If-None-Match");
+            ifNoneMatch = validator != null ? validator.getValue() : null;
+            BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "Test");
+            if (etag != null) {
+                response.addHeader("ETag", etag);
+            }
+            if (status == HttpStatus.SC_OK) {
+                response.setEntity(new InputStreamEntity(new FilterInputStream(testFeed.getInputStream()) {
+                    @Override
+                    public int read() throws IOException {
+                        final int b = super.read();
+                        if (b >= 0) {
+                            bytesRead.incrementAndGet();
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        final int n = super.read(b, off, len);
+                        if (n > 0) {
+                            bytesRead.addAndGet(n);
+                        }
+                        return n;
+                    }
+                }, -1));
+            }
+            return response;
+        }
+    }
+
+}
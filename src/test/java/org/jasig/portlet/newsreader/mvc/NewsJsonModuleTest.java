@@ -0,0 +1,185 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.mvc;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jasig.portlet.newsreader.model.DefaultFullStory;
+import org.jasig.portlet.newsreader.model.FeedSnapshot;
+import org.jasig.portlet.newsreader.model.NewsFeedItem;
+import org.jasig.portlet.newsreader.model.PaginatingNewsFeed;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NewsJsonModuleTest {
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    NewsJsonModule module;
+    ObjectMapper plain;
+    ObjectMapper cached;
+    FeedSnapshot snapshot;
+
+    @Before
+    public void setUp() {
+        module = new NewsJsonModule();
+        plain = newMapper();
+        cached = newMapper();
+        cached.registerModule(module);
+
+        final List<NewsFeedItem> entries = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            final NewsFeedItem item = new NewsFeedItem();
+            item.setTitle("Story " + i + " \u2014 \"caf\u00e9\" <b>news</b>");
+            item.setLink(i % 3 == 0 ? null : "http://news.example.org/story/" + i);
+            item.setUri("urn:story:" + i);
+            item.setDescription("<p>Paragraph " + i + " of the story, with \u00fcnicode and a \\ backslash.</p>");
+            item.setPubDate(new Date(1500000000000L + i * 3600000L));
+            item.setAuthors(Arrays.asList("Author " + i % 4));
+            item.setCategories(Arrays.asList("campus", "events"));
+            item.setFullStory(new DefaultFullStory("<p>Full story " + i + "</p>"));
+            item.setCached(true);
+            entries.add(item);
+        }
+        snapshot = new FeedSnapshot("Campus News", "http://news.example.org/", "News Office", "2017",
+                entries, -1, 10);
+    }
+
+    @Test
+    public void testSameJsonAsSerializingEachTime() throws Exception {
+        for (int maxStories : new int[] { -1, 15 }) {
+            for (int page = 0; page < 3; page++) {
+                final Map<String, Object> model = model(new PaginatingNewsFeed(snapshot.truncate(maxStories), page));
+                final String expected = plain.writeValueAsString(model);
+                assertEquals(expected, cached.writeValueAsString(model));
+                assertEquals(expected, cached.writeValueAsString(model));
+            }
+        }
+        // one serialization of each entry, on its first page
+        assertEquals(30, module.getMissCount());
+        assertEquals(30, module.getSize());
+        assertTrue(module.getHitCount() > 0);
+    }
+
+    @Test
+    public void testSubstitutedEntryIsSerialized() throws Exception {
+        cached.writeValueAsString(model(new PaginatingNewsFeed(snapshot, 0)));
+
+        // as the controller links a full story for this request only
+        final PaginatingNewsFeed feed = new PaginatingNewsFeed(snapshot, 0);
+        final NewsFeedItem linked = new NewsFeedItem(feed.getEntries().get(0));
+        linked.setLink("/render?action=fullStory&itemIndex=0");
+        feed.setPageEntry(0, linked);
+        final Map<String, Object> model = model(feed);
+
+        final String json = cached.writeValueAsString(model);
+        assertEquals(plain.writeValueAsString(model), json);
+        assertTrue(json, json.contains("itemIndex=0"));
+        assertEquals(9, module.getHitCount());
+        // the copy is not kept
+        assertEquals(10, module.getMissCount());
+        assertEquals(10, module.getSize());
+    }
+
+    @Test
+    public void testUncachedEntriesAreNotKept() throws Exception {
+        final List<NewsFeedItem> entries = new ArrayList<>();
+        for (NewsFeedItem item : snapshot.getEntries()) {
+            // as decoded from an off-heap feed for each read
+            entries.add(new NewsFeedItem(item));
+        }
+        final Map<String, Object> model = model(new PaginatingNewsFeed(
+                new FeedSnapshot("Campus News", "http://news.example.org/", "News Office", "2017", entries, -1, 10), 0));
+
+        assertEquals(plain.writeValueAsString(model), cached.writeValueAsString(model));
+        assertEquals(0, module.getMissCount());
+        assertEquals(0, module.getSize());
+    }
+
+    @Test
+    public void testAuthorsAndCategoriesAreObjects() throws Exception {
+        // as the ROME person and category objects entries used to hold were written
+        final String json = plain.writeValueAsString(snapshot.getEntries().get(1));
+        assertTrue(json, json.contains("\"authors\":[{\"name\":\"Author 1\"}]"));
+        assertTrue(json, json.contains("\"categories\":[{\"name\":\"campus\"},{\"name\":\"events\"}]"));
+        assertEquals(json, cached.writeValueAsString(snapshot.getEntries().get(1)));
+    }
+
+    @Test
+    public void testThroughput() throws Exception {
+        final int responses = 20000;
+        final long plainNanos = time(plain, responses);
+        final long cachedNanos = time(cached, responses);
+        log.info("{} responses of 10 entries:  {} per second serializing entries, {} per second from kept JSON",
+                responses, responses * 1000000000L / plainNanos, responses * 1000000000L / cachedNanos);
+    }
+
+    private long time(ObjectMapper mapper, int responses) throws Exception {
+        // warm up
+        for (int i = 0; i < responses / 10; i++) {
+            mapper.writeValueAsBytes(model(new PaginatingNewsFeed(snapshot, i % 3)));
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < responses; i++) {
+            mapper.writeValueAsBytes(model(new PaginatingNewsFeed(snapshot, i % 3)));
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * The model of AjaxNewsController for a single feed.
+     */
+    private Map<String, Object> model(PaginatingNewsFeed feed) {
+        final Map<String, Object> jsonFeed = new HashMap<>();
+        jsonFeed.put("id", 1L);
+        jsonFeed.put("name", "Campus News");
+        final Map<String, Object> model = new HashMap<>();
+        model.put("feeds", Collections.singletonList(jsonFeed));
+        model.put("activeFeed", 1L);
+        model.put("page", feed.getPage());
+        model.put("feed", feed);
+        model.put("maxPage", feed.getPageCount());
+        return model;
+    }
+
+    /**
+     * The object mapper of views.xml.
+     */
+    private ObjectMapper newMapper() {
+        final ObjectMapper mapper = new ObjectMapper();
+        mapper.setDateFormat(new SimpleDateFormat("EEE, MMM d yyyy HH:mm zzz"));
+        mapper.setTimeZone(TimeZone.getTimeZone("America/Chicago"));
+        return mapper;
+    }
+
+}
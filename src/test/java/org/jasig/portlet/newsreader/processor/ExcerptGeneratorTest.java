@@ -0,0 +1,105 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Checks the excerpts made of entries that have content but no description.
+ */
+public class ExcerptGeneratorTest {
+
+    private final ExcerptGenerator generator = new ExcerptGenerator(200, 16384);
+
+    @Test
+    public void testMarkupIsRemoved() {
+        assertEquals("Hello world", generator.generate("Hello <b>wor</b>ld"));
+        assertEquals("One Two Three", generator.generate("<p>One</p><p>Two<br/>Three</p>"));
+        assertEquals("Link", generator.generate("<a title=\"a > b\" href='x'>Link</a>"));
+        assertEquals("Text", generator.generate("<!-- <p>hidden</p> --><script>var p = '<p>';</script>"
+                + "<STYLE type=\"text/css\">p { color: red }</STYLE>Text"));
+        assertEquals("spaced out", generator.generate("  spaced \n\t out  "));
+    }
+
+    @Test
+    public void testTextIsEscaped() {
+        assertEquals("Fish &amp; chips", generator.generate("Fish &amp; chips"));
+        assertEquals("Fish &amp; chips", generator.generate("Fish & chips"));
+        assertEquals("1 &lt; 2", generator.generate("1 < 2"));
+        assertEquals("&lt;script&gt;", generator.generate("&lt;script&gt;"));
+        assertEquals("&lt;b&gt;", generator.generate("&#60;b&#x3E;"));
+        assertEquals("&quot;Don&#39;t&quot;", generator.generate("\"Don't\""));
+        assertEquals("Don\u2019t", generator.generate("Don&rsquo;t"));
+        assertEquals("a b", generator.generate("a&nbsp;b"));
+        assertEquals("&amp;bogus; &amp;#xZZ;", generator.generate("&bogus; &#xZZ;"));
+    }
+
+    @Test
+    public void testLongTextIsCut() {
+        StringBuilder html = new StringBuilder("<p>");
+        for (int i = 0; i < 100; i++) {
+            html.append("word ");
+        }
+        String excerpt = generator.generate(html.toString());
+        assertEquals(200, excerpt.length());
+        assertTrue(excerpt.endsWith("wo..."));
+
+        // text that just fits is kept whole
+        String exact = html.substring(3, 203).replace(' ', '-');
+        assertEquals(exact, generator.generate(exact));
+        assertEquals(exact.substring(0, 197) + "...", generator.generate(exact + "w"));
+    }
+
+    @Test
+    public void testEntityAtCut() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 196; i++) {
+            text.append('a');
+        }
+        String excerpt = generator.generate(text + "&amp;&amp;&amp;&amp;&amp;");
+        // an entity is escaped after the cut, so it is never split
+        assertEquals(text + "&amp;...", excerpt);
+    }
+
+    @Test
+    public void testMarkupAtEndOfScan() {
+        ExcerptGenerator short_ = new ExcerptGenerator(200, 18);
+
+        // tag cut off by the end of the scan
+        String excerpt = short_.generate("Some text <a href=\"http://example.com/\">link</a>");
+        assertEquals("Some text...", excerpt);
+
+        // entity cut off by the end of the scan
+        assertEquals("Some text here...", short_.generate("Some text here &amp; there"));
+        assertEquals("Some text here a...", short_.generate("Some text here a &amp; there"));
+
+        // '<' at the end of the scan
+        assertEquals("Some text here a...", short_.generate("Some text here a <b>more</b>"));
+
+        // script running past the end of the scan
+        assertFalse(short_.generate("Intro<script>alert('<b>')</script> and more").contains("alert"));
+
+        // content shorter than the scan that ends in broken markup
+        assertEquals("Broken", short_.generate("Broken <a href="));
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.processor;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.owasp.validator.html.AntiSamy;
+import org.owasp.validator.html.Policy;
+
+/**
+ * Checks that text recognized as plain is exactly what AntiSamy returns for it,
+ * for chosen strings and for every title and description of the test feeds.
+ */
+public class PlainTextDetectorTest {
+
+    private static final List<String> PLAIN = Arrays.asList(
+            "Library extends weekend hours for finals",
+            "Gadhafi's forces retake key oil town",
+            "Q: Who runs the campus shuttle? A: Facilities (see page 2)",
+            "50% off textbooks, today only!",
+            "Dean's list - Fall 2016; honors #1",
+            "x");
+
+    private static final List<String> NOT_PLAIN = Arrays.asList(
+            "",
+            "Rebels retreat under barrage\n                (AP)",
+            " leading space",
+            "trailing space ",
+            "Tab\tseparated",
+            "Two  spaces",
+            "Q&A with the provost",
+            "Caf\u00e9 reopens",
+            "The \"new\" library",
+            "a < b",
+            "a > b",
+            "<b>Bold</b> move",
+            "&amp; friends",
+            "<script>alert(1)</script>");
+
+    private static final List<String> TEXT_ELEMENTS = Arrays.asList("title", "description", "summary");
+
+    private static Policy policy;
+
+    @BeforeClass
+    public static void loadPolicy() throws Exception {
+        InputStream in = PlainTextDetectorTest.class.getResourceAsStream("/antisamy/antisamy-textonly.xml");
+        try {
+            policy = Policy.getInstance(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testPlainTextIsUnchangedByAntiSamy() throws Exception {
+        AntiSamy as = new AntiSamy();
+        for (String text : PLAIN) {
+            assertTrue(text, PlainTextDetector.isUnchanged(text));
+            assertEquals(text, as.scan(text, policy).getCleanHTML());
+        }
+    }
+
+    @Test
+    public void testTextNeedingCleaningIsLeftToAntiSamy() {
+        for (String text : NOT_PLAIN) {
+            assertFalse(text, PlainTextDetector.isUnchanged(text));
+        }
+        char[] longText = new char[PlainTextDetector.MAX_LENGTH + 1];
+        Arrays.fill(longText, 'a');
+        assertFalse(PlainTextDetector.isUnchanged(new String(longText)));
+    }
+
+    @Test
+    public void testParityOnFeedText() throws Exception {
+        AntiSamy as = new AntiSamy();
+        List<String> texts = new ArrayList<>();
+        for (String feed : new String[] { "testFeed.xml", "testAtomFeed.xml" }) {
+            texts.addAll(readTexts(feed));
+        }
+        int plain = 0;
+        for (String text : texts) {
+            if (PlainTextDetector.isUnchanged(text)) {
+                plain++;
+                assertEquals(text, as.scan(text, policy).getCleanHTML());
+            }
+        }
+        // the corpus holds both kinds of text
+        assertTrue(plain > 0);
+        assertTrue(plain < texts.size());
+    }
+
+    /**
+     * Read the titles, descriptions and summaries of a feed, as they are
+     * passed to AntiSamy.
+     */
+    private List<String> readTexts(String feed) throws Exception {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        List<String> texts = new ArrayList<>();
+        InputStream in = PlainTextDetectorTest.class.getResourceAsStream("/org/jasig/portlet/newsreader/processor/" + feed);
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT
+                        && TEXT_ELEMENTS.contains(xml.getLocalName())) {
+                    texts.add(xml.getElementText());
+                }
+            }
+            xml.close();
+        } finally {
+            in.close();
+        }
+        return texts;
+    }
+
+    @Test
+    public void testProcessorKeepsPlainText() throws Exception {
+        RomeNewsProcessorImpl processor = new RomeNewsProcessorImpl();
+        AntiSamy as = new AntiSamy();
+        for (String text : PLAIN) {
+            assertEquals(text, processor.scan(as, text, "antisamy-textonly", policy));
+        }
+        for (String text : Arrays.asList("<b>Bold</b> move", "Q&A with the provost")) {
+            assertEquals(as.scan(text, policy).getCleanHTML(),
+                    processor.scan(as, text, "antisamy-textonly", policy));
+        }
+        assertEquals(PLAIN.size(), processor.getPlainTextCount());
+    }
+
+}
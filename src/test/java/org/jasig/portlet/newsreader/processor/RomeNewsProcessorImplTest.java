@@ -20,9 +20,24 @@ package org.jasig.portlet.newsreader.processor;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
 import org.jasig.portlet.newsreader.model.NewsFeed;
 import org.jasig.portlet.newsreader.model.NewsFeedItem;
+import org.jasig.portlet.newsreader.model.PaginatingNewsFeed;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -34,6 +49,7 @@ import org.springframework.core.io.Resource;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import com.rometools.rome.feed.synd.SyndFeed;
 import com.rometools.rome.io.FeedException;;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -64,5 +80,138 @@ public class RomeNewsProcessorImplTest {
         
         in.close();
     }
-    
+
+    @Test
+    public void testUnchangedEntriesAreReused() throws IOException, IllegalArgumentException, FeedException, PolicyException, ScanException {
+        InputStream in = testFeed.getInputStream();
+        SyndFeed syndFeed = processor.parseFeed(in);
+        in.close();
+
+        SanitizedEntries entries = new SanitizedEntries();
+        PaginatingNewsFeed first = processor.getFeed(processor.getParsedFeed(syndFeed), "antisamy-textonly", "antisamy-textonly", -1, entries);
+        assertEquals(0, entries.getReusedCount());
+
+        // change one entry;  only that one is sanitized again
+        syndFeed.getEntries().get(0).setTitle("Changed title");
+        SanitizedEntries next = entries.next();
+        PaginatingNewsFeed second = processor.getFeed(processor.getParsedFeed(syndFeed), "antisamy-textonly", "antisamy-textonly", -1, next);
+
+        assertEquals(syndFeed.getEntries().size() - 1, next.getReusedCount());
+        assertEquals("Changed title", second.getEntries().get(0).getTitle());
+        assertNotSame(first.getEntries().get(0), second.getEntries().get(0));
+        assertSame(first.getEntries().get(1), second.getEntries().get(1));
+    }
+
+    @Test
+    public void testSanitizationCache() throws IOException, IllegalArgumentException, FeedException, PolicyException, ScanException {
+        Cache ehcache = context.getBean("cacheManager", CacheManager.class).getCache("sanitizationCache");
+        ehcache.removeAll();
+        SanitizationCache cache = new SanitizationCache();
+        cache.setCache(ehcache);
+        processor.setSanitizationCache(cache);
+        try {
+            InputStream in = testFeed.getInputStream();
+            SyndFeed syndFeed = processor.parseFeed(in);
+            in.close();
+
+            PaginatingNewsFeed first = processor.getFeed(syndFeed, "antisamy-textonly", "antisamy-textonly", -1);
+            readAll(first);
+            long lookups = cache.getHitCount() + cache.getMissCount();
+            long hits = cache.getHitCount();
+            PaginatingNewsFeed second = processor.getFeed(syndFeed, "antisamy-textonly", "antisamy-textonly", -1);
+            readAll(second);
+
+            // every title and description was cleaned the first time
+            assertEquals(hits + lookups, cache.getHitCount());
+            assertEquals(first.getEntries().get(0).getTitle(), second.getEntries().get(0).getTitle());
+            assertEquals(first.getEntries().get(0).getDescription(), second.getEntries().get(0).getDescription());
+        } finally {
+            processor.setSanitizationCache(null);
+        }
+    }
+
+    @Test
+    public void testItemsHoldNames() throws IOException, IllegalArgumentException, FeedException, PolicyException, ScanException {
+        InputStream in = context.getResource("classpath:/org/jasig/portlet/newsreader/processor/testAtomFeed.xml").getInputStream();
+        PaginatingNewsFeed feed = processor.getFeed(in, "antisamy-textonly", "antisamy-textonly", -1);
+        in.close();
+
+        NewsFeedItem item = feed.getEntries().get(0);
+        assertEquals(Collections.singletonList("Jane Reporter"), item.getAuthors());
+        // names are interned, so the same as the literal
+        assertSame("campus", item.getCategories().get(0));
+        assertEquals("<p>Starting this weekend the main library will stay open until midnight.</p>", item.getContent());
+    }
+
+    @Test
+    public void testEntriesAreSanitizedWhenRead() throws Exception {
+        InputStream in = testFeed.getInputStream();
+        SyndFeed syndFeed = processor.parseFeed(in);
+        in.close();
+
+        long sanitized = processor.getSanitizedEntryCount();
+        final PaginatingNewsFeed feed = processor.getFeed(syndFeed, "antisamy-textonly", "antisamy-textonly", -1);
+        assertEquals(sanitized, processor.getSanitizedEntryCount());
+
+        // only the first page is sanitized, however many threads read it at once
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<NewsFeedItem>>> pages = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                pages.add(executor.submit(new Callable<List<NewsFeedItem>>() {
+                    @Override
+                    public List<NewsFeedItem> call() {
+                        return new ArrayList<>(new PaginatingNewsFeed(feed.toSnapshot(), 0).getEntries());
+                    }
+                }));
+            }
+            List<NewsFeedItem> page = pages.get(0).get();
+            for (Future<List<NewsFeedItem>> other : pages) {
+                for (int i = 0; i < page.size(); i++) {
+                    assertSame(page.get(i), other.get().get(i));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(sanitized + 10, processor.getSanitizedEntryCount());
+        assertSame(feed.getEntries().get(0), feed.toSnapshot().getEntries().get(0));
+        assertEquals(20, feed.toSnapshot().getEntries().size());
+        assertEquals(sanitized + 10, processor.getSanitizedEntryCount());
+    }
+
+    @Test
+    public void testFailedEntryIsShownAsPlaceholder() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        RomeNewsProcessorImpl failing = new RomeNewsProcessorImpl() {
+            @Override
+            protected NewsFeedItem getNewsFeedItem(ParsedEntry entry, String titlePolicy, String descriptionPolicy) throws PolicyException, ScanException {
+                attempts.incrementAndGet();
+                throw new ScanException("Test failure");
+            }
+        };
+        failing.setImageTypes(Collections.<String>emptyList());
+        failing.setVideoTypes(Collections.<String>emptyList());
+        InputStream in = testFeed.getInputStream();
+        SyndFeed syndFeed = failing.parseFeed(in);
+        in.close();
+
+        PaginatingNewsFeed feed = failing.getFeed(syndFeed, "antisamy-textonly", "antisamy-textonly", -1);
+        NewsFeedItem placeholder = feed.getEntries().get(0);
+
+        assertEquals(syndFeed.getEntries().get(0).getLink(), placeholder.getLink());
+        assertNotNull(placeholder.getTitle());
+        assertNull(placeholder.getDescription());
+        // the failure is remembered, not repeated on every read
+        assertSame(placeholder, feed.getEntries().get(0));
+        assertEquals(feed.getEntries().size(), attempts.get());
+        assertEquals(feed.getEntries().size(), failing.getSanitizationFailureCount());
+    }
+
+    private void readAll(PaginatingNewsFeed feed) {
+        for (NewsFeedItem item : feed.toSnapshot().getEntries()) {
+            assertNotNull(item);
+        }
+    }
+
 }
@@ -0,0 +1,156 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.processor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import org.jasig.portlet.newsreader.model.FeedSnapshot;
+import org.jasig.portlet.newsreader.model.NewsFeedItem;
+import org.jasig.portlet.newsreader.model.PaginatingNewsFeed;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.Resource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * Checks that the streaming parser yields the same news items as ROME.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = "/org/jasig/portlet/newsreader/processor/romeProcessorTestContext.xml")
+public class StaxFeedParserTest {
+
+    private static final String POLICY = "antisamy-textonly";
+
+    @Autowired(required = true)
+    RomeNewsProcessorImpl processor;
+
+    @Autowired(required = true)
+    ApplicationContext context;
+
+    RomeNewsProcessorImpl streamingProcessor;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        streamingProcessor = new RomeNewsProcessorImpl();
+        streamingProcessor.setImageTypes(context.getBean("imageTypes", List.class));
+        streamingProcessor.setVideoTypes(context.getBean("videoTypes", List.class));
+        streamingProcessor.setPolicies(Collections.singletonMap(POLICY,
+                context.getResource("classpath:/antisamy/antisamy-textonly.xml")));
+        streamingProcessor.setStreamingParser(true);
+    }
+
+    @Test
+    public void testRssParity() throws Exception {
+        byte[] feed = read("testFeed.xml");
+        PaginatingNewsFeed expected = processor.getFeed(new ByteArrayInputStream(feed), POLICY, POLICY, -1);
+        PaginatingNewsFeed actual = streamingProcessor.getFeed(new ByteArrayInputStream(feed), POLICY, POLICY, -1);
+
+        assertEquals(20, actual.toSnapshot().getEntries().size());
+        assertFeedsEqual(expected, actual);
+    }
+
+    @Test
+    public void testAtomParity() throws Exception {
+        byte[] feed = read("testAtomFeed.xml");
+        PaginatingNewsFeed expected = processor.getFeed(new ByteArrayInputStream(feed), POLICY, POLICY, -1);
+        PaginatingNewsFeed actual = streamingProcessor.getFeed(new ByteArrayInputStream(feed), POLICY, POLICY, -1);
+
+        assertEquals(3, actual.toSnapshot().getEntries().size());
+        assertFeedsEqual(expected, actual);
+        assertEquals("http://news.example.edu/media/library.jpg", actual.getEntries().get(0).getImageUrl());
+        assertEquals("http://news.example.edu/media/concert.jpg", actual.getEntries().get(1).getImageUrl());
+    }
+
+    @Test
+    public void testStopsAtMaxStories() throws Exception {
+        byte[] feed = read("testFeed.xml");
+        PaginatingNewsFeed expected = processor.getFeed(new ByteArrayInputStream(feed), POLICY, POLICY, 3);
+
+        // cut the document off in the middle of the fifth item;  it is never read
+        String text = new String(feed, StandardCharsets.ISO_8859_1);
+        int cut = text.indexOf("<item>");
+        for (int i = 0; i < 4; i++) {
+            cut = text.indexOf("<item>", cut + 1);
+        }
+        byte[] truncated = text.substring(0, cut + 20).getBytes(StandardCharsets.ISO_8859_1);
+        PaginatingNewsFeed actual = streamingProcessor.getFeed(new ByteArrayInputStream(truncated), POLICY, POLICY, 3);
+
+        assertEquals(3, actual.toSnapshot().getEntries().size());
+        assertFeedsEqual(expected, actual);
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        byte[] feed = read("testFeed.xml");
+        streamingProcessor.setMaxEntries(4);
+        assertEquals(4, streamingProcessor.parseFeed(new ByteArrayInputStream(feed)).getEntries().size());
+        streamingProcessor.setStreamingParser(false);
+        assertEquals(4, streamingProcessor.parseFeed(new ByteArrayInputStream(feed)).getEntries().size());
+    }
+
+    private void assertFeedsEqual(PaginatingNewsFeed expectedFeed, PaginatingNewsFeed actualFeed) {
+        FeedSnapshot expected = expectedFeed.toSnapshot();
+        FeedSnapshot actual = actualFeed.toSnapshot();
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getLink(), actual.getLink());
+        assertEquals(expected.getCopyright(), actual.getCopyright());
+        assertEquals(expected.getEntries().size(), actual.getEntries().size());
+        for (int i = 0; i < expected.getEntries().size(); i++) {
+            NewsFeedItem e = expected.getEntries().get(i);
+            NewsFeedItem a = actual.getEntries().get(i);
+            assertEquals(e.getTitle(), a.getTitle());
+            assertEquals(e.getLink(), a.getLink());
+            assertEquals(e.getUri(), a.getUri());
+            assertEquals(e.getDescription(), a.getDescription());
+            assertEquals(e.getContent(), a.getContent());
+            assertNotNull(a.getPubDate());
+            assertEquals(e.getPubDate(), a.getPubDate());
+            assertEquals(e.getImageUrl(), a.getImageUrl());
+            assertEquals(e.getVideoUrl(), a.getVideoUrl());
+            assertEquals(e.getCategories(), a.getCategories());
+            assertEquals(e.getAuthors(), a.getAuthors());
+        }
+    }
+
+    private byte[] read(String name) throws IOException {
+        Resource resource = context.getResource("classpath:/org/jasig/portlet/newsreader/processor/" + name);
+        try (InputStream in = resource.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jasig.portlet.newsreader.NewsConfiguration;
+import org.jasig.portlet.newsreader.NewsDefinition;
+import org.jasig.portlet.newsreader.adapter.AbstractNewsAdapter;
+import org.jasig.portlet.newsreader.adapter.NewsException;
+import org.jasig.portlet.newsreader.model.PaginatingNewsFeed;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FeedAggregationServiceTest {
+
+    FeedAggregationService service;
+    CountDownLatch release;
+
+    @Before
+    public void setUp() {
+        release = new CountDownLatch(1);
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton(TestAdapter.class.getName(), new TestAdapter());
+        context.refresh();
+        service = new FeedAggregationService();
+        ReflectionTestUtils.setField(service, "applicationContext", context);
+        ReflectionTestUtils.setField(service, "timeoutMillis", 200L);
+        ReflectionTestUtils.setField(service, "poolSize", 2);
+        ReflectionTestUtils.setField(service, "queueSize", 10);
+        ReflectionTestUtils.setField(service, "maxTimedFeeds", 500);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        service.destroy();
+    }
+
+    @Test
+    public void testSlowFeedMissesDeadline() {
+        service.init();
+
+        FeedAggregationService.Result result = service.getFeeds(getConfigurations("first", "slow", "last"), 0, 10);
+
+        assertEquals(Arrays.asList("first", "last"), getTitles(result.getFeeds()));
+        assertEquals(Arrays.asList("slow"), result.getUnavailableFeeds());
+        assertEquals(1, service.getDroppedCount());
+    }
+
+    @Test
+    public void testFeedsBeyondQueueAreLeftOut() throws Exception {
+        ReflectionTestUtils.setField(service, "timeoutMillis", 5000L);
+        ReflectionTestUtils.setField(service, "poolSize", 1);
+        ReflectionTestUtils.setField(service, "queueSize", 1);
+        service.init();
+        // the first feed holds the only thread until the rest have been submitted
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    // release now
+                }
+                release.countDown();
+            }
+        }.start();
+
+        FeedAggregationService.Result result = service.getFeeds(getConfigurations("slow", "queued", "rejected"), 0, 10);
+
+        assertEquals(Arrays.asList("slow", "queued"), getTitles(result.getFeeds()));
+        assertEquals(Arrays.asList("rejected"), result.getUnavailableFeeds());
+        assertEquals(1, service.getDroppedCount());
+    }
+
+    @Test
+    public void testMissingFeedIsUnavailable() {
+        service.init();
+
+        FeedAggregationService.Result result = service.getFeeds(getConfigurations("first", "missing"), 0, 10);
+
+        assertEquals(Arrays.asList("first"), getTitles(result.getFeeds()));
+        assertEquals(Arrays.asList("missing"), result.getUnavailableFeeds());
+        assertEquals(1, service.getDroppedCount());
+    }
+
+    @Test
+    public void testCompletionTimesAreBounded() {
+        ReflectionTestUtils.setField(service, "maxTimedFeeds", 2);
+        service.init();
+
+        service.getFeeds(getConfigurations("first", "second", "third"), 0, 10);
+        service.getFeeds(getConfigurations("first", "second", "third"), 0, 10);
+
+        assertEquals(2, service.getCompletionTimes().size());
+        for (FeedAggregationService.FeedTiming timing : service.getCompletionTimes().values()) {
+            assertTrue(timing.getCount() > 0);
+        }
+    }
+
+    private List<NewsConfiguration> getConfigurations(String... names) {
+        List<NewsConfiguration> configs = new ArrayList<>();
+        for (String name : names) {
+            NewsConfiguration config = new NewsConfiguration();
+            config.setNewsDefinition(new NewsDefinition(1L, TestAdapter.class.getName(), name));
+            configs.add(config);
+        }
+        return configs;
+    }
+
+    private List<String> getTitles(List<PaginatingNewsFeed> feeds) {
+        List<String> titles = new ArrayList<>();
+        for (PaginatingNewsFeed feed : feeds) {
+            titles.add(feed.getTitle());
+        }
+        return titles;
+    }
+
+    /**
+     * Returns an empty feed titled with the name of the definition.  The feed
+     * named "slow" waits to be released, and the feed named "missing" is not
+     * available.
+     */
+    private class TestAdapter extends AbstractNewsAdapter {
+
+        @Override
+        public PaginatingNewsFeed getSyndFeed(NewsConfiguration config, int page, int maxStories) throws NewsException {
+            String name = config.getNewsDefinition().getName();
+            if ("slow".equals(name)) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if ("missing".equals(name)) {
+                return null;
+            }
+            PaginatingNewsFeed feed = new PaginatingNewsFeed(maxStories, page);
+            feed.setTitle(name);
+            return feed;
+        }
+    }
+
+}
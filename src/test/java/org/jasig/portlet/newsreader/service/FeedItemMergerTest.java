@@ -0,0 +1,106 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.newsreader.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.jasig.portlet.newsreader.model.NewsFeedItem;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FeedItemMergerTest {
+
+    @Test
+    public void testMatchesStableSortOfConcatenatedRuns() {
+        final Random random = new Random(42L);
+        for (int trial = 0; trial < 200; trial++) {
+            final List<List<NewsFeedItem>> runs = new ArrayList<>();
+            final int runCount = random.nextInt(8);
+            for (int r = 0; r < runCount; r++) {
+                final List<NewsFeedItem> run = new ArrayList<>();
+                final int size = random.nextInt(15);
+                for (int i = 0; i < size; i++) {
+                    // few distinct dates, so there are plenty of ties
+                    run.add(item(r + "-" + i, random.nextInt(5) == 0 ? null : (long) random.nextInt(10)));
+                }
+                switch (random.nextInt(3)) {
+                    case 0:
+                        Collections.sort(run);
+                        break;
+                    case 1:
+                        Collections.sort(run, Collections.reverseOrder());
+                        break;
+                    default:
+                        break;
+                }
+                runs.add(run);
+            }
+
+            final List<NewsFeedItem> expected = new ArrayList<>();
+            for (List<NewsFeedItem> run : runs) {
+                expected.addAll(run);
+            }
+            Collections.sort(expected);
+
+            final int offset = random.nextInt(expected.size() + 1);
+            final int limit = random.nextInt(12);
+            final FeedItemMerger.Page page = FeedItemMerger.merge(runs, offset, limit);
+
+            assertEquals(expected.size(), page.getTotalCount());
+            final List<NewsFeedItem> expectedPage = expected.subList(offset, Math.min(expected.size(), offset + limit));
+            assertEquals(expectedPage.size(), page.getItems().size());
+            for (int i = 0; i < expectedPage.size(); i++) {
+                assertSame(expectedPage.get(i), page.getItems().get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testDescendingRunIsReadBackwards() {
+        final NewsFeedItem newest = item("newest", 3L);
+        final NewsFeedItem middle = item("middle", 2L);
+        final NewsFeedItem oldest = item("oldest", 1L);
+        final FeedItemMerger.Page page = FeedItemMerger.merge(
+                Collections.singletonList(Arrays.asList(newest, middle, oldest)), 0, 10);
+        assertEquals(Arrays.asList(oldest, middle, newest), page.getItems());
+    }
+
+    @Test
+    public void testNoRuns() {
+        final FeedItemMerger.Page page = FeedItemMerger.merge(Collections.<List<NewsFeedItem>>emptyList(), 0, 10);
+        assertTrue(page.getItems().isEmpty());
+        assertEquals(0, page.getTotalCount());
+    }
+
+    private static NewsFeedItem item(String title, Long pubDate) {
+        final NewsFeedItem item = new NewsFeedItem();
+        item.setTitle(title);
+        item.setPubDate(pubDate == null ? null : new Date(pubDate));
+        return item;
+    }
+
+}